@@ -63,6 +63,33 @@ public class CLIArguments
     private static final String NO_INSTRUMENT_DESCRIPTION =
             "Set this flag to disable class file instrumentation (which is enabled by default).";
 
+    private static final String TRANSFER_MANIFESTS_DESCRIPTION =
+            "The path to the directory in which a transfer-safety manifest should be placed for "
+            + "each analyzed capsule. Pass this directory to the annotation processor (via the "
+            + "`panini.soter.manifests` option) to omit the dynamic ownership transfer checks of "
+            + "transfers which are proven safe. If this option is not set, then no manifests "
+            + "are generated.";
+
+    private static final String WORKERS_DESCRIPTION =
+            "The number of capsules to analyze in parallel. Each worker builds its own call graph, "
+            + "but all workers share one class hierarchy. Instrumented classes and other outputs "
+            + "are still written one at a time. Defaults to 1 (i.e. capsules are analyzed one "
+            + "after another).";
+
+    private static final String CACHE_DESCRIPTION =
+            "The path to the directory in which SOTER analysis results should be cached between "
+            + "runs. A capsule is only re-analyzed if the bytecode of some application class "
+            + "reachable from its call graph has changed since its results were cached. Note that "
+            + "call graph and heap graph PDFs are not generated for capsules whose cached results "
+            + "are reused. If this option is not set, then every capsule is analyzed.";
+
+    private static final String DEMAND_POINTS_TO_DESCRIPTION =
+            "Set this flag to answer only the points-to queries raised by transfer sites with a "
+            + "demand-driven pointer analysis over a cheap type-based call graph, rather than "
+            + "performing a whole-program pointer analysis for each capsule. This can greatly "
+            + "reduce analysis time and memory on capsules which reach a lot of library code. "
+            + "Heap graph PDFs are not generated in this mode.";
+
     private static final String CAPSULE_TEMPLATES_DESCRIPTION =
             "A sequence of fully qualified capsule cores (e.g. `com.example.foo.FooCore`) "
             + "to be analyzed and instrumented.";
@@ -88,9 +115,21 @@ public class CLIArguments
     @Parameter(names = "-origBytecode", description = ORIG_BYTECODE_DESCRIPTION)
     public String origBytecode;
 
+    @Parameter(names = "-transferManifests", description = TRANSFER_MANIFESTS_DESCRIPTION)
+    public String transferManifests;
+
     @Parameter(names = "-noInstrument", description = NO_INSTRUMENT_DESCRIPTION)
     public Boolean noInstrument = false;
     
+    @Parameter(names = "-workers", description = WORKERS_DESCRIPTION)
+    public Integer workers = 1;
+
+    @Parameter(names = "-cache", description = CACHE_DESCRIPTION)
+    public String cache = null;
+
+    @Parameter(names = "-demandPointsTo", description = DEMAND_POINTS_TO_DESCRIPTION)
+    public Boolean demandPointsTo = false;
+
     @Parameter(description = CAPSULE_TEMPLATES_DESCRIPTION)
     public List<String> capsules = new ArrayList<>();
 }
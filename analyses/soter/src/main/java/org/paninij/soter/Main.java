@@ -38,10 +38,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.paninij.soter.SoterAnalysis;
+import org.paninij.soter.cache.SoterCache;
+import org.paninij.soter.cache.SoterResults;
 import org.paninij.soter.instrument.SoterInstrumenter;
 import org.paninij.soter.instrument.SoterInstrumenterFactory;
+import org.paninij.soter.manifest.TransferManifestWriter;
+import org.paninij.soter.model.CapsuleCore;
 import org.paninij.soter.util.Log;
 import org.paninij.soter.util.WalaUtil;
 
@@ -58,6 +68,13 @@ public class Main
     protected final CLIArguments cliArguments;
     protected final SoterAnalysisFactory soterAnalysisFactory;
     protected final SoterInstrumenterFactory soterInstrumenterFactory;
+    protected final SoterCache soterCache;  // `null` if results should not be cached.
+
+    /**
+     * Guards everything which `analyzeAndInstrument()` writes to disk, so that when capsules are
+     * analyzed in parallel, their instrumentation and other outputs are still written serially.
+     */
+    protected final Object outputLock = new Object();
     
     protected Main(CLIArguments cliArguments)
     {
@@ -70,20 +87,34 @@ public class Main
 
         classpath = makeEffectiveClassPath(cliArguments.classPath, cliArguments.classPathFile);
         note("Effective class path: " + classpath);
-        soterAnalysisFactory = new SoterAnalysisFactory(classpath);
+        soterAnalysisFactory = new SoterAnalysisFactory(classpath, cliArguments.demandPointsTo);
         soterInstrumenterFactory = new SoterInstrumenterFactory(cliArguments.classOutput);
+        soterCache = (cliArguments.cache == null) ? null
+                   : new SoterCache(Paths.get(cliArguments.cache),
+                                    soterAnalysisFactory.getClassHierarchy(),
+                                    cliArguments.demandPointsTo ? "demand" : "exhaustive");
     }
    
-    // TODO: Split up this method. It's too long and does too much.
     protected void analyzeAndInstrument(String qualifiedCapsuleName) throws IOException,
                                                                      InterruptedException
     {
+        SoterResults results = (soterCache == null) ? null : soterCache.lookup(qualifiedCapsuleName);
+        if (results != null)
+        {
+            note("Reusing Cached Results: " + qualifiedCapsuleName);
+            synchronized (outputLock) {
+                writeOutputs(qualifiedCapsuleName, results, null);
+            }
+            return;
+        }
+
         note("Analyzing Capsule: " + qualifiedCapsuleName);
         
         SoterAnalysis soterAnalysis;
         try {
             soterAnalysis = soterAnalysisFactory.make(qualifiedCapsuleName);
             soterAnalysis.perform();
+            results = SoterResults.make(qualifiedCapsuleName, soterAnalysis);
         }
         catch (Exception ex)
         {
@@ -91,12 +122,43 @@ public class Main
             throw ex;
         }
 
+        synchronized (outputLock)
+        {
+            if (soterCache != null) {
+                soterCache.store(results);
+            }
+            writeOutputs(qualifiedCapsuleName, results, soterAnalysis);
+        }
+    }
+
+    /**
+     * Writes the instrumented bytecode and any other requested outputs for an analyzed capsule.
+     * Callers must hold `outputLock`.
+     *
+     * @param soterAnalysis The performed analysis from which `results` were made, or `null` if
+     *                      the results were loaded from the cache. Graph PDFs are only generated
+     *                      if this is given.
+     */
+    protected void writeOutputs(String qualifiedCapsuleName, SoterResults results,
+                                SoterAnalysis soterAnalysis) throws IOException
+    {
         if (cliArguments.noInstrument == false)
         {
             note("Instrumenting Capsule: " + qualifiedCapsuleName);
             try {
-                SoterInstrumenter soterInstrumenter = soterInstrumenterFactory.make(soterAnalysis);
-                soterInstrumenter.perform();
+                CapsuleCore core = soterAnalysisFactory.makeCapsuleCore(qualifiedCapsuleName);
+                if (soterAnalysis == null
+                        && soterCache.isInstrumented(qualifiedCapsuleName, core.getCoreClass())) {
+                    note("Capsule Is Already Instrumented: " + qualifiedCapsuleName);
+                } else {
+                    SoterInstrumenter soterInstrumenter = soterInstrumenterFactory.make(core, results);
+                    soterInstrumenter.perform();
+                    if (soterCache != null && soterInstrumenter.getInstrumentedClass() != null) {
+                        soterCache.storeInstrumented(qualifiedCapsuleName,
+                                                     core.getCoreClass().getName().toString(),
+                                                     soterInstrumenter.getInstrumentedClass());
+                    }
+                }
             }
             catch (Exception ex)
             {
@@ -106,19 +168,74 @@ public class Main
             }
         }
 
+        if (cliArguments.transferManifests != null)
+        {
+            Files.createDirectories(Paths.get(cliArguments.transferManifests));
+            new TransferManifestWriter(results, cliArguments.transferManifests).perform();
+        }
+
+        if (soterAnalysis == null) {
+            return;
+        }
+
         if (cliArguments.callGraphPDFs != null)
         {
             String callGraphPDF = cliArguments.callGraphPDFs + File.separator + qualifiedCapsuleName + ".pdf";
             WalaUtil.makeGraphFile(soterAnalysis.getCallGraph(), callGraphPDF);
         }
 
-        if (cliArguments.heapGraphPDFs != null)
+        if (cliArguments.heapGraphPDFs != null && soterAnalysis.getHeapGraph() != null)
         {
             String heapGraphPDF = cliArguments.heapGraphPDFs + File.separator + qualifiedCapsuleName + ".pdf";
             WalaUtil.makeGraphFile(soterAnalysis.getHeapGraph(), heapGraphPDF);
         }
     }
-    
+
+    /**
+     * Analyzes and instruments all of the capsules given on the command line using a pool of
+     * `workers` threads. If the analysis of any capsule fails, the remaining capsules are still
+     * analyzed, and an exception is thrown once all of them have finished.
+     */
+    public void analyzeAndInstrumentAll(int workers) throws IOException, InterruptedException
+    {
+        soterAnalysisFactory.prepareForConcurrentUse();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        Map<String, Future<Void>> futures = new LinkedHashMap<>();
+        try
+        {
+            for (String capsule : cliArguments.capsules)
+            {
+                futures.put(capsule, executor.submit(() -> {
+                    analyzeAndInstrument(capsule);
+                    return null;
+                }));
+            }
+
+            int failures = 0;
+            for (Map.Entry<String, Future<Void>> entry : futures.entrySet())
+            {
+                try {
+                    entry.getValue().get();
+                }
+                catch (ExecutionException ex)
+                {
+                    error("Failed to analyze and instrument a capsule: " + entry.getKey());
+                    ex.getCause().printStackTrace(System.err);
+                    failures++;
+                }
+            }
+
+            if (failures > 0) {
+                throw new IOException("Failed to analyze and instrument " + failures + " capsule(s).");
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     public void logAllCoresDisassembledBytecode() throws IOException, InterruptedException
     {
         for (String capsuleCore: cliArguments.capsules)
@@ -194,8 +311,15 @@ public class Main
             main.logAllCoresDisassembledBytecode();
         }
         
-        for (String capsule : cliArguments.capsules) {
-            main.analyzeAndInstrument(capsule);
+        if (cliArguments.workers > 1)
+        {
+            main.analyzeAndInstrumentAll(cliArguments.workers);
+        }
+        else
+        {
+            for (String capsule : cliArguments.capsules) {
+                main.analyzeAndInstrument(capsule);
+            }
         }
     }
 
@@ -25,7 +25,6 @@
  *******************************************************************************/
 package org.paninij.soter;
 
-import static org.paninij.soter.util.SoterUtil.makePointsToClosure;
 import static java.text.MessageFormat.format;
 
 import java.util.ArrayList;
@@ -153,20 +152,19 @@ public class SoterAnalysis extends LoggingAnalysis
                 // Find all of the (transitively) live objects.
                 results.liveObjects = new IdentitySet<InstanceKey>();
                 for (PointerKey pointerKey : results.liveVariables) {
-                    results.liveObjects.addAll(makePointsToClosure(pointerKey, cga.getHeapGraph()));
+                    results.liveObjects.addAll(cga.makePointsToClosure(pointerKey));
                 }
 
                 // For each of the transfer site's transfers, find all of the (transitively)
                 // escaped objects.
                 HeapModel heapModel = cga.getHeapModel();
-                HeapGraph<InstanceKey> heapGraph = cga.getHeapGraph();
                 IntIterator paramIter = transferSite.getTransfers().intIterator();
                 while (paramIter.hasNext())
                 {
                     int paramID = paramIter.next();
 
                     PointerKey ptr = heapModel.getPointerKeyForLocal(transferringNode, paramID);
-                    IdentitySet<InstanceKey> escaped = makePointsToClosure(ptr, heapGraph);
+                    IdentitySet<InstanceKey> escaped = cga.makePointsToClosure(ptr);
                     results.setEscapedObjects(paramID, escaped);
 
                     boolean isSafeTransfer = results.liveObjects.isDisjointFrom(escaped);
@@ -219,6 +217,10 @@ public class SoterAnalysis extends LoggingAnalysis
     }
 
 
+    /**
+     * @return The heap graph of the analysis, or `null` if it was performed with demand-driven
+     *         points-to queries.
+     */
     public HeapGraph<InstanceKey> getHeapGraph()
     {
         return cga.getHeapGraph();
@@ -247,6 +249,29 @@ public class SoterAnalysis extends LoggingAnalysis
     }
 
 
+    /**
+     * @return The set of all of the transferring sites which this analysis has checked.
+     */
+    public Set<TransferSite> getTransferSites()
+    {
+        return transferSiteResultsMap.keySet();
+    }
+
+
+    /**
+     * @return `true` if and only if all of the transfers at the given transfer site were found to
+     *         be safe.
+     */
+    public boolean isSafeTransferSite(TransferSite transferSite)
+    {
+        TransferSiteResults results = transferSiteResultsMap.get(transferSite);
+        if (results == null) {
+            throw new IllegalArgumentException("Not a known transfer site: " + transferSite);
+        }
+        return ! results.hasUnsafeTransfers();
+    }
+
+
     @Override
     public JsonObject getJsonResults()
     {
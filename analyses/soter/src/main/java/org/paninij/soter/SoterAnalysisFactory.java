@@ -37,17 +37,18 @@ import org.paninij.soter.transfer.TransferAnalysis;
 import org.paninij.soter.transfer.TransferAnalysisFactory;
 import org.paninij.soter.util.WalaUtil;
 
-import com.ibm.wala.ipa.callgraph.AnalysisOptions;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
 
 /**
  * A factory for creating and performing `@PaniniJ` SOTER analyses. It caches resources that can be
  * used across multiple SOTER analyses (e.g. the class hierarchy analysis).
+ *
+ * The analyses made by a factory only share resources which are read-only once they have been
+ * built, so these analyses may be made and performed concurrently. See `prepareForConcurrentUse()`.
  */
 public class SoterAnalysisFactory
 {
     protected final IClassHierarchy cha;
-    protected final AnalysisOptions options;
     protected final CapsuleCoreFactory coreFactory;
     protected final CallGraphAnalysisFactory cgaFactory;
     protected final TransferAnalysisFactory taFactory;
@@ -56,20 +57,54 @@ public class SoterAnalysisFactory
 
 
     public SoterAnalysisFactory(String classPath)
+    {
+        this(classPath, false);
+    }
+
+    /**
+     * @param demandPointsTo If this is `true`, then the made analyses answer only the points-to
+     *                       queries raised by transfer sites (see `DemandCallGraphAnalysis`),
+     *                       instead of performing a whole-program pointer analysis.
+     */
+    public SoterAnalysisFactory(String classPath, boolean demandPointsTo)
     {
         WalaUtil.checkRequiredResourcesExist();
 
         cha = WalaUtil.makeClassHierarchy(classPath);
-        options = WalaUtil.makeAnalysisOptions(cha);
         
         coreFactory = new CapsuleCoreFactory(cha);
-        cgaFactory = new CallGraphAnalysisFactory(cha, options);
+        cgaFactory = new CallGraphAnalysisFactory(cha, demandPointsTo);
         taFactory = new TransferAnalysisFactory(cha);
         tlaFactory = new TransferLiveAnalysisFactory(cha);
         cglaFactory = new CallGraphLiveAnalysisFactory(cha);
     }
     
     /**
+     * Eagerly initializes the lazily-built parts of the shared class hierarchy. This should be
+     * called before analyses are made and performed concurrently, so that worker threads only
+     * ever read from the class hierarchy.
+     */
+    public void prepareForConcurrentUse()
+    {
+        WalaUtil.initializeLazyMembers(cha);
+    }
+
+    public IClassHierarchy getClassHierarchy()
+    {
+        return cha;
+    }
+
+    /**
+     * @param capsuleName A fully qualified name of a capsule (e.g. "org.paninij.examples.pi.Pi").
+     */
+    public CapsuleCore makeCapsuleCore(String capsuleName)
+    {
+        return coreFactory.make(capsuleName);
+    }
+
+    /**
+     * This method is safe to call from multiple threads.
+     *
      * @param capsuleName A fully qualified name of a capsule (e.g. "org.paninij.examples.pi.Pi").
      */
     public SoterAnalysis make(String capsuleName)
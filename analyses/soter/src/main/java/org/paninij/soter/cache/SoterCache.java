@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.soter.cache;
+
+import static org.paninij.soter.util.Log.note;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.paninij.runtime.check.TransferManifest;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.TypeReference;
+
+/**
+ * An on-disk cache of `SoterResults`, so that a capsule whose analysis inputs have not changed
+ * since a previous SOTER run does not need to be analyzed again.
+ *
+ * Each cached result records a hash of the bytecode of every application class on which its
+ * analysis depended (see `SoterResults.make()`). A cached result is only reused if all of these
+ * classes still exist in the class hierarchy and still have the same hashes. Thus, changing any
+ * class which is reachable from a capsule core's call graph invalidates that capsule's result,
+ * but leaves the results of capsules which do not reach it untouched. Library (i.e. primordial)
+ * classes are not hashed.
+ *
+ * Soter is usually run on the same class files which it instruments, so the next run finds the
+ * instrumented core rather than the one which was analyzed. So, a hash of the instrumented core
+ * is also recorded (see `storeInstrumented()`), and a core with this hash is neither taken as a
+ * change nor instrumented again (see `isInstrumented()`).
+ *
+ * Each capsule's results are stored in their own subdirectory of the cache directory:
+ *
+ * - `dependencies.properties`: The dependency hashes. This is written last, so an incompletely
+ *   written entry is never used.
+ * - `unsafe.properties`: The bytecode indices of the unsafe transfer sites of each core method.
+ * - `<capsule>.transfers`: The capsule's transfer manifest.
+ * - `instrumented.properties`: The hash of the instrumented core, if it has been instrumented.
+ */
+public class SoterCache
+{
+    protected static final String FORMAT_VERSION_KEY = "soter.cache.version";
+    protected static final String FORMAT_VERSION = "1";
+    protected static final String CONFIGURATION_KEY = "soter.cache.configuration";
+
+    protected static final String DEPENDENCIES_FILE = "dependencies.properties";
+    protected static final String UNSAFE_TRANSFERS_FILE = "unsafe.properties";
+    protected static final String INSTRUMENTED_FILE = "instrumented.properties";
+
+    protected final Path cacheDir;
+    protected final IClassHierarchy cha;
+    protected final String configuration;
+
+    /**
+     * @param configuration A description of the analysis settings which affect the results (e.g.
+     *                      the points-to mode). Cached results are only reused by a cache with the
+     *                      same configuration.
+     */
+    public SoterCache(Path cacheDir, IClassHierarchy cha, String configuration)
+    {
+        this.cacheDir = cacheDir;
+        this.cha = cha;
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param capsuleName A fully qualified name of a capsule (e.g. "org.paninij.examples.pi.Pi").
+     * @return The cached results for the given capsule, or `null` if there are no such results or
+     *         if any of the classes on which these results depend have changed.
+     */
+    public SoterResults lookup(String capsuleName) throws IOException
+    {
+        File entryDir = cacheDir.resolve(capsuleName).toFile();
+        File dependenciesFile = new File(entryDir, DEPENDENCIES_FILE);
+        if (!dependenciesFile.isFile()) {
+            return null;
+        }
+
+        Properties dependencyProperties = load(dependenciesFile);
+        if (!FORMAT_VERSION.equals(dependencyProperties.remove(FORMAT_VERSION_KEY))) {
+            note("Ignoring cached results with an unknown format: " + capsuleName);
+            return null;
+        }
+        if (!configuration.equals(dependencyProperties.remove(CONFIGURATION_KEY))) {
+            note("Ignoring cached results made with another configuration: " + capsuleName);
+            return null;
+        }
+
+        Properties instrumented = loadInstrumented(entryDir);
+        Map<String, String> dependencies = new HashMap<String, String>();
+        for (String className : dependencyProperties.stringPropertyNames())
+        {
+            String hash = dependencyProperties.getProperty(className);
+            IClass clazz = cha.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Application,
+                                                                      className));
+            String current = (clazz == null || !isHashable(clazz)) ? null : hash(clazz);
+            if (current == null || !(hash.equals(current)
+                                     || current.equals(instrumented.getProperty(className)))) {
+                note("Cached results are stale for " + capsuleName + ", since a dependency has "
+                     + "changed: " + className);
+                return null;
+            }
+            dependencies.put(className, hash);
+        }
+
+        Properties unsafeProperties = load(new File(entryDir, UNSAFE_TRANSFERS_FILE));
+        Map<String, SortedSet<Integer>> unsafeTransfers = new HashMap<String, SortedSet<Integer>>();
+        for (String signature : unsafeProperties.stringPropertyNames())
+        {
+            SortedSet<Integer> indices = new TreeSet<Integer>();
+            for (String index : unsafeProperties.getProperty(signature).split(",")) {
+                indices.add(Integer.parseInt(index));
+            }
+            unsafeTransfers.put(signature, indices);
+        }
+
+        TransferManifest manifest = TransferManifest.load(entryDir);
+        return new SoterResults(capsuleName, dependencies, unsafeTransfers, manifest);
+    }
+
+    public void store(SoterResults results) throws IOException
+    {
+        String capsuleName = results.getCapsuleName();
+        File entryDir = cacheDir.resolve(capsuleName).toFile();
+        Files.createDirectories(entryDir.toPath());
+
+        File dependenciesFile = new File(entryDir, DEPENDENCIES_FILE);
+        Files.deleteIfExists(dependenciesFile.toPath());
+        Files.deleteIfExists(new File(entryDir, INSTRUMENTED_FILE).toPath());
+
+        Properties unsafeProperties = new Properties();
+        for (Entry<String, SortedSet<Integer>> entry : results.getUnsafeTransfers().entrySet())
+        {
+            StringBuilder indices = new StringBuilder();
+            for (int index : entry.getValue()) {
+                indices.append(indices.length() == 0 ? "" : ",").append(index);
+            }
+            unsafeProperties.setProperty(entry.getKey(), indices.toString());
+        }
+        store(unsafeProperties, new File(entryDir, UNSAFE_TRANSFERS_FILE));
+
+        results.getManifest().store(new File(entryDir, capsuleName + TransferManifest.FILE_SUFFIX));
+
+        Properties dependencyProperties = new Properties();
+        dependencyProperties.putAll(results.getDependencies());
+        dependencyProperties.setProperty(FORMAT_VERSION_KEY, FORMAT_VERSION);
+        dependencyProperties.setProperty(CONFIGURATION_KEY, configuration);
+        store(dependencyProperties, dependenciesFile);
+    }
+
+    /**
+     * Records the bytecode which instrumenting the given capsule's core (a class of the form
+     * "Lorg/paninij/examples/pi/PiCore") produced from its stored results.
+     */
+    public void storeInstrumented(String capsuleName, String className, byte[] bytecode)
+        throws IOException
+    {
+        Properties instrumented = new Properties();
+        instrumented.setProperty(className, hash(bytecode));
+        store(instrumented, new File(cacheDir.resolve(capsuleName).toFile(), INSTRUMENTED_FILE));
+    }
+
+    /**
+     * @return `true` if and only if the given core class is the one which was written by
+     *         instrumenting the given capsule's core from its stored results.
+     */
+    public boolean isInstrumented(String capsuleName, IClass coreClass) throws IOException
+    {
+        if (!isHashable(coreClass)) {
+            return false;
+        }
+        String hash = loadInstrumented(cacheDir.resolve(capsuleName).toFile())
+                      .getProperty(coreClass.getName().toString());
+        return hash != null && hash.equals(hash(coreClass));
+    }
+
+    /**
+     * @return `true` if and only if the given class is an application class whose bytecode is
+     *         available to be hashed.
+     */
+    public static boolean isHashable(IClass clazz)
+    {
+        return clazz.getClassLoader().getReference().equals(ClassLoaderReference.Application)
+            && clazz instanceof ShrikeClass;
+    }
+
+    /**
+     * @return A hex string of the SHA-256 hash of the given class's bytecode.
+     */
+    public static String hash(IClass clazz)
+    {
+        assert isHashable(clazz);
+        return hash(((ShrikeClass) clazz).getReader().getBytes());
+    }
+
+    private static String hash(byte[] bytecode)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(bytecode);
+            StringBuilder builder = new StringBuilder();
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new RuntimeException("Failed to hash a class: " + ex, ex);
+        }
+    }
+
+    private static Properties loadInstrumented(File entryDir) throws IOException
+    {
+        File file = new File(entryDir, INSTRUMENTED_FILE);
+        return file.isFile() ? load(file) : new Properties();
+    }
+
+    private static Properties load(File file) throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, File file) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "Soter analysis cache");
+        }
+    }
+}
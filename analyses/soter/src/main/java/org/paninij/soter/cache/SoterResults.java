@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.soter.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.paninij.runtime.check.TransferManifest;
+import org.paninij.runtime.util.IdentitySet;
+import org.paninij.soter.SoterAnalysis;
+import org.paninij.soter.manifest.TransferManifestWriter;
+import org.paninij.soter.transfer.TransferSite;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.CGNode;
+
+/**
+ * A summary of the results of a performed `SoterAnalysis` for one capsule. It holds everything
+ * which is needed to instrument the capsule core and to write its transfer manifest. Unlike the
+ * analysis itself, a summary does not refer to any WALA objects, so it can be stored in and loaded
+ * from a `SoterCache`.
+ */
+public class SoterResults
+{
+    protected final String capsuleName;
+
+    /**
+     * Maps the name of each application class on which the analysis depended (e.g.
+     * "Lorg/paninij/examples/pi/PiCore") to a hash of that class's bytecode.
+     */
+    protected final Map<String, String> dependencies;
+
+    /**
+     * Maps the signature of each core method with unsafe transfer sites (e.g.
+     * "Lorg.paninij.examples.pi.PiCore.compute(I)D") to the bytecode indices of the instructions
+     * at those transfer sites.
+     */
+    protected final Map<String, SortedSet<Integer>> unsafeTransfers;
+
+    protected final TransferManifest manifest;
+
+    public SoterResults(String capsuleName, Map<String, String> dependencies,
+                        Map<String, SortedSet<Integer>> unsafeTransfers, TransferManifest manifest)
+    {
+        this.capsuleName = capsuleName;
+        this.dependencies = dependencies;
+        this.unsafeTransfers = unsafeTransfers;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Summarizes the results of the given (performed) analysis. The analysis is assumed to depend
+     * on the capsule core and on every application class with a method in the call graph.
+     *
+     * @param capsuleName A fully qualified name of a capsule (e.g. "org.paninij.examples.pi.Pi").
+     */
+    public static SoterResults make(String capsuleName, SoterAnalysis sa)
+    {
+        Map<String, String> dependencies = new HashMap<String, String>();
+        addDependency(dependencies, sa.getCapsuleCore().getCoreClass());
+        for (CGNode node : sa.getCallGraph()) {
+            addDependency(dependencies, node.getMethod().getDeclaringClass());
+        }
+
+        Map<String, SortedSet<Integer>> unsafeTransfers = new HashMap<String, SortedSet<Integer>>();
+        for (Entry<IMethod, IdentitySet<TransferSite>> entry : sa.getUnsafeTransferSitesMap().entrySet())
+        {
+            SortedSet<Integer> indices = new TreeSet<Integer>();
+            for (TransferSite site : entry.getValue()) {
+                indices.add(site.getInstruction().iindex);
+            }
+            unsafeTransfers.put("L" + entry.getKey().getSignature(), indices);
+        }
+
+        TransferManifest manifest = TransferManifestWriter.makeManifest(sa);
+        return new SoterResults(capsuleName, dependencies, unsafeTransfers, manifest);
+    }
+
+    private static void addDependency(Map<String, String> dependencies, IClass clazz)
+    {
+        if (SoterCache.isHashable(clazz)) {
+            dependencies.put(clazz.getName().toString(), SoterCache.hash(clazz));
+        }
+    }
+
+    /**
+     * @return A fully qualified name of a capsule (e.g. "org.paninij.examples.pi.Pi").
+     */
+    public String getCapsuleName()
+    {
+        return capsuleName;
+    }
+
+    public Map<String, String> getDependencies()
+    {
+        return Collections.unmodifiableMap(dependencies);
+    }
+
+    /**
+     * @return A map from the signatures of core methods (of the form
+     *         "Lorg.paninij.examples.pi.PiCore.compute(I)D") to the bytecode indices of the
+     *         unsafe transfer sites within those methods. Methods without unsafe transfer sites
+     *         are not in the map.
+     */
+    public Map<String, SortedSet<Integer>> getUnsafeTransfers()
+    {
+        return Collections.unmodifiableMap(unsafeTransfers);
+    }
+
+    public TransferManifest getManifest()
+    {
+        return manifest;
+    }
+}
@@ -25,8 +25,10 @@
  *******************************************************************************/
 package org.paninij.soter.cga;
 
+import org.paninij.runtime.util.IdentitySet;
 import org.paninij.soter.model.CapsuleCore;
 import org.paninij.soter.util.Analysis;
+import org.paninij.soter.util.SoterUtil;
 
 import com.ibm.wala.analysis.pointers.BasicHeapGraph;
 import com.ibm.wala.analysis.pointers.HeapGraph;
@@ -38,6 +40,7 @@ import com.ibm.wala.ipa.callgraph.ContextSelector;
 import com.ibm.wala.ipa.callgraph.propagation.HeapModel;
 import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
 import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
 import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXCFABuilder;
 import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXInstanceKeys;
@@ -130,9 +133,25 @@ public class CallGraphAnalysis extends Analysis
         return pointerAnalysis;
     }
     
+    /**
+     * @return The heap graph of the whole-program pointer analysis, or `null` if this analysis
+     *         does not build one (see `DemandCallGraphAnalysis`).
+     */
     public HeapGraph<InstanceKey> getHeapGraph()
     {
         assert hasBeenPerformed;
         return heapGraph;
     }
+
+    /**
+     * @return The set of all instance keys which are (transitively) reachable from the given
+     *         pointer key.
+     *
+     * @see SoterUtil#makePointsToClosure(PointerKey, HeapGraph)
+     */
+    public IdentitySet<InstanceKey> makePointsToClosure(PointerKey ptr)
+    {
+        assert hasBeenPerformed;
+        return SoterUtil.makePointsToClosure(ptr, heapGraph);
+    }
 }
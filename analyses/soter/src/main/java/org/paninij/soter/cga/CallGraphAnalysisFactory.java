@@ -35,17 +35,33 @@ import com.ibm.wala.ipa.cha.IClassHierarchy;
 public class CallGraphAnalysisFactory
 {
     protected final IClassHierarchy cha;
-    protected final AnalysisOptions options;
+    protected final boolean demandPointsTo;
     
-    public CallGraphAnalysisFactory(IClassHierarchy cha, AnalysisOptions options)
+    public CallGraphAnalysisFactory(IClassHierarchy cha)
+    {
+        this(cha, false);
+    }
+
+    /**
+     * @param demandPointsTo If this is `true`, then the factory makes `DemandCallGraphAnalysis`
+     *                       instances instead of (whole-program) `CallGraphAnalysis` instances.
+     */
+    public CallGraphAnalysisFactory(IClassHierarchy cha, boolean demandPointsTo)
     {
         this.cha = cha;
-        this.options = options;
+        this.demandPointsTo = demandPointsTo;
     }
 
+    /**
+     * Note that each call graph analysis is given its own `AnalysisOptions` instance, since a call
+     * graph analysis overwrites the entrypoints of its options. This way, the analyses made by one
+     * factory can be performed concurrently over the factory's (read-only) class hierarchy.
+     */
     public CallGraphAnalysis make(CapsuleCore core)
     {
-        return new CallGraphAnalysis(core, cha, options);
+        AnalysisOptions options = WalaUtil.makeAnalysisOptions(cha);
+        return demandPointsTo ? new DemandCallGraphAnalysis(core, cha, options)
+                              : new CallGraphAnalysis(core, cha, options);
     }
     
     /**
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.soter.cga;
+
+import static org.paninij.soter.util.SoterUtil.isKnownToBeEffectivelyImmutable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.paninij.runtime.util.IdentitySet;
+import org.paninij.runtime.util.IdentityStack;
+import org.paninij.soter.model.CapsuleCore;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IField;
+import com.ibm.wala.demandpa.alg.ContextSensitiveStateMachine;
+import com.ibm.wala.demandpa.alg.DemandRefinementPointsToAnalysis;
+import com.ibm.wala.demandpa.alg.refinepolicy.TunedRefinementPolicy;
+import com.ibm.wala.demandpa.util.MemoryAccess;
+import com.ibm.wala.demandpa.util.MemoryAccessMap;
+import com.ibm.wala.demandpa.util.SimpleMemoryAccessMap;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilderCancelException;
+import com.ibm.wala.ipa.callgraph.propagation.ArrayContentsKey;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceFieldKey;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.LocalPointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.propagation.SSAPropagationCallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.propagation.StaticFieldKey;
+import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXCFABuilder;
+import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXInstanceKeys;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ssa.SSAArrayStoreInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAPutInstruction;
+
+
+/**
+ * An alternative to `CallGraphAnalysis` which does not perform a whole-program, allocation-site
+ * based pointer analysis. Instead, it builds a cheap type-based (i.e. zero-CFA) call graph, and
+ * then answers only those points-to queries which are raised by the transfer sites, using WALA's
+ * demand-driven, refinement-based pointer analysis. The instance keys of these answers still
+ * abstract allocation sites (as with `CallGraphAnalysis.INSTANCE_POLICY`).
+ *
+ * The demand-driven analysis only answers queries on local pointer keys. So, to make the
+ * points-to closure of an instance key, the field writes which may store into that instance are
+ * found via a `MemoryAccessMap`, and the points-to sets of their (local) stored values are queried.
+ * All answers are memoized, and so are shared by all of the queries of one SOTER analysis.
+ *
+ * Since no heap graph is built, `getHeapGraph()` returns `null`.
+ */
+public class DemandCallGraphAnalysis extends CallGraphAnalysis
+{
+    // Artifacts generated by performing the analysis:
+    protected DemandRefinementPointsToAnalysis demandPointsTo;
+    protected MemoryAccessMap memoryAccessMap;
+
+    // Memoized query results. Note that instance keys are canonicalized, because the demand-driven
+    // analysis may make different (but equal) instance keys for the same allocation site, whereas
+    // the points-to closures are compared by identity.
+    protected final Map<PointerKey, IdentitySet<InstanceKey>> pointsToMap;
+    protected final Map<InstanceKey, InstanceKey> canonicalInstanceKeys;
+
+    public DemandCallGraphAnalysis(CapsuleCore core, IClassHierarchy cha, AnalysisOptions options)
+    {
+        this(core, cha, options, new AnalysisCache());
+    }
+
+    public DemandCallGraphAnalysis(CapsuleCore core, IClassHierarchy cha, AnalysisOptions options,
+                                   AnalysisCache cache)
+    {
+        super(core, cha, options, cache);
+        pointsToMap = new HashMap<PointerKey, IdentitySet<InstanceKey>>();
+        canonicalInstanceKeys = new HashMap<InstanceKey, InstanceKey>();
+    }
+
+    /**
+     * Builds the zero-CFA call graph and prepares the demand-driven pointer analysis. Note that by
+     * calling this function, any entrypoints stored in `options` will be overridden with new
+     * entrypoints.
+     *
+     * @see org.paninij.soter.util.Analysis#perform()
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void performAnalysis()
+    {
+        options.setEntrypoints(CapsuleCoreEntrypoint.makeAll(core.getCoreClass()));
+
+        PropagationCallGraphBuilder builder = ZeroXCFABuilder.make(cha, options, cache, null, null,
+                                                                   ZeroXInstanceKeys.NONE);
+
+        // This builder is never used to build a call graph. It only serves as the heap model of
+        // the demand-driven queries, so that their instance keys abstract allocation sites.
+        SSAPropagationCallGraphBuilder heapModelBuilder = ZeroXCFABuilder.make(cha, options, cache,
+                                                                               null, null,
+                                                                               INSTANCE_POLICY);
+        try
+        {
+            callGraph = builder.makeCallGraph(options, null);
+            pointerAnalysis = builder.getPointerAnalysis();
+            heapModel = heapModelBuilder;
+            heapGraph = null;
+
+            memoryAccessMap = new SimpleMemoryAccessMap(callGraph, heapModel, false);
+            demandPointsTo = DemandRefinementPointsToAnalysis.makeWithDefaultFlow(
+                                 callGraph, heapModel, memoryAccessMap, cha, options,
+                                 new ContextSensitiveStateMachine.Factory());
+            demandPointsTo.setRefinementPolicyFactory(new TunedRefinementPolicy.Factory(cha));
+        }
+        catch (CallGraphBuilderCancelException ex)
+        {
+            String msg = "Call graph construction was unexpectedly cancelled: ";
+            throw new IllegalArgumentException(msg + core.toString());
+        }
+    }
+
+    @Override
+    public IdentitySet<InstanceKey> makePointsToClosure(PointerKey ptr)
+    {
+        assert hasBeenPerformed;
+
+        IdentitySet<InstanceKey> closure = new IdentitySet<InstanceKey>();
+        IdentityStack<InstanceKey> workstack = new IdentityStack<InstanceKey>();
+        addAllToClosure(getPointsTo(ptr), closure, workstack);
+
+        InstanceKey instanceKey;
+        while ((instanceKey = workstack.pop()) != null)
+        {
+            IClass type = instanceKey.getConcreteType();
+            if (type.isArrayClass())
+            {
+                if (type.getReference().getArrayElementType().isReferenceType()) {
+                    PointerKey contents = heapModel.getPointerKeyForArrayContents(instanceKey);
+                    addAllToClosure(getPointsTo(contents), closure, workstack);
+                }
+                continue;
+            }
+            for (IField field : type.getAllInstanceFields())
+            {
+                if (field.getFieldTypeReference().isReferenceType()) {
+                    PointerKey fieldKey = heapModel.getPointerKeyForInstanceField(instanceKey, field);
+                    addAllToClosure(getPointsTo(fieldKey), closure, workstack);
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static void addAllToClosure(IdentitySet<InstanceKey> instanceKeys,
+                                        IdentitySet<InstanceKey> closure,
+                                        IdentityStack<InstanceKey> workstack)
+    {
+        for (InstanceKey instanceKey : instanceKeys)
+        {
+            if (!isKnownToBeEffectivelyImmutable(instanceKey) && closure.add(instanceKey)) {
+                workstack.push(instanceKey);
+            }
+        }
+    }
+
+    /**
+     * @return The (memoized) set of canonical instance keys to which the given pointer key may
+     *         point.
+     */
+    protected IdentitySet<InstanceKey> getPointsTo(PointerKey ptr)
+    {
+        IdentitySet<InstanceKey> pointsTo = pointsToMap.get(ptr);
+        if (pointsTo != null) {
+            return pointsTo;
+        }
+
+        if (ptr instanceof LocalPointerKey) {
+            pointsTo = canonicalize(demandPointsTo.getPointsTo(ptr));
+        } else if (ptr instanceof InstanceFieldKey) {
+            InstanceFieldKey fieldKey = (InstanceFieldKey) ptr;
+            // Note that a `SimpleMemoryAccessMap` ignores the base pointer argument.
+            pointsTo = getStoredPointsTo(memoryAccessMap.getFieldWrites(null, fieldKey.getField()),
+                                         fieldKey.getInstanceKey());
+        } else if (ptr instanceof ArrayContentsKey) {
+            ArrayContentsKey contentsKey = (ArrayContentsKey) ptr;
+            pointsTo = getStoredPointsTo(memoryAccessMap.getArrayWrites(null),
+                                         contentsKey.getInstanceKey());
+        } else if (ptr instanceof StaticFieldKey) {
+            StaticFieldKey fieldKey = (StaticFieldKey) ptr;
+            pointsTo = getStoredPointsTo(memoryAccessMap.getStaticFieldWrites(fieldKey.getField()),
+                                         null);
+        } else {
+            throw new RuntimeException("Found `PointerKey` which can't be handled: " + ptr);
+        }
+
+        pointsToMap.put(ptr, pointsTo);
+        return pointsTo;
+    }
+
+    /**
+     * @param writes The field or array writes which may store into some heap location.
+     * @param base   The instance key whose heap location is being queried, or `null` if the
+     *               location is a static field.
+     * @return The set of instance keys which may be stored by any of the given writes into `base`.
+     */
+    private IdentitySet<InstanceKey> getStoredPointsTo(Collection<MemoryAccess> writes,
+                                                       InstanceKey base)
+    {
+        IdentitySet<InstanceKey> pointsTo = new IdentitySet<InstanceKey>();
+        for (MemoryAccess write : writes)
+        {
+            CGNode node = write.getNode();
+            SSAInstruction instr = node.getIR().getInstructions()[write.getInstructionIndex()];
+
+            int ref, val;
+            if (instr instanceof SSAPutInstruction) {
+                SSAPutInstruction put = (SSAPutInstruction) instr;
+                ref = put.isStatic() ? -1 : put.getRef();
+                val = put.getVal();
+            } else if (instr instanceof SSAArrayStoreInstruction) {
+                SSAArrayStoreInstruction store = (SSAArrayStoreInstruction) instr;
+                ref = store.getArrayRef();
+                val = store.getValue();
+            } else {
+                throw new RuntimeException("Found a heap write which can't be handled: " + instr);
+            }
+
+            // Ignore any writes whose base can not be the queried instance.
+            if (base != null) {
+                PointerKey refKey = heapModel.getPointerKeyForLocal(node, ref);
+                if (!getPointsTo(refKey).contains(canonicalize(base))) {
+                    continue;
+                }
+            }
+            pointsTo.addAll(getPointsTo(heapModel.getPointerKeyForLocal(node, val)));
+        }
+        return pointsTo;
+    }
+
+    private IdentitySet<InstanceKey> canonicalize(Collection<InstanceKey> instanceKeys)
+    {
+        IdentitySet<InstanceKey> canonical = new IdentitySet<InstanceKey>();
+        for (InstanceKey instanceKey : instanceKeys) {
+            canonical.add(canonicalize(instanceKey));
+        }
+        return canonical;
+    }
+
+    private InstanceKey canonicalize(InstanceKey instanceKey)
+    {
+        InstanceKey canonical = canonicalInstanceKeys.putIfAbsent(instanceKey, instanceKey);
+        return (canonical == null) ? instanceKey : canonical;
+    }
+}
@@ -29,18 +29,13 @@ import static java.io.File.separator;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.SortedSet;
 
 import org.paninij.runtime.check.DynamicOwnershipTransfer;
-import org.paninij.runtime.util.IdentitySet;
-import org.paninij.soter.SoterAnalysis;
+import org.paninij.soter.cache.SoterResults;
 import org.paninij.soter.model.CapsuleCore;
-import org.paninij.soter.transfer.TransferSite;
 
-import com.ibm.wala.classLoader.IMethod;
-import com.ibm.wala.classLoader.ShrikeClass;
 import com.ibm.wala.shrikeBT.DupInstruction;
 import com.ibm.wala.shrikeBT.InvokeInstruction;
 import com.ibm.wala.shrikeBT.MethodData;
@@ -56,26 +51,26 @@ import com.ibm.wala.shrikeCT.InvalidClassFileException;
 public class SoterInstrumenter
 {
     protected final CapsuleCore core;
-    protected final SoterAnalysis sa;
+    protected final SoterResults results;
     protected final String outputDir;
     protected final ClassInstrumenter instrumenter;  // Instrumenter of the capsule core class.
     
     protected final String outputFilePath;
-    protected final ShrikeClass shrikeClass;
-    protected final Map<String, IdentitySet<TransferSite>> unsafeTransferSitesMap;
+    protected final Map<String, SortedSet<Integer>> unsafeTransfers;
     protected final MethodInstrumenter methodInstrumenter;
 
-    public SoterInstrumenter(CapsuleCore core, String outputDir, SoterAnalysis sa,
+    protected byte[] instrumentedClass;  // The bytecode written by `perform()`, if any.
+
+    public SoterInstrumenter(CapsuleCore core, String outputDir, SoterResults results,
                              ClassInstrumenter instrumenter) throws InvalidClassFileException
     {
         this.core = core;
-        this.sa = sa;
+        this.results = results;
         this.outputDir = outputDir;
         this.instrumenter = instrumenter;
 
         outputFilePath = outputDir + separator + instrumenter.getReader().getName() + ".class";
-        shrikeClass = (ShrikeClass) core.getCoreClass();
-        unsafeTransferSitesMap = new HashMap<String, IdentitySet<TransferSite>>();
+        unsafeTransfers = results.getUnsafeTransfers();
         methodInstrumenter = new MethodInstrumenter();
     }
 
@@ -83,8 +78,7 @@ public class SoterInstrumenter
     {
         try
         {
-            buildUnsafeTransferSitesMap();
-            if (unsafeTransferSitesMap.isEmpty()) {
+            if (unsafeTransfers.isEmpty()) {
                 return;  // Return if there are no transfer sites that need instrumentation.
             }
             
@@ -96,20 +90,21 @@ public class SoterInstrumenter
         }
     }
     
-    protected void buildUnsafeTransferSitesMap()
+    /**
+     * @return The bytecode of the instrumented core class which was written by `perform()`, or
+     *         `null` if the core had no transfer sites to instrument.
+     */
+    public byte[] getInstrumentedClass()
     {
-        for (Entry<IMethod, IdentitySet<TransferSite>> entry : sa.getUnsafeTransferSitesMap().entrySet())
-        {
-            String signature = "L" + entry.getKey().getSignature();
-            unsafeTransferSitesMap.put(signature, entry.getValue());
-        }
+        return instrumentedClass;
     }
-    
+
     protected void writeInstrumentedClassFile() throws InvalidClassFileException, IOException
     {
         ClassWriter classWriter = instrumenter.emitClass();
+        instrumentedClass = classWriter.makeBytes();
         FileOutputStream outputStream = new FileOutputStream(outputFilePath);
-        outputStream.write(classWriter.makeBytes());
+        outputStream.write(instrumentedClass);
         outputStream.flush();
         outputStream.close();
     }
@@ -129,7 +124,7 @@ public class SoterInstrumenter
             String signature = methodData.getClassType().replace('/', '.').replace(';', '.')
                              + methodData.getName()
                              + methodData.getSignature();
-            IdentitySet<TransferSite> unsafeTransferSites = unsafeTransferSitesMap.get(signature);
+            SortedSet<Integer> unsafeTransferSites = unsafeTransfers.get(signature);
 
             // Ignore any methods on the core in which there are no unsafe transfer sites.
             if (unsafeTransferSites == null || unsafeTransferSites.isEmpty()) {
@@ -139,20 +134,20 @@ public class SoterInstrumenter
         }
         
         private void instrumentUnsafeTransferSites(MethodData methodData,
-                                                   IdentitySet<TransferSite> unsafeTransferSites)
+                                                   SortedSet<Integer> unsafeTransferSites)
         {
             MethodEditor methodEditor = new MethodEditor(methodData);
-            for (TransferSite site : unsafeTransferSites) {
-                patchUnsafeTransferSite(methodEditor, site);
+            for (int instructionIndex : unsafeTransferSites) {
+                patchUnsafeTransferSite(methodEditor, instructionIndex);
             }
             methodEditor.applyPatches();
             methodEditor.endPass();
         }
         
-        private void patchUnsafeTransferSite(MethodEditor methodEditor, TransferSite site)
+        private void patchUnsafeTransferSite(MethodEditor methodEditor, int instructionIndex)
         {
             methodEditor.beginPass();
-            methodEditor.insertBefore(site.getInstruction().iindex, new Patch()
+            methodEditor.insertBefore(instructionIndex, new Patch()
             {
                 @Override
                 public void emitTo(Output w)
@@ -25,7 +25,7 @@
  *******************************************************************************/
 package org.paninij.soter.instrument;
 
-import org.paninij.soter.SoterAnalysis;
+import org.paninij.soter.cache.SoterResults;
 import org.paninij.soter.model.CapsuleCore;
 
 import com.ibm.wala.classLoader.IClass;
@@ -43,9 +43,8 @@ public class SoterInstrumenterFactory
         this.outputDir = outputDir;
     }
 
-    public SoterInstrumenter make(SoterAnalysis sa)
+    public SoterInstrumenter make(CapsuleCore core, SoterResults results)
     {
-        CapsuleCore core = sa.getCapsuleCore();
         IClass coreClass = core.getCoreClass();
         if (coreClass instanceof ShrikeClass == false) {
             String msg = "Could not cast the core's `IClass` to a `ShrikeClass`";
@@ -59,7 +58,7 @@ public class SoterInstrumenterFactory
                                                                    coreShrike.getReader(),
                                                                    new ClassHierarchyStore(),
                                                                    false);
-            return new SoterInstrumenter(core, outputDir, sa, instrumenter);
+            return new SoterInstrumenter(core, outputDir, results, instrumenter);
         }
         catch (InvalidClassFileException ex)
         {
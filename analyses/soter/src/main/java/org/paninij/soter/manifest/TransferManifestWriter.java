@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.soter.manifest;
+
+import static org.paninij.soter.util.Log.note;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.paninij.runtime.check.TransferManifest;
+import org.paninij.soter.SoterAnalysis;
+import org.paninij.soter.cache.SoterResults;
+import org.paninij.soter.model.CapsuleCore;
+import org.paninij.soter.transfer.TransferSite;
+import org.paninij.soter.util.PaniniModel;
+
+import com.ibm.wala.classLoader.IMethod;
+
+/**
+ * Writes the results of a performed `SoterAnalysis` to a `TransferManifest` file, so that the
+ * annotation processor can omit the dynamic ownership transfer checks which the analysis has
+ * proven unnecessary. The manifest file is named after the analyzed capsule (e.g.
+ * `com.example.Foo.transfers` for the core `com.example.FooCore`), and placed in `outputDir`.
+ * The manifest itself is made by `makeManifest()` and kept in the analysis's `SoterResults`, so
+ * that it can also be written from cached results.
+ *
+ * The manifest records whether each procedure of the analyzed core only returns safe results.
+ * The analysis's invocation transfer sites are not recorded, since the processor does not check
+ * arguments dynamically (see `TransferManifest`).
+ */
+public class TransferManifestWriter
+{
+    protected final SoterResults results;
+    protected final String outputDir;
+
+    public TransferManifestWriter(SoterResults results, String outputDir)
+    {
+        this.results = results;
+        this.outputDir = outputDir;
+    }
+
+    public void perform() throws IOException
+    {
+        File file = new File(outputDir, results.getCapsuleName() + TransferManifest.FILE_SUFFIX);
+        note("Writing transfer manifest: " + file);
+        results.getManifest().store(file);
+    }
+
+    public static TransferManifest makeManifest(SoterAnalysis sa)
+    {
+        TransferManifest manifest = new TransferManifest();
+        CapsuleCore core = sa.getCapsuleCore();
+        String capsuleName = toCapsuleName(core.getQualifiedName());
+
+        // Every procedure which is reached by the call graph is safe unless the analysis found an
+        // unsafe return transfer site within it.
+        for (IMethod method : core.getCoreClass().getDeclaredMethods())
+        {
+            if (method.isInit() || method.isClinit() || method.isStatic()) {
+                continue;
+            }
+            if (PaniniModel.isProcedure(method) && !sa.getCallGraph().getNodes(method.getReference()).isEmpty()) {
+                manifest.putResult(capsuleName, getName(method), getArity(method), true);
+            }
+        }
+
+        for (TransferSite site : sa.getTransferSites())
+        {
+            boolean isSafe = sa.isSafeTransferSite(site);
+            switch (site.getKind())
+            {
+            case RETURN:
+                IMethod method = site.getNode().getMethod();
+                manifest.putResult(capsuleName, getName(method), getArity(method), isSafe);
+                break;
+            case INVOKE:
+                // Arguments are not checked dynamically, so only results are recorded.
+                break;
+            default:
+                throw new IllegalStateException("Unknown transfer site kind: " + site.getKind());
+            }
+        }
+        return manifest;
+    }
+
+    private static String getName(IMethod method)
+    {
+        return method.getName().toString();
+    }
+
+    /**
+     * Note that `IMethod.getNumberOfParameters()` counts the implicit `this` parameter.
+     */
+    private static int getArity(IMethod method)
+    {
+        return method.getNumberOfParameters() - 1;
+    }
+
+    /**
+     * @param qualifiedCoreName A core name of the form "org/paninij/examples/pi/PiCore".
+     * @return The name of the core's capsule, of the form "org.paninij.examples.pi.Pi".
+     */
+    private static String toCapsuleName(String qualifiedCoreName)
+    {
+        String name = qualifiedCoreName.replace('/', '.');
+        assert name.endsWith("Core");
+        return name.substring(0, name.length() - "Core".length());
+    }
+}
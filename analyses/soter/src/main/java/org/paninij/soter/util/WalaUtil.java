@@ -170,6 +170,26 @@ public class WalaUtil
     }
     
     
+    /**
+     * WALA computes the members of an `IClass` lazily and without synchronization. This forces
+     * these members to be computed for every class in the given class hierarchy, so that the class
+     * hierarchy can afterwards be shared between threads.
+     */
+    public static void initializeLazyMembers(IClassHierarchy cha)
+    {
+        for (IClass clazz : cha)
+        {
+            clazz.getDeclaredMethods();
+            clazz.getDeclaredInstanceFields();
+            clazz.getDeclaredStaticFields();
+        }
+    }
+
+
+    /**
+     * Note that this uses a temporary file with a fixed name, so calls to this method must not
+     * happen concurrently.
+     */
     public static <T> void makeGraphFile(Graph<T> graph, String filename)
     {
         try
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Used to declare that a procedure of a {@link Sharded @Sharded} capsule can be sent to any of
+ * its shards, because it does not depend on which part of the state it sees (e.g. it only uses
+ * the capsule's imports).
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * Every procedure of a sharded capsule must either have a {@link ShardKey @ShardKey} parameter
+ * or be <code>@AnyShard</code>. A call to an <code>@AnyShard</code> procedure is sent to the
+ * shard with the fewest queued messages. So, unlike the calls of a capsule which is not
+ * sharded, two such calls from the same sender may be handled by different shards in either
+ * order, and neither is ordered with respect to the sender's calls with a key.
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+public @interface AnyShard { }
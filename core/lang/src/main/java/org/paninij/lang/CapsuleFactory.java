@@ -29,6 +29,8 @@ import static java.text.MessageFormat.format;
 
 import java.lang.String;
 
+import org.paninij.runtime.Capsule$Adaptive;
+import org.paninij.runtime.Capsule$Combining;
 import org.paninij.runtime.Capsule$Monitor;
 import org.paninij.runtime.Capsule$Serial;
 import org.paninij.runtime.Capsule$Task;
@@ -42,27 +44,39 @@ import org.paninij.runtime.Panini$Capsule;
  */
 public class CapsuleFactory
 {
-    public final Class<Panini$Capsule>  capsuleInterface;
-    public final Class<Capsule$Monitor> capsuleMonitor;
-    public final Class<Capsule$Serial>  capsuleSerial;
-    public final Class<Capsule$Task>    capsuleTask;
-    public final Class<Capsule$Thread>  capsuleThread;
+    public final Class<Panini$Capsule>    capsuleInterface;
+    public final Class<Capsule$Monitor>   capsuleMonitor;
+    public final Class<Capsule$Combining> capsuleCombining;
+    public final Class<Capsule$Adaptive>  capsuleAdaptive;
+    public final Class<Capsule$Serial>    capsuleSerial;
+    public final Class<Capsule$Task>      capsuleTask;
+    public final Class<Capsule$Thread>    capsuleThread;
 
     @SuppressWarnings("unchecked")
     public CapsuleFactory(Class<? extends Panini$Capsule> clazz) throws ClassNotFoundException
     {
         capsuleInterface = (Class<Panini$Capsule>) clazz;
         
-        capsuleMonitor = (Class<Capsule$Monitor>) Class.forName(clazz.getName() + "$Monitor");
-        capsuleSerial  = (Class<Capsule$Serial>)  Class.forName(clazz.getName() + "$Serial");
-        capsuleTask    = (Class<Capsule$Task>)    Class.forName(clazz.getName() + "$Task");
-        capsuleThread  = (Class<Capsule$Thread>)  Class.forName(clazz.getName() + "$Thread");
+        capsuleMonitor   = (Class<Capsule$Monitor>)   Class.forName(clazz.getName() + "$Monitor");
+        capsuleCombining = (Class<Capsule$Combining>) Class.forName(clazz.getName() + "$Combining");
+        capsuleAdaptive  = (Class<Capsule$Adaptive>)  Class.forName(clazz.getName() + "$Adaptive");
+        capsuleSerial    = (Class<Capsule$Serial>)    Class.forName(clazz.getName() + "$Serial");
+        capsuleTask      = (Class<Capsule$Task>)      Class.forName(clazz.getName() + "$Task");
+        capsuleThread    = (Class<Capsule$Thread>)    Class.forName(clazz.getName() + "$Thread");
     }
 
     public Capsule$Monitor newMonitorInstance() {
         return newInstance(capsuleMonitor);
     }
 
+    public Capsule$Combining newCombiningInstance() {
+        return newInstance(capsuleCombining);
+    }
+
+    public Capsule$Adaptive newAdaptiveInstance() {
+        return newInstance(capsuleAdaptive);
+    }
+
     public Capsule$Serial newSerialInstance() {
         return newInstance(capsuleSerial);
     }
@@ -81,6 +95,10 @@ public class CapsuleFactory
         switch (profile) {
         case MONITOR:
             return newMonitorInstance();
+        case COMBINING:
+            return newCombiningInstance();
+        case ADAPTIVE:
+            return newAdaptiveInstance();
         case SERIAL:
             return newSerialInstance();
         case TASK:
@@ -97,6 +115,10 @@ public class CapsuleFactory
         switch (profile) {
         case MONITOR:
             return capsuleMonitor;
+        case COMBINING:
+            return capsuleCombining;
+        case ADAPTIVE:
+            return capsuleAdaptive;
         case SERIAL:
             return capsuleSerial;
         case TASK:
@@ -57,6 +57,24 @@ import java.lang.annotation.Documented;
  * same time and {@literal ->} denotes the RHS being notified only after the LHS completes.
  * </p>
  * 
+ * <h3>Pipelining</h3>
+ * <p>
+ * By default, separate announcements of a chained event proceed independently of each
+ * other, so a later announcement may overtake an earlier one at some subscriber. With
+ * <code>@Chain(pipelined = true)</code>, announcements instead flow through the subscribers
+ * like an assembly line: each subscriber is notified of announcements in the order they
+ * were made, and may work on one announcement while the subscribers after it still work on
+ * an earlier one. Throughput then approaches that of the slowest subscriber, rather than
+ * that of all subscribers together. In the example above, W1 may handle the second
+ * announcement while W2 handles the first, but W2 always handles the first before the
+ * second.
+ * </p>
+ * 
  */
 @Documented
-public @interface Chain { }
+public @interface Chain {
+    /**
+     * Whether successive announcements are pipelined through the subscribers.
+     */
+    boolean pipelined() default false;
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+
+/**
+ * <p>
+ * Used to let a capsule merge consecutive pending calls of a procedure into one message.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * Each call to a procedure is normally queued as its own message. For counters and streams of
+ * state updates, this can mean many messages which each do very little. When a
+ * <code>@Coalesce</code> procedure is called while the most recent message in the capsule's
+ * queue is a pending call to the same procedure, the new call is merged into that message.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * How calls are merged depends on the procedure's parameters:
+ * </p>
+ * <ul>
+ * <li>A procedure without parameters (e.g. an increment) is still invoked once per call, but
+ * the calls are counted in a single message.</li>
+ * <li>A procedure with parameters (e.g. a setter) is invoked once, with the arguments of the
+ * latest of the merged calls. The earlier calls are dropped, so it should be idempotent in
+ * that sense.</li>
+ * </ul>
+ * <p>
+ * A <code>@Coalesce</code> procedure must return <code>void</code>, and cannot be combined
+ * with <code>@Block</code>, <code>@Future</code>, <code>@Duck</code>, <code>@Priority</code>,
+ * or <code>@Deadline</code>. <code>MONITOR</code> and <code>SERIAL</code> capsules have no
+ * queue, so they invoke the procedure on every call.
+ * </p>
+ *
+ * <h3>Example</h3>
+ * <blockquote><pre>
+ * &#64;Capsule
+ * public CounterCore {
+ *     long count;
+ *
+ *     &#64;Coalesce
+ *     public void bump() {
+ *         count++;
+ *     }
+ * }
+ * </pre></blockquote>
+ */
+@Documented
+public @interface Coalesce { }
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+
+/**
+ * <p>
+ * Used to give each of a procedure's messages a deadline by which its capsule should handle it.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * A capsule handles the messages of <code>@Deadline</code> procedures in earliest-deadline-first
+ * order, before any message without a {@link Priority @Priority} or a deadline. The deadline of
+ * a message is the time of the call plus the given number of milliseconds.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * A deadline only orders messages; a message whose deadline has passed is still handled. Messages
+ * with equal deadlines are handled in the order they arrive. As with <code>@Priority</code>, the
+ * annotation has no effect on <code>MONITOR</code> or <code>SERIAL</code> capsules.
+ * </p>
+ */
+@Documented
+public @interface Deadline {
+    /**
+     * The deadline, relative to the call, in milliseconds.
+     */
+    long value();
+}
@@ -26,8 +26,13 @@
  *******************************************************************************/
 package org.paninij.lang;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 import org.paninij.runtime.EventMode;
 
@@ -38,11 +43,28 @@ import org.paninij.runtime.EventMode;
  *            the type of message that can be announced to handlers
  */
 public class Event<T> {
-    private ConcurrentLinkedQueue<EventConnection<T>> list = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings("rawtypes")
+    private static final EventConnection[] EMPTY = new EventConnection[0];
+
+    /**
+     * An immutable snapshot of the registered connections, in registration order. Registration
+     * and unregistration replace the snapshot with a (compacted) copy, so that an announcement can
+     * use the current snapshot without copying or locking it.
+     */
+    @SuppressWarnings("unchecked")
+    private volatile EventConnection<T>[] connections = EMPTY;
     private final EventMode mode;
 
+    /**
+     * For a `PIPELINE` event, guards the chain state of all of its executions, so that each
+     * execution can follow the one announced before it.
+     */
+    private final Object pipeline;
+    private EventExecution<T> lastExecution;
+
     public Event(EventMode mode) {
         this.mode = mode;
+        this.pipeline = (mode == EventMode.PIPELINE) ? new Object() : null;
     }
 
     /**
@@ -62,15 +84,114 @@ public class Event<T> {
      * @return a subscription to the event
      */
     public EventConnection<T> register(BiConsumer<EventExecution<T>, T> handler, RegisterType type) {
-        if (type == RegisterType.WRITE && mode == EventMode.BROADCAST) {
+        return register(handler, type, null);
+    }
+
+    /**
+     * Registers a reference to a `@Handler` to this event, which only receives
+     * announcements that satisfy the given filter.
+     * 
+     * The filter runs on the announcer's side: on the announcing capsule's
+     * thread for broadcast events, and on whichever thread advances the chain
+     * for chain events. An announcement which the filter rejects never
+     * reaches the handler's capsule, and counts as completed by this handler.
+     * So, the filter should be cheap and must not have side effects. In a
+     * chain event, a filter sees the message as left by the preceding
+     * writers.
+     * 
+     * @param handler
+     *            method reference to the handler
+     * @param type
+     *            whether the handler reads or writes
+     * @param filter
+     *            which announced messages to deliver to the handler, or
+     *            `null` to deliver all of them
+     * @return a subscription to the event
+     */
+    public EventConnection<T> register(BiConsumer<EventExecution<T>, T> handler, RegisterType type,
+            Predicate<? super T> filter) {
+        return add(new EventConnection<>(this, handler, null, type, filter));
+    }
+
+    /**
+     * Registers a reference to a batch `@Handler` (i.e. `@Handler(batch = true)`)
+     * to this event. The handler receives all of the values of an
+     * `announceAll()` as a single list, in one message. A single `announce()`
+     * is delivered to it as a list of one value.
+     * 
+     * @param handler
+     *            method reference to the batch handler
+     * @param type
+     *            whether the handler reads or writes
+     * @return a subscription to the event
+     */
+    public EventConnection<T> registerBatch(BiConsumer<EventExecution<T>, List<T>> handler,
+            RegisterType type) {
+        return registerBatch(handler, type, null);
+    }
+
+    /**
+     * Registers a reference to a batch `@Handler` to this event, which only
+     * receives the announced values that satisfy the given filter. A batch in
+     * which no value satisfies the filter is not delivered at all. See
+     * `register(BiConsumer, RegisterType, Predicate)` for the filter's
+     * requirements.
+     * 
+     * @param handler
+     *            method reference to the batch handler
+     * @param type
+     *            whether the handler reads or writes
+     * @param filter
+     *            which announced values to deliver to the handler, or `null`
+     *            to deliver all of them
+     * @return a subscription to the event
+     */
+    public EventConnection<T> registerBatch(BiConsumer<EventExecution<T>, List<T>> handler,
+            RegisterType type, Predicate<? super T> filter) {
+        return add(new EventConnection<>(this, null, handler, type, filter));
+    }
+
+    private EventConnection<T> add(EventConnection<T> conn) {
+        if (conn.type == RegisterType.WRITE && mode == EventMode.BROADCAST) {
             throw new IllegalArgumentException("Cannot register writer to broadcast event");
         }
 
-        EventConnection<T> conn = new EventConnection<>(handler, type);
-        list.add(conn);
+        synchronized (this) {
+            EventConnection<T>[] next = Arrays.copyOf(connections, connections.length + 1);
+            next[connections.length] = conn;
+            connections = next;
+        }
         return conn;
     }
 
+    /**
+     * Removes a connection from this event. Announcements which were
+     * initiated before this is called are unaffected.
+     * 
+     * @param conn
+     *            the connection to remove
+     * @return whether the connection was registered to this event
+     */
+    public synchronized boolean unregister(EventConnection<T> conn) {
+        EventConnection<T>[] current = connections;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == conn) {
+                EventConnection<T>[] next = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                connections = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of connections which are registered to this event
+     */
+    public int size() {
+        return connections.length;
+    }
+
     /**
      * Announces this event with the provided message.
      * 
@@ -79,11 +200,55 @@ public class Event<T> {
      * @return the announcement's event execution
      */
     public EventExecution<T> announce(T arg) {
-        ConcurrentLinkedQueue<EventConnection<T>> announceList = null;
-        announceList = new ConcurrentLinkedQueue<>(list);
+        EventExecution<T> ex = newExecution(arg, null);
+        ex.execute();
+        return ex;
+    }
 
-        EventExecution<T> ex = new EventExecution<>(announceList);
-        ex.execute(mode, arg);
+    /**
+     * Announces this event once with each of the provided messages, as a
+     * single execution. Each batch handler receives all of the messages in one
+     * list, and so in one message to its capsule. Any other handler receives
+     * each message separately, in order. In a chain event, every handler of a
+     * stage has received the whole batch before the next stage starts.
+     * 
+     * @param args
+     *            messages to send to handlers
+     * @return the event execution of the whole batch
+     */
+    public EventExecution<T> announceAll(Collection<? extends T> args) {
+        List<T> batch = Collections.unmodifiableList(new ArrayList<T>(args));
+        EventExecution<T> ex = newExecution(null, batch);
+        ex.execute();
         return ex;
     }
+
+    /**
+     * Makes the execution of an announcement of either `arg` or `batch`. In a `PIPELINE` event,
+     * the execution is complete before it is linked after the last one, since that one may go on
+     * to dispatch it as soon as the lock is released.
+     */
+    private EventExecution<T> newExecution(T arg, List<T> batch) {
+        if (pipeline == null) {
+            return new EventExecution<>(mode, connections, arg, batch);
+        }
+        synchronized (pipeline) {
+            EventExecution<T> ex = new EventExecution<>(mode, connections, arg, batch, pipeline,
+                    lastExecution);
+            lastExecution = ex;
+            return ex;
+        }
+    }
+
+    /**
+     * Announces this event once with each of the provided messages, as a
+     * single execution. See `announceAll(Collection)`.
+     * 
+     * @param args
+     *            messages to send to handlers
+     * @return the event execution of the whole batch
+     */
+    public EventExecution<T> announceAll(T[] args) {
+        return announceAll(Arrays.asList(args));
+    }
 }
@@ -26,7 +26,10 @@
  *******************************************************************************/
 package org.paninij.lang;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /** 
  * A subscription of a handler to an event.
@@ -34,16 +37,49 @@ import java.util.function.BiConsumer;
  * @param <T>
  */
 public class EventConnection<T> {
+    final Event<T> event;
+    // Exactly one of `handler` and `batchHandler` is set.
     BiConsumer<EventExecution<T>, T> handler;
+    BiConsumer<EventExecution<T>, List<T>> batchHandler;
     RegisterType type;
+    final Predicate<? super T> filter;
     volatile boolean on;
 
-    EventConnection(BiConsumer<EventExecution<T>, T> handler, RegisterType type) {
+    EventConnection(Event<T> event, BiConsumer<EventExecution<T>, T> handler,
+            BiConsumer<EventExecution<T>, List<T>> batchHandler, RegisterType type,
+            Predicate<? super T> filter) {
+        this.event = event;
         this.handler = handler;
+        this.batchHandler = batchHandler;
         this.type = type;
+        this.filter = filter;
         this.on = true;
     }
 
+    /**
+     * @return whether the handler wants to receive the given announcement
+     */
+    boolean accepts(T arg) {
+        return filter == null || filter.test(arg);
+    }
+
+    /**
+     * @return the announcements of the given batch which the handler wants to
+     *         receive (which is `batch` itself if there is no filter)
+     */
+    List<T> accepted(List<T> batch) {
+        if (filter == null) {
+            return batch;
+        }
+        List<T> accepted = new ArrayList<>(batch.size());
+        for (T arg : batch) {
+            if (filter.test(arg)) {
+                accepted.add(arg);
+            }
+        }
+        return accepted;
+    }
+
     /** 
      * Enables this handler to receive new announcements.
      */
@@ -59,4 +95,19 @@ public class EventConnection<T> {
     public void off() {
         on = false;
     }
+
+    /**
+     * Removes this connection from its event, so that the event no longer
+     * iterates over it. Unlike `off()`, this cannot be undone. Like `off()`,
+     * this does not affect announcements that were initiated before this is
+     * called.
+     * 
+     * A connection is also removed automatically once its handler's capsule
+     * has terminated and an announcement tries to reach it.
+     * 
+     * @return whether the connection was still registered
+     */
+    public boolean unregister() {
+        return event.unregister(this);
+    }
 }
@@ -26,35 +26,122 @@
  *******************************************************************************/
 package org.paninij.lang;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.paninij.runtime.EventMode;
+import org.paninij.runtime.Panini$Outbox;
+import org.paninij.runtime.Panini$TaskPool;
 
 /**
  * Represents a single announcement of some event.
+ * 
+ * Completion is tracked with an atomic counter of pending handlers, so
+ * handlers of a broadcast complete without contending on a lock. The
+ * announcer can wait for completion with `done()`, poll it with `isDone()`,
+ * or be notified asynchronously via `onComplete()` or `completion()`.
+ * 
+ * An execution may also carry a batch of announcements (see
+ * `Event.announceAll()`), in which case it completes once every handler has
+ * received every value of the batch it accepts.
+ * 
+ * The executions of a `PIPELINE` event each follow the one announced before
+ * them: an execution only dispatches a handler after its predecessor has
+ * dispatched that handler. So, each handler receives the announcements in
+ * order, while different handlers work on different announcements at once.
  *
  * @param <T>
  */
 public class EventExecution<T> {
-    private List<EventConnection<T>> list;
-    private EventMode mode;
-    private volatile int marks;
-    private volatile int nextIndex;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<EventExecution, CompletableFuture> FUTURE =
+            AtomicReferenceFieldUpdater.newUpdater(EventExecution.class, CompletableFuture.class, "future");
+
+    /**
+     * The event's snapshot of connections at the time of the announcement. This array is shared
+     * with the event and must not be modified. It may include connections which are turned off.
+     */
+    private EventConnection<T>[] list;
+    private final EventMode mode;
     private boolean hasExecuted;
-    private T arg;
+    private final T arg;
+    private final List<T> batch;
+
+    /**
+     * For a `PIPELINE`, which connections of `list` were off when the announcement was made, or
+     * `null` if all of them were on. Unlike a `CHAIN`, a pipeline keeps the event's snapshot as
+     * its `list`, which its successors compare against.
+     */
+    private final boolean[] off;
+
+    /**
+     * The number of dispatched handler invocations which have not yet completed, plus one
+     * while `execute()` is still dispatching. The execution is complete once
+     * this reaches zero.
+     */
+    private final AtomicInteger pending;
+
+    /**
+     * Made on demand by `completion()`, so that executions nobody waits on
+     * never allocate a future.
+     */
+    private volatile CompletableFuture<Void> future;
+
+    // The state of a `CHAIN` or `PIPELINE` execution, guarded by `lock`. `marks` and
+    // `dispatched` count handler invocations, of which a connection gets
+    // several when it receives the values of a batch one by one.
+    private int marks;
+    private int dispatched;
+    private int nextIndex;
+    private int barrier;
+    private boolean dispatching;
+
+    // For a `CHAIN`, `lock` is the execution itself. For a `PIPELINE`, it is
+    // shared by all executions of the event, which are linked in announcement
+    // order. `prev` is dropped once it has dispatched all of its handlers.
+    private final Object lock;
+    private EventExecution<T> prev;
+    private EventExecution<T> next;
+
+    // Set by `panini$markTerminated()` during the current dispatch. Only ever
+    // accessed by the dispatching thread.
+    private boolean dispatchTerminated;
     
-    EventExecution(ConcurrentLinkedQueue<EventConnection<T>> list) {
-        this.list = new ArrayList<>();
+    /**
+     * Makes the execution of an announcement of either `arg` or `batch`.
+     */
+    EventExecution(EventMode mode, EventConnection<T>[] list, T arg, List<T> batch) {
+        this(mode, list, arg, batch, null, null);
+    }
+
+    /**
+     * Makes an execution of a `PIPELINE` event, which follows `prev`. The
+     * caller must hold `lock`. The execution is linked after `prev` last, so
+     * that it is fully set up once another thread can dispatch it.
+     */
+    EventExecution(EventMode mode, EventConnection<T>[] list, T arg, List<T> batch, Object lock,
+            EventExecution<T> prev) {
+        this.mode = mode;
+        this.list = list;
+        this.arg = arg;
+        this.batch = batch;
+        this.off = (mode == EventMode.PIPELINE) ? offIn(list) : null;
+        this.lock = (lock == null) ? this : lock;
+        this.pending = new AtomicInteger(1);
         this.marks = 0;
+        this.dispatched = 0;
         this.nextIndex = 0;
+        this.barrier = 0;
         this.hasExecuted = false;
-        
-        for (EventConnection<T> c : list) {
-            if (c.on) {
-                this.list.add(c);
-            }
+        this.dispatching = false;
+        this.prev = prev;
+        if (prev != null) {
+            prev.next = this;
         }
     }
     
@@ -64,79 +151,323 @@ public class EventExecution<T> {
      * with the event data.
      * @return whether this event announcement is completed
      */
-    public synchronized boolean isDone() {
-        return marks < list.size();
+    public boolean isDone() {
+        return pending.get() == 0;
     }
     
     /**
      * Blocks until the event announcement has been completed.
      * i.e. Every subscribed capsule is done with the event data.
+     * The waiting thread is parked rather than spinning or holding a lock.
+     * 
+     * Note that blocking a capsule's thread stalls that capsule (a task
+     * capsule's pool starts a spare worker instead). Prefer
+     * `onComplete()` where the announcer does not need to wait.
      */
-    public synchronized void done() {
-        while (marks < list.size()) {
+    public void done() {
+        if (!isDone()) {
+            Panini$Outbox.flush();
+            Panini$TaskPool.beginBlocking();
             try {
-                this.wait();
-            } catch (InterruptedException e) {
-                // Do nothing
+                completion().toCompletableFuture().join();
+            } finally {
+                Panini$TaskPool.endBlocking();
             }
         }
-        
+    }
+
+    /**
+     * Runs the given action once the event announcement has been completed.
+     * If it is already complete, the action runs immediately on the calling
+     * thread. Otherwise, it runs on the thread which completes the last
+     * handler, so it should be short and must not block.
+     * 
+     * @param action
+     *            the action to run on completion
+     */
+    public void onComplete(Runnable action) {
+        if (isDone()) {
+            action.run();
+        } else {
+            completion().thenRun(action);
+        }
+    }
+
+    /**
+     * @return a stage which completes once the event announcement has been
+     *         completed
+     */
+    @SuppressWarnings("unchecked")
+    public CompletionStage<Void> completion() {
+        CompletableFuture<Void> f = future;
+        if (f == null) {
+            FUTURE.compareAndSet(this, null, new CompletableFuture<Void>());
+            f = future;
+            // The last handler may have completed before the future existed.
+            if (isDone()) {
+                f.complete(null);
+            }
+        }
+        return f;
     }
     
-    synchronized void execute(EventMode mode, T arg) {
+    void execute() {
         if (this.hasExecuted) {
             throw new IllegalStateException("Already executed");
         }
         this.hasExecuted = true;
-        this.mode = mode;
-        this.arg = arg;
         
         if (mode == EventMode.BROADCAST) {
+            // Every handler is reached during the announcement, so whether a connection is on
+            // can be checked while dispatching.
             for (EventConnection<T> c : list) {
-                c.handler.accept(this, arg);
+                if (c.on) {
+                    dispatch(c);
+                }
             }
         }
-        else if (mode == EventMode.CHAIN) {
-            doNextInChain();
+        else if (mode == EventMode.CHAIN || mode == EventMode.PIPELINE) {
+            // Later handlers are only reached after earlier ones complete, so the connections
+            // which are on must be fixed now. The snapshot is only copied if some are off.
+            // A pipeline fixed them in `off` when it was made.
+            // Each stage adds its invocations to `pending` as it is dispatched, before the
+            // previous stage's last completion is released, so `pending` stays positive.
+            if (mode == EventMode.CHAIN) {
+                list = onlyOn(list);
+            }
+            synchronized (lock) {
+                doNextInChain();
+            }
         }
         else {
             throw new IllegalArgumentException("Unknown event mode");
         }
+
+        release();
     }
 
-    public synchronized void panini$markComplete() {
-        this.marks++;
-        if (list.size() >= marks) {
-            this.notifyAll();
+    public void panini$markComplete() {
+        if (mode == EventMode.CHAIN || mode == EventMode.PIPELINE) {
+            synchronized (lock) {
+                marks++;
+                doNextInChain();
+            }
         }
-        if (mode == EventMode.CHAIN) {
-            doNextInChain();
+        release();
+    }
+
+    /**
+     * Tells the execution that the handler which it is currently dispatching
+     * to belongs to a capsule which has terminated. This must only be called
+     * by the handler itself, before it returns. The handler's connection is
+     * then unregistered, and it is counted as complete.
+     */
+    public void panini$markTerminated() {
+        dispatchTerminated = true;
+    }
+
+    private void release() {
+        release(1);
+    }
+
+    private void release(int invocations) {
+        if (pending.addAndGet(-invocations) == 0) {
+            CompletableFuture<Void> f = future;
+            if (f != null) {
+                f.complete(null);
+            }
         }
     }
-    
+
+    /**
+     * Invokes the handler of the given connection with every announced value
+     * which it accepts. Filters are checked first, so that rejected
+     * announcements cost no atomic updates, and a connection which accepts
+     * nothing is skipped. If the handler's capsule turns out to have
+     * terminated, its connection is removed from the event and its remaining
+     * invocations are counted as complete right away.
+     */
+    private void dispatch(EventConnection<T> c) {
+        dispatchTerminated = false;
+        if (batch == null) {
+            if (!c.accepts(arg)) {
+                return;
+            }
+            begin(c, 1);
+            if (c.batchHandler != null) {
+                c.batchHandler.accept(this, Collections.singletonList(arg));
+            } else {
+                c.handler.accept(this, arg);
+            }
+            if (dispatchTerminated) {
+                terminated(c, 1);
+            }
+        } else if (c.batchHandler != null) {
+            List<T> accepted = c.accepted(batch);
+            if (accepted.isEmpty()) {
+                return;
+            }
+            begin(c, 1);
+            c.batchHandler.accept(this, accepted);
+            if (dispatchTerminated) {
+                terminated(c, 1);
+            }
+        } else {
+            List<T> accepted = c.accepted(batch);
+            int size = accepted.size();
+            if (size == 0) {
+                return;
+            }
+            begin(c, size);
+            for (int i = 0; i < size; i++) {
+                c.handler.accept(this, accepted.get(i));
+                if (dispatchTerminated) {
+                    terminated(c, size - i);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Accounts for the given number of invocations of the handler of `c`,
+     * which must happen before the first of them, since the handler may
+     * complete at once.
+     */
+    private void begin(EventConnection<T> c, int invocations) {
+        pending.addAndGet(invocations);
+        if (mode != EventMode.BROADCAST) {
+            dispatched += invocations;
+            if (c.type == RegisterType.WRITE) {
+                barrier = dispatched;
+            }
+        }
+    }
+
+    /**
+     * Counts the given number of invocations of the handler of `c` as complete,
+     * since its capsule has terminated.
+     */
+    private void terminated(EventConnection<T> c, int invocations) {
+        dispatchTerminated = false;
+        c.unregister();
+        if (mode != EventMode.BROADCAST) {
+            marks += invocations;
+        }
+        release(invocations);
+    }
+
+    /**
+     * Dispatches as much of the chain as can run now. A writer may only be
+     * dispatched once every invocation before it has completed. A reader may
+     * be dispatched once the last writer before it has completed, so a run of
+     * readers is dispatched together. In a batch, each stage receives the
+     * whole batch before the next stage is dispatched.
+     * 
+     * In a pipeline, the progress of this execution may in turn let the
+     * executions announced after it progress.
+     */
     private void doNextInChain() {
-        if (marks != nextIndex) {
-            return;
+        EventExecution<T> ex = this;
+        while (ex.advance() && ex.next != null) {
+            ex = ex.next;
         }
-        
-        boolean hasReading = false;
-        for (int i = nextIndex; i < list.size(); i++) {
-            EventConnection<T> c = list.get(i);
-            if (c.type == RegisterType.READ) {
-                c.handler.accept(this, arg);
-                hasReading = true;
-            } else if (c.type == RegisterType.WRITE) {
-                if (hasReading) {
-                    nextIndex = i;
-                    break;
+    }
+
+    /**
+     * Dispatches as much of this execution's chain as can run now.
+     * 
+     * Handlers may complete during their own dispatch (e.g. for monitor
+     * capsules, or via `panini$markTerminated()`). Such completions do not
+     * recurse into this method; the loop just sees the updated `marks`.
+     * 
+     * @return whether any connection was reached
+     */
+    private boolean advance() {
+        if (dispatching) {
+            // The loop which is already dispatching will see the new state.
+            return false;
+        }
+        int reached = nextIndex;
+        dispatching = true;
+        try {
+            while (nextIndex < list.length && followsPrevious(nextIndex)) {
+                EventConnection<T> c = list[nextIndex];
+                if (c.type == RegisterType.READ) {
+                    if (marks < barrier) {
+                        break;
+                    }
+                } else if (c.type == RegisterType.WRITE) {
+                    if (marks < dispatched) {
+                        break;
+                    }
                 } else {
-                    nextIndex = i + 1;
-                    c.handler.accept(this, arg);
-                    break;
+                    throw new RuntimeException("Unknown register type");
                 }
-            } else {
-                throw new RuntimeException("Unknown register type");
+                int index = nextIndex++;
+                if (off == null || !off[index]) {
+                    dispatch(c);
+                }
+            }
+        } finally {
+            dispatching = false;
+        }
+        return nextIndex > reached;
+    }
+
+    /**
+     * @return whether the preceding execution of a pipeline has reached the
+     *         connection at `index`, so that this execution may reach it too
+     */
+    private boolean followsPrevious(int index) {
+        if (prev == null) {
+            return true;
+        }
+        if (prev.nextIndex == prev.list.length) {
+            prev = null;
+            return true;
+        }
+        // Snapshots are only shared while registrations are unchanged. Across
+        // a change, the previous execution must first reach all of its
+        // connections.
+        return prev.list == list && prev.nextIndex > index;
+    }
+
+    /**
+     * Returns which connections of `list` are off, or `null` if all of them are on. The flag of
+     * each connection is read exactly once.
+     */
+    private static <T> boolean[] offIn(EventConnection<T>[] list) {
+        boolean[] off = null;
+        for (int i = 0; i < list.length; i++) {
+            if (!list[i].on) {
+                if (off == null) {
+                    off = new boolean[list.length];
+                }
+                off[i] = true;
+            }
+        }
+        return off;
+    }
+
+    /**
+     * Returns the connections of `list` which are on. The flag of each connection is read exactly
+     * once, and `list` itself is returned if all of them are on.
+     */
+    private static <T> EventConnection<T>[] onlyOn(EventConnection<T>[] list) {
+        EventConnection<T>[] filtered = null;
+        int on = 0;
+        for (int i = 0; i < list.length; i++) {
+            if (list[i].on) {
+                if (filtered != null) {
+                    filtered[on] = list[i];
+                }
+                on++;
+            } else if (filtered == null) {
+                // The first `i` connections (all on) are already in place.
+                filtered = Arrays.copyOf(list, list.length);
             }
         }
+        return (filtered == null) ? list : Arrays.copyOf(filtered, on);
     }
 }
@@ -34,6 +34,10 @@ package org.paninij.lang;
  * <li>THREAD - Each capsule gets it's own JVM thread.</li>
  * <li>TASK - Capsules are assigned to a thread pool in round-robin fashion.</li>
  * <li>MONITOR - Capsules procedures are given basic synchronization.</li>
+ * <li>COMBINING - Like MONITOR, but concurrent calls are run in batches by flat combining: the
+ * 			caller which holds a capsule runs the other pending calls too.</li>
+ * <li>ADAPTIVE - Like TASK, but an uncontended capsule runs calls on its callers' threads, as
+ * 			MONITOR does, and it switches between the two as its measured load changes.</li>
  * <li>SERIAL - Capsules are sequential (no threads).</li>
  * </ol>
  * 
@@ -50,5 +54,7 @@ public enum ExecutionProfile {
     THREAD,
     TASK,
     MONITOR,
+    COMBINING,
+    ADAPTIVE,
     SERIAL,
 }
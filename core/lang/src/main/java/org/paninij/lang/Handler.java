@@ -46,6 +46,17 @@ import java.lang.annotation.Documented;
  * the event. It will be generated as such to be compatible with event registration
  * and announcement. When an event announcement is received, the handler will be invoked.
  * </p>
+ * <p>
+ * A batch handler (<code>@Handler(batch = true)</code>) instead has exactly one parameter
+ * of type <code>java.util.List&lt;T&gt;</code>, where <code>T</code> is the type of message
+ * it can receive. It is registered with <code>Event.registerBatch()</code>, and receives all
+ * of the messages of an <code>Event.announceAll()</code> in a single invocation.
+ * </p>
  */
 @Documented
-public @interface Handler { }
+public @interface Handler {
+    /**
+     * Whether the handler receives the announced messages as a list.
+     */
+    boolean batch() default false;
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+
+/**
+ * <p>
+ * Used to give a procedure's messages priority over other messages to its capsule.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * By default, a capsule handles the messages it receives in the order they arrive. So, a
+ * latency-critical procedure (e.g. control or interactive traffic) may wait behind many
+ * messages of bulk work. A procedure annotated with <code>@Priority(n)</code> is instead
+ * handled before any message of a lower priority, or without one.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * Priorities range from 1 (lowest) to {@link #MAX} (highest). Messages of the same priority
+ * are handled in the order they arrive. Messages of a {@link Deadline @Deadline} procedure
+ * are handled after those with a priority, and before those without either.
+ * </p>
+ * <p>
+ * Only capsules with the <code>THREAD</code> or <code>TASK</code> execution profile have a
+ * queue of messages. A <code>MONITOR</code> or <code>SERIAL</code> capsule handles every
+ * procedure call immediately, so the annotation has no effect on them.
+ * </p>
+ *
+ * <h3>Example</h3>
+ * <blockquote><pre>
+ * &#64;Capsule
+ * public ServerCore {
+ *     &#64;Priority(Priority.MAX)
+ *     public void cancel(int job) { ... }
+ *
+ *     public void submit(Job job) { ... }
+ * }
+ * </pre></blockquote>
+ */
+@Documented
+public @interface Priority {
+    int MAX = 8;
+
+    /**
+     * The priority, from 1 (lowest) to {@link #MAX} (highest).
+     */
+    int value();
+}
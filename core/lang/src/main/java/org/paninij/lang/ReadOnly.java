@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+
+/**
+ * <p>
+ * Used to declare that a procedure only reads its capsule's state, so that calls to it can run
+ * concurrently with each other.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * A capsule handles one call at a time. For a capsule which is mostly read (e.g. a cache, a
+ * dictionary, or a configuration), this serializes lookups which could safely run side by
+ * side. Calls to a <code>@ReadOnly</code> procedure may run concurrently with each other,
+ * though never with a call to any other procedure or handler of the capsule.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * The body of a <code>@ReadOnly</code> procedure may not assign to a field of the capsule core,
+ * nor to an element or field of something held by one, including through a local variable
+ * which holds the same object. It may only call methods on an object held by a field if that
+ * object is immutable (e.g. a <code>String</code> or an <code>Integer</code>), an array, or a
+ * capsule, and it may not pass any other object held by a field to a method or constructor.
+ * Any other method of the core which it calls must either be <code>@ReadOnly</code> itself or
+ * follow the same rules. For example, a lookup in a <code>Map</code> field is rejected, since
+ * the compiler cannot tell <code>get()</code> from <code>put()</code>.
+ * </p>
+ * <p>
+ * A <code>MONITOR</code> capsule which has <code>@ReadOnly</code> procedures uses a
+ * read-write lock instead of its monitor. A <code>THREAD</code> or <code>TASK</code> capsule
+ * runs a call to a <code>@ReadOnly</code> procedure directly on the caller's thread when it is
+ * idle, i.e. when it has no pending messages and is not handling one. Otherwise, the call is
+ * sent as a message as usual, so it never overtakes an earlier call by the same sender. A
+ * procedure which returns <code>void</code> without <code>@Block</code> is always sent as a
+ * message. <code>SERIAL</code> and <code>COMBINING</code> capsules ignore the annotation.
+ * </p>
+ * <p>
+ * On a <code>MONITOR</code> capsule, a <code>@ReadOnly</code> procedure must not lead to a call
+ * back into a procedure of its own capsule which is not <code>@ReadOnly</code>, since a read
+ * lock cannot be upgraded. If the call back is made on the same thread, it throws an
+ * <code>IllegalStateException</code> instead of waiting forever. If it is made on another
+ * thread (e.g. by a <code>THREAD</code> capsule) while the <code>@ReadOnly</code> procedure
+ * waits for it, it deadlocks, just as a cycle of calls between <code>MONITOR</code> capsules
+ * does.
+ * </p>
+ *
+ * <h3>Example</h3>
+ * <blockquote><pre>
+ * &#64;Capsule
+ * public DictionaryCore {
+ *     String[] keys = new String[64];
+ *     String[] values = new String[64];
+ *     int defined = 0;
+ *
+ *     &#64;ReadOnly &#64;Block
+ *     public String lookup(String key) {
+ *         for (int i = 0; i &lt; defined; i++) {
+ *             if (keys[i].equals(key)) return values[i];
+ *         }
+ *         return null;
+ *     }
+ *
+ *     public void define(String key, String value) {
+ *         keys[defined] = key;
+ *         values[defined++] = value;
+ *     }
+ * }
+ * </pre></blockquote>
+ */
+@Documented
+public @interface ReadOnly {
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Used to choose the parameter by which calls to a procedure of a {@link Sharded @Sharded}
+ * capsule are routed.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * Calls whose arguments for this parameter are equal (by <code>equals()</code> and
+ * <code>hashCode()</code>) are all sent to the same shard. A procedure can have at most one
+ * <code>@ShardKey</code> parameter.
+ * </p>
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+public @interface ShardKey { }
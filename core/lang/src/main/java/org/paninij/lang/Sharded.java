@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+
+/**
+ * <p>
+ * Used to spread a capsule's state and work across several instances of it.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * A capsule handles one message at a time, so a capsule which many others call can become a
+ * bottleneck. Splitting it by hand means holding an array of capsules and choosing an element
+ * on every call. A capsule core annotated with <code>@Sharded(n)</code> is instead instantiated
+ * as <code>n</code> capsules (i.e. shards) behind a single router, which implements the
+ * capsule's interface. So, a <code>@Local</code> or <code>@Imported</code> field of the capsule's
+ * type is used just like any other.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * The router sends each call to one shard. A procedure with a {@link ShardKey @ShardKey}
+ * parameter is sent to the shard given by the hash of that argument, so all calls with equal
+ * keys reach the same shard and see the same state. Every other procedure must be
+ * {@link AnyShard @AnyShard}, and is sent to the shard with the fewest queued messages. Each
+ * shard has its own state, which is initialized as usual.
+ * </p>
+ * <p>
+ * Calls from one sender are only handled in the order in which they were sent if they go to
+ * the same shard, i.e. if they have equal keys.
+ * </p>
+ * <p>
+ * A sharded capsule cannot be the root of a system, and cannot have handlers or events.
+ * </p>
+ *
+ * <h3>Example</h3>
+ * <blockquote><pre>
+ * &#64;Capsule
+ * &#64;Sharded(4)
+ * public CounterCore {
+ *     Map&lt;String, Long&gt; counts = new HashMap&lt;&gt;();
+ *
+ *     public void add(&#64;ShardKey String word) {
+ *         counts.merge(word, 1L, Long::sum);
+ *     }
+ * }
+ * </pre></blockquote>
+ */
+@Documented
+public @interface Sharded {
+    /**
+     * The number of shards.
+     */
+    int value();
+}
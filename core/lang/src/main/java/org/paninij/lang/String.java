@@ -34,6 +34,8 @@ import java.util.regex.PatternSyntaxException;
 
 import org.paninij.runtime.Panini$Future;
 import org.paninij.runtime.Panini$Message;
+import org.paninij.runtime.Panini$Outbox;
+import org.paninij.runtime.Panini$TaskPool;
 
 /**
  * Adapted from {@link java.lang.String} to act like a String and provide the
@@ -290,14 +292,22 @@ public class String extends Object implements CharSequence,
      */
     @Override
     public java.lang.String panini$get() {
-        while (panini$resolved == false) {
-            try{
-                synchronized (this) {
-                    while (panini$resolved == false) {
-                        wait();
+        if (panini$resolved == false) {
+            Panini$Outbox.flush();
+            Panini$TaskPool.beginBlocking();
+            try {
+                while (panini$resolved == false) {
+                    try{
+                        synchronized (this) {
+                            while (panini$resolved == false) {
+                                wait();
+                            }
+                        }
+                    }catch (InterruptedException e){
                     }
                 }
-            }catch (InterruptedException e){
+            } finally {
+                Panini$TaskPool.endBlocking();
             }
         }
         return java.lang.String.valueOf(value);
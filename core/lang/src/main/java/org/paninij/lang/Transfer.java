@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Used to declare that a procedure argument (or a procedure's result) is moved to its receiver
+ * rather than shared with it.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * Large payloads (e.g. arrays of pixels or byte buffers) are handed between capsules by reference.
+ * Without any annotation, nothing records that the sender has given such a reference up, so the
+ * only way to check that a message does not leak the sender's state is to walk the entire object
+ * graph of the message. A @Transfer argument is instead handed off zero-copy, and the sender
+ * promises never to touch it again.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <p>
+ * When a parameter of a procedure is annotated with @Transfer, the annotation processor checks
+ * every capsule which sends a message to that procedure. At each such call site, the argument must
+ * be either a freshly allocated object or a local variable of the sending method. A local variable
+ * which is transferred must not be read again after the send, must not be aliased by another
+ * variable, and must not be captured by a lambda or an inner class. Nor may it be passed to any
+ * other method or have its methods called, even before the send, since the callee may keep it.
+ * (Re-assigning the variable after the send is permitted.) A local variable declared outside of a
+ * loop cannot be transferred from within that loop.
+ * </p>
+ * <p>
+ * When a procedure itself is annotated with @Transfer, its result is moved to the caller. In this
+ * case, the procedure must not return a reference to one of the capsule's own fields.
+ * </p>
+ * <p>
+ * These checks are syntactic and conservative: a local variable which is set from a field of the
+ * capsule, from a call on a field or to a method of the capsule (e.g. a getter), or from another
+ * local variable, cannot be transferred, nor passed twice in one call.
+ * No ownership transfer check is made at run time, so they are what keeps a transfer safe.
+ * </p>
+ *
+ * <h3>Examples</h3>
+ * <blockquote><pre>
+ * &#64;Capsule
+ * public class TracerCore {
+ *     &#64;Imported Canvas canvas;
+ *
+ *     public void renderChunk(int line) {
+ *         Pixel[] chunk = new Pixel[WIDTH];
+ *         for (int x = 0; x &lt; WIDTH; x++) {
+ *             chunk[x] = trace(line, x);
+ *         }
+ *         canvas.draw(line, chunk);  // `chunk` must not be used after this point.
+ *     }
+ * }
+ *
+ * &#64;Capsule
+ * public class CanvasCore {
+ *     public void draw(int line, &#64;Transfer Pixel[] chunk) {
+ *         // ...
+ *     }
+ * }
+ * </pre></blockquote>
+ */
+@Documented
+@Target({PARAMETER, METHOD})
+public @interface Transfer { }
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.lang;
+
+import java.lang.annotation.Documented;
+
+/**
+ * <p>
+ * Used to choose how a capsule's thread waits for its next message.
+ * </p>
+ *
+ * <h3>Purpose</h3>
+ * <p>
+ * By default, a capsule with no messages blocks its thread, and a sender has to wake it, which
+ * costs a system call on both sides. A latency-critical capsule (e.g. a stage of a pipeline) can
+ * instead keep its thread spinning for a while, so that a message is picked up within
+ * microseconds, at the cost of the CPU time spent spinning.
+ * </p>
+ *
+ * <h3>Details</h3>
+ * <ul>
+ * <li>{@link Kind#BLOCKING BLOCKING} blocks right away. This is the default.</li>
+ * <li>{@link Kind#BUSY_SPIN BUSY_SPIN} spins until a message arrives, keeping a core busy.</li>
+ * <li>{@link Kind#SPIN_YIELD SPIN_YIELD} yields the CPU until a message arrives, so that other
+ * threads can run meanwhile.</li>
+ * <li>{@link Kind#SPIN_THEN_PARK SPIN_THEN_PARK} spins {@link #spins()} times, then yields
+ * {@link #yields()} times, and then blocks.</li>
+ * </ul>
+ * <p>
+ * Senders only wake a capsule whose thread is blocked. Only capsules with the
+ * <code>THREAD</code> execution profile have a thread of their own, so the annotation has no
+ * effect on other profiles.
+ * </p>
+ *
+ * <h3>Example</h3>
+ * <blockquote><pre>
+ * &#64;Capsule
+ * &#64;WaitStrategy(value = WaitStrategy.Kind.SPIN_THEN_PARK, spins = 10000)
+ * public class StageCore {
+ *     &#64;Imported Stage next;
+ *
+ *     public void handle(Packet p) { ... }
+ * }
+ * </pre></blockquote>
+ */
+@Documented
+public @interface WaitStrategy {
+    public enum Kind {
+        BLOCKING,
+        BUSY_SPIN,
+        SPIN_YIELD,
+        SPIN_THEN_PARK
+    }
+
+    Kind value();
+
+    /**
+     * The number of times a `SPIN_THEN_PARK` capsule checks for a message before it yields.
+     */
+    int spins() default 1000;
+
+    /**
+     * The number of times a `SPIN_THEN_PARK` capsule yields before it blocks.
+     */
+    int yields() default 100;
+}
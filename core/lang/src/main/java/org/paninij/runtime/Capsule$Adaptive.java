@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A task capsule which switches between two ways of running its procedures as its load changes.
+ *
+ * While it is uncontended, the capsule is *direct*: as with a `MONITOR` capsule, each call runs
+ * on the caller's thread, under the write lock of `panini$readers`. A direct call is only made
+ * while the capsule is idle, i.e. when its queue is empty and no message is being handled, so it
+ * never overtakes a message sent before it. Any other call is sent as a message, which a worker
+ * of the capsule's task pool handles as usual.
+ *
+ * Once more than `Panini$System.ADAPTIVE_CONTENTION` of a window of `ADAPTIVE_WINDOW` calls have
+ * found the capsule busy, it becomes *queued*, and sends every call as a message, as a `TASK`
+ * capsule does. Once at most `ADAPTIVE_BACKLOG` of a window of handled messages were taken while
+ * other messages were waiting, it becomes direct again.
+ *
+ * Direct calls never nest: a call made on a thread which is already in a direct call (to this
+ * capsule or any other) or which is handling one of this capsule's messages is sent as a message,
+ * as is a call which the capsule makes to itself. Otherwise, capsules which keep calling each other
+ * back (e.g. a ping-pong) would run their whole exchange as one ever deeper call stack.
+ */
+public abstract class Capsule$Adaptive extends Capsule$Task
+{
+    private static final AtomicLong switches = new AtomicLong();
+
+    /**
+     * The capsule, if any, whose direct call the current thread is running.
+     */
+    private static final ThreadLocal<Capsule$Adaptive> running = new ThreadLocal<>();
+
+    /**
+     * Whether every call is sent as a message.
+     */
+    private volatile boolean panini$queued;
+
+    /**
+     * The number of direct calls so far. Only changed under the write lock.
+     */
+    private volatile int panini$directCalls;
+
+    /**
+     * The direct calls before the current window, and the calls which have found the capsule
+     * busy since. Guarded by this capsule's lock.
+     */
+    private int panini$windowStart, panini$contended;
+
+    /**
+     * The messages handled in the current window while queued, and those which found others
+     * waiting. Only touched under the write lock.
+     */
+    private int panini$handledCount, panini$backlogged;
+
+    @Override
+    protected void panini$capsuleInit() {
+        super.panini$capsuleInit();
+        // Unlike `panini$tryRead()`, a direct call need not wait for a first message.
+        panini$handling = false;
+    }
+
+    /**
+     * Tries to begin a direct call on the caller's thread. This fails while the capsule is queued
+     * or busy, which counts towards queueing it, and for a nested call, which does not.
+     *
+     * @return Whether the write lock was taken, in which case `panini$endDirect()` must follow.
+     */
+    protected final boolean panini$tryDirect() {
+        ReentrantReadWriteLock.WriteLock lock = panini$readers.writeLock();
+        if (running.get() != null || lock.isHeldByCurrentThread()) return false;
+        if (panini$queued) return false;
+
+        Panini$Outbox.flush();
+        if (lock.tryLock()) {
+            if (this.panini$size == 0 && !panini$handling) {
+                panini$directCalls++;
+                running.set(this);
+                return true;
+            }
+            lock.unlock();
+        }
+        panini$contended();
+        return false;
+    }
+
+    protected final void panini$endDirect() {
+        running.set(null);
+        panini$readers.writeLock().unlock();
+    }
+
+    private synchronized void panini$contended() {
+        if (panini$queued) return;
+        if (panini$directCalls - panini$windowStart >= Panini$System.ADAPTIVE_WINDOW) {
+            panini$windowStart = panini$directCalls;
+            panini$contended = 0;
+        }
+        panini$contended++;
+        if (panini$contended > Panini$System.ADAPTIVE_WINDOW * Panini$System.ADAPTIVE_CONTENTION) {
+            panini$queued = true;
+            switches.incrementAndGet();
+        }
+    }
+
+    @Override
+    void panini$handled() {
+        if (!panini$queued) return;
+        panini$handledCount++;
+        if (panini$backlog) panini$backlogged++;
+        if (panini$handledCount < Panini$System.ADAPTIVE_WINDOW) return;
+
+        if (panini$backlogged <= Panini$System.ADAPTIVE_WINDOW * Panini$System.ADAPTIVE_BACKLOG) {
+            panini$unqueue();
+        }
+        panini$handledCount = 0;
+        panini$backlogged = 0;
+    }
+
+    private synchronized void panini$unqueue() {
+        panini$windowStart = panini$directCalls;
+        panini$contended = 0;
+        panini$queued = false;
+        switches.incrementAndGet();
+    }
+
+    /**
+     * @return Whether every call to this capsule is currently sent as a message.
+     */
+    public final boolean panini$isQueued() {
+        return panini$queued;
+    }
+
+    /**
+     * @return The number of times that `ADAPTIVE` capsules have switched between direct calls and
+     *         their queues.
+     */
+    public static long switches() {
+        return switches.get();
+    }
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.runtime;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A capsule whose procedures are run by flat combining.
+ *
+ * A caller which finds the capsule's lock free takes it and runs its call right away. Otherwise,
+ * it publishes its call in a slot of its own (one per thread and capsule), and then keeps trying
+ * to take the lock. The caller which holds the lock is the combiner: it runs its own call, and
+ * then the calls published by any other threads, for up to
+ * `Panini$System.COMBINE_PASSES` passes over the slots, before it lets go of the lock. The
+ * other callers wait for their slot to be cleared, and take the lock themselves if it is let go
+ * first. So, under contention the capsule's state stays in the cache of one core for a batch of
+ * calls, rather than moving with a monitor from caller to caller.
+ *
+ * A slot which has been idle for `Panini$System.COMBINE_SLOT_AGE` rounds is unlinked by the
+ * combiner, and linked again by its thread when it next publishes a call. So, the combiner only
+ * visits the slots of threads which call the capsule, and the slot of a thread which has died
+ * is left to the garbage collector along with the thread's `ThreadLocal`s.
+ *
+ * As with a `MONITOR` capsule, calls are run on the callers' threads, one at a time, and a call
+ * which the capsule makes to itself runs right away.
+ *
+ * A call which the combiner runs for another thread is made on that thread's behalf: if it
+ * calls back a `COMBINING` capsule which that thread (or any thread on whose behalf that thread
+ * is running) is the combiner of, it runs right away, just as it would have on that thread. That
+ * thread is waiting for the call, so it cannot touch the capsule meanwhile. Without this, the
+ * combiner would wait for a capsule held by the thread which is waiting for the combiner.
+ */
+public abstract class Capsule$Combining extends Capsule$Monitor
+{
+    /**
+     * A thread's slot. `op` is set by its thread and cleared by the combiner, once it has set
+     * `result` or `error`. `linked` is whether the slot is in `panini$slots`: it is only cleared
+     * by the combiner, and only set again by whichever of the combiner and the slot's thread
+     * wins the race to do so, which then links it.
+     */
+    private static final class Slot {
+        volatile Callable<?> op;
+        Object result;
+        Throwable error;
+        Slot next;
+        final AtomicBoolean linked = new AtomicBoolean(true);
+        // The threads on whose behalf `op` runs: the slot's thread, and those it runs for.
+        Behalf behalf;
+        // Used as `behalf` while the slot's thread runs for no other thread. A slot is made by
+        // its own thread.
+        final Behalf self = new Behalf(Thread.currentThread(), null);
+        // The number of combining rounds in a row in which `op` was not set. Guarded by
+        // `panini$lock`.
+        int idle;
+    }
+
+    /**
+     * A list of threads which are all waiting for the call which the current thread is running:
+     * the one which published it, then the one whose call that one was running, and so on.
+     */
+    private static final class Behalf {
+        final Thread thread;
+        final Behalf outer;
+
+        Behalf(Thread thread, Behalf outer) {
+            this.thread = thread;
+            this.outer = outer;
+        }
+    }
+
+    /**
+     * The threads on whose behalf the current thread is running a call, if it is a combiner
+     * running another thread's call.
+     */
+    private static final ThreadLocal<Behalf> panini$behalf = new ThreadLocal<Behalf>();
+
+    private final AtomicReference<Slot> panini$slots = new AtomicReference<Slot>();
+    private final ThreadLocal<Slot> panini$slot = new ThreadLocal<Slot>();
+    private final AtomicBoolean panini$lock = new AtomicBoolean(false);
+    private volatile Thread panini$combiner;
+
+    /**
+     * Runs a call on this capsule, possibly on another caller's thread, and waits for it.
+     *
+     * @return The result of the call.
+     */
+    @SuppressWarnings("unchecked")
+    protected final <T> T panini$combine(Callable<T> op) {
+        Thread combiner = panini$combiner;
+        if (combiner == Thread.currentThread()
+                || (combiner != null && panini$isBehalfOf(combiner))) {
+            try {
+                return op.call();
+            } catch (Throwable thrown) {
+                throw Capsule$Combining.<RuntimeException>panini$rethrow(thrown);
+            }
+        }
+
+        // Uncontended, the call is run right away, without publishing it.
+        if (!panini$lock.get() && panini$lock.compareAndSet(false, true)) {
+            T result = null;
+            Throwable error = null;
+            panini$combiner = Thread.currentThread();
+            try {
+                try {
+                    result = op.call();
+                } catch (Throwable thrown) {
+                    error = thrown;
+                }
+                panini$combineAll();
+            } finally {
+                panini$combiner = null;
+                panini$lock.set(false);
+            }
+            if (error != null) {
+                throw Capsule$Combining.<RuntimeException>panini$rethrow(error);
+            }
+            return result;
+        }
+
+        Slot slot = panini$slot.get();
+        if (slot == null) {
+            slot = panini$addSlot();
+        }
+        Behalf outer = panini$behalf.get();
+        slot.behalf = (outer == null) ? slot.self : new Behalf(Thread.currentThread(), outer);
+        slot.op = op;
+        if (!slot.linked.get() && slot.linked.compareAndSet(false, true)) {
+            panini$link(slot);
+        }
+
+        int waited = 0;
+        while (slot.op != null) {
+            if (!panini$lock.get() && panini$lock.compareAndSet(false, true)) {
+                panini$combiner = Thread.currentThread();
+                try {
+                    panini$run(slot);
+                    panini$combineAll();
+                } finally {
+                    panini$combiner = null;
+                    panini$lock.set(false);
+                }
+            } else if (++waited > 128) {
+                LockSupport.parkNanos(10000);
+            } else if (waited > 64) {
+                Thread.yield();
+            }
+        }
+
+        Object result = slot.result;
+        Throwable error = slot.error;
+        slot.result = null;
+        slot.error = null;
+        if (error != null) {
+            throw Capsule$Combining.<RuntimeException>panini$rethrow(error);
+        }
+        return (T) result;
+    }
+
+    private Slot panini$addSlot() {
+        Slot slot = new Slot();
+        panini$link(slot);
+        panini$slot.set(slot);
+        return slot;
+    }
+
+    private void panini$link(Slot slot) {
+        Slot head;
+        do {
+            head = panini$slots.get();
+            slot.next = head;
+        } while (!panini$slots.compareAndSet(head, slot));
+    }
+
+    /**
+     * Runs the calls which other callers have published, and unlinks the slots which have been
+     * idle for too long. The first slot is never unlinked, since new slots are linked in front
+     * of it.
+     *
+     * Precondition: `panini$lock` is held.
+     */
+    private void panini$combineAll() {
+        for (int pass = 0; pass < Panini$System.COMBINE_PASSES; pass++) {
+            boolean found = false;
+            Slot prev = null;
+            for (Slot slot = panini$slots.get(), next; slot != null; slot = next) {
+                next = slot.next;
+                if (slot.op != null) {
+                    panini$run(slot);
+                    slot.idle = 0;
+                    found = true;
+                } else if (pass == 0 && ++slot.idle > Panini$System.COMBINE_SLOT_AGE
+                        && prev != null) {
+                    prev.next = next;
+                    slot.idle = 0;
+                    slot.linked.set(false);
+                    // Its thread may have published a call before it saw the slot unlinked.
+                    if (slot.op != null && slot.linked.compareAndSet(false, true)) {
+                        panini$link(slot);
+                    }
+                    continue;
+                }
+                prev = slot;
+            }
+            if (!found) break;
+        }
+    }
+
+    private static void panini$run(Slot slot) {
+        Callable<?> op = slot.op;
+        if (op == null) return;
+        Behalf behalf = panini$behalf.get();
+        panini$behalf.set(panini$join(slot.behalf, behalf));
+        try {
+            slot.result = op.call();
+        } catch (Throwable thrown) {
+            slot.error = thrown;
+        } finally {
+            panini$behalf.set(behalf);
+        }
+        slot.behalf = null;
+        slot.op = null;
+    }
+
+    /**
+     * @return The number of slots which are linked. Only for tests, since it is not synchronized
+     *         with the combiner.
+     */
+    final int panini$slotCount() {
+        int count = 0;
+        for (Slot slot = panini$slots.get(); slot != null; slot = slot.next) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return The threads in `inner`, followed by those in `outer`.
+     */
+    private static Behalf panini$join(Behalf inner, Behalf outer) {
+        if (outer == null) return inner;
+        if (inner == null) return outer;
+        return new Behalf(inner.thread, panini$join(inner.outer, outer));
+    }
+
+    /**
+     * @return Whether the current thread is running a call on behalf of the given thread.
+     */
+    private static boolean panini$isBehalfOf(Thread thread) {
+        for (Behalf b = panini$behalf.get(); b != null; b = b.outer) {
+            if (b.thread == thread) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Throws any throwable, checked or not, so that a call's exception reaches its caller as it
+     * would from a `MONITOR` capsule's procedure.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> E panini$rethrow(Throwable thrown) throws E {
+        throw (E) thrown;
+    }
+}
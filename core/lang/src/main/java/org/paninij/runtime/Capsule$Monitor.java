@@ -27,12 +27,20 @@
 package org.paninij.runtime;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public abstract class Capsule$Monitor implements Panini$Capsule
 {
     protected int panini$links;
     protected final Panini$ErrorQueue panini$errors;
-    protected boolean panini$terminated;
+    protected volatile boolean panini$terminated;
+
+    /**
+     * Used instead of this capsule's monitor by a capsule which has `@ReadOnly` procedures: those
+     * take it for reading, and so run concurrently with each other, while all other procedures
+     * and event handlers take it for writing. Made by `panini$enableReaders()`.
+     */
+    protected ReentrantReadWriteLock panini$readers;
 
     protected Capsule$Monitor() {
         panini$links = 0;
@@ -40,6 +48,45 @@ public abstract class Capsule$Monitor implements Panini$Capsule
         panini$terminated = false;
     }
 
+    /**
+     * Called by the constructor of a capsule which has `@ReadOnly` procedures.
+     */
+    protected final void panini$enableReaders() {
+        panini$readers = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Called around a call to a `@ReadOnly` procedure, if the capsule has any.
+     */
+    protected final void panini$beginRead() {
+        panini$readers.readLock().lock();
+    }
+
+    protected final void panini$endRead() {
+        panini$readers.readLock().unlock();
+    }
+
+    /**
+     * Called around a call to any other procedure or event handler, if the capsule has
+     * `@ReadOnly` procedures.
+     *
+     * @throws IllegalStateException If the current thread is in a `@ReadOnly` procedure of this
+     *                               capsule, e.g. one which calls another capsule which calls
+     *                               back. A read lock cannot be upgraded, so the call would
+     *                               otherwise never return.
+     */
+    protected final void panini$beginWrite() {
+        if (panini$readers.getReadHoldCount() > 0) {
+            throw new IllegalStateException("A `@ReadOnly` procedure of a capsule led to a call "
+                    + "to one of its procedures which is not `@ReadOnly`.");
+        }
+        panini$readers.writeLock().lock();
+    }
+
+    protected final void panini$endWrite() {
+        panini$readers.writeLock().unlock();
+    }
+
     @Override
     public void panini$start()
     {
@@ -33,7 +33,7 @@ public abstract class Capsule$Serial implements Panini$Capsule
 
     protected int panini$links;
     protected final Panini$ErrorQueue panini$errors;
-    protected boolean panini$terminated;
+    protected volatile boolean panini$terminated;
 
     protected Capsule$Serial() {
         panini$links = 0;
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+
+package org.paninij.runtime;
+
+import java.util.Objects;
+
+/**
+ * The base of a router generated for a `@Sharded` capsule. It stands in for all of the
+ * capsule's shards. Procedure calls are sent to a single shard, chosen by `panini$shardOf()` or
+ * `panini$leastLoaded()`, while the life cycle of the capsule (e.g. links, start, exit) is
+ * applied to every shard.
+ */
+public abstract class Capsule$Sharded implements Panini$Capsule
+{
+    protected final Panini$Capsule[] panini$shards;
+
+    // Where `panini$leastLoaded()` starts its search, so that ties are spread across the shards.
+    // Races on it are benign.
+    private int panini$next;
+
+    protected Capsule$Sharded(Panini$Capsule[] shards)
+    {
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("A sharded capsule needs at least one shard.");
+        }
+        this.panini$shards = shards;
+        this.panini$next = 0;
+    }
+
+    /**
+     * @return The index of the shard to which calls with the given key are sent.
+     */
+    protected final int panini$shardOf(Object key)
+    {
+        int hash = Objects.hashCode(key);
+        // Spread the bits, as `HashMap` does, since many keys differ only in their high bits.
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, panini$shards.length);
+    }
+
+    /**
+     * @return The index of the shard with the fewest queued messages.
+     */
+    protected final int panini$leastLoaded()
+    {
+        int n = panini$shards.length;
+        int start = panini$next;
+        panini$next = (start + 1 == n) ? 0 : start + 1;
+
+        int best = start;
+        int bestDepth = depth(panini$shards[start]);
+        for (int k = 1; k < n && bestDepth > 0; k++) {
+            int i = (start + k) % n;
+            int d = depth(panini$shards[i]);
+            if (d < bestDepth) {
+                best = i;
+                bestDepth = d;
+            }
+        }
+        return best;
+    }
+
+    private static int depth(Panini$Capsule shard)
+    {
+        if (shard instanceof Capsule$Thread) {
+            return ((Capsule$Thread) shard).panini$size;
+        }
+        if (shard instanceof Capsule$Task) {
+            return ((Capsule$Task) shard).panini$size;
+        }
+        // Other capsules have no queue, so they are simply taken in turn.
+        return 0;
+    }
+
+    @Override
+    public void panini$start()
+    {
+        for (Panini$Capsule shard : panini$shards) {
+            shard.panini$start();
+        }
+    }
+
+    /**
+     * A message which is pushed directly cannot be routed by its arguments, so it goes to the
+     * least loaded shard.
+     */
+    @Override
+    public void panini$push(Object o)
+    {
+        panini$shards[panini$leastLoaded()].panini$push(o);
+    }
+
+    @Override
+    public void panini$join() throws InterruptedException
+    {
+        for (Panini$Capsule shard : panini$shards) {
+            shard.panini$join();
+        }
+    }
+
+    @Override
+    public void panini$openLink()
+    {
+        for (Panini$Capsule shard : panini$shards) {
+            shard.panini$openLink();
+        }
+    }
+
+    @Override
+    public void panini$closeLink()
+    {
+        for (Panini$Capsule shard : panini$shards) {
+            shard.panini$closeLink();
+        }
+    }
+
+    @Override
+    public void exit()
+    {
+        for (Panini$Capsule shard : panini$shards) {
+            shard.exit();
+        }
+    }
+
+    @Override
+    public void yield(long millis)
+    {
+        // Only pauses the calling thread, so once is enough.
+        panini$shards[0].yield(millis);
+    }
+}
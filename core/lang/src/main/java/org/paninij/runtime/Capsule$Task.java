@@ -28,19 +28,58 @@ package org.paninij.runtime;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public abstract class Capsule$Task implements Panini$Capsule
 {
-    Capsule$Task panini$nextCapsule;
     Panini$TaskPool panini$containingPool;
 
+    /**
+     * Whether this capsule is in its pool's ready queue, or is being run by its pool. Guarded by
+     * this capsule's lock.
+     */
+    boolean panini$scheduled;
+
+    /**
+     * The time which pool workers have spent running this capsule during rebalancing period
+     * `panini$busyPeriod` (see `Panini$TaskPool.account()`). Only touched by the worker which is
+     * running this capsule.
+     */
+    long panini$busy;
+    int panini$busyPeriod;
+
     protected volatile Object[] panini$queue;
 
     protected volatile int panini$head, panini$tail, panini$size, panini$links;
     protected final ReentrantLock panini$queueLock;
+
+    /**
+     * The messages of procedures with a `@Priority` or `@Deadline`, which are served ahead of
+     * `panini$queue`. Made on first use. `panini$size` counts the messages of both.
+     */
+    private Panini$Lanes panini$lanes;
     protected final Panini$ErrorQueue panini$errors;
 
-    protected boolean panini$terminated;
+    protected volatile boolean panini$terminated;
+
+    /**
+     * Held for writing while a worker handles a message of this capsule, and for reading by a
+     * `@ReadOnly` procedure which runs on its caller's thread. Only made for a capsule which has
+     * such procedures (see `panini$enableReaders()`).
+     */
+    ReentrantReadWriteLock panini$readers;
+
+    /**
+     * Whether a worker has taken a message of this capsule which it has not finished handling.
+     * Starts out set, so that no reader runs before the capsule is initialized.
+     */
+    volatile boolean panini$handling = true;
+
+    /**
+     * Whether other messages were waiting when a worker took the message which it is handling.
+     * Only kept for a capsule which has `panini$readers`.
+     */
+    boolean panini$backlog;
 
     public static final int PANINI$CLOSE_LINK = -1;
     public static final int PANINI$TERMINATE = -2;
@@ -56,9 +95,11 @@ public abstract class Capsule$Task implements Panini$Capsule
         panini$terminated = false;
     }
 
+    /**
+     * Grows the queue by 10 slots, keeping its messages in order. Since `panini$ensureSpace()`
+     * grows the queue whenever it has too little room for a push, it need not be full.
+     */
     protected final void panini$extendQueue() {
-        assert (panini$tail >= panini$queue.length);
-
         Object[] newObjects = new Object[panini$queue.length + 10];
         if (panini$tail <= panini$head) {
             System.arraycopy(panini$queue, panini$head, newObjects, 0,
@@ -70,7 +111,7 @@ public abstract class Capsule$Task implements Panini$Capsule
         }
 
         panini$head = 0;
-        panini$tail = panini$size;
+        panini$tail = panini$queued();
         panini$queue = newObjects;
     }
 
@@ -81,15 +122,58 @@ public abstract class Capsule$Task implements Panini$Capsule
      * @param numElems
      */
     protected final void panini$ensureSpace(int numElems) {
-        if (panini$head < panini$tail) {
-            if (panini$queue.length + (panini$head - panini$tail) < numElems) {
-                if (panini$size != 0) panini$extendQueue();
-            }
-        } else if (panini$head - panini$tail < numElems) {
-            if (panini$size != 0) panini$extendQueue();
+        // The queue may need to grow more than once for a bulk push.
+        while (panini$queue.length - panini$queued() < numElems) panini$extendQueue();
+    }
+
+    /**
+     * @return The number of messages in `panini$queue`, i.e. excluding those in the lanes.
+     */
+    private final int panini$queued() {
+        return (panini$lanes == null) ? panini$size : panini$size - panini$lanes.size();
+    }
+
+    /**
+     * Puts this capsule in its pool's ready queue, unless it is already there (or running), or it
+     * has not been started yet.
+     *
+     * Precondition: this capsule's lock is held.
+     */
+    private void panini$schedule() {
+        if (!panini$scheduled && panini$containingPool != null) {
+            panini$scheduled = true;
+            panini$containingPool.ready(this);
+        }
+    }
+
+    /**
+     * Called by the pool once it has started this capsule, to schedule any messages which were
+     * pushed before then.
+     */
+    final synchronized void panini$started() {
+        if (panini$size > 0) panini$schedule();
+    }
+
+    /**
+     * Called by the pool after each visit to this capsule. It stays in the ready queue while it
+     * has messages.
+     */
+    final synchronized void panini$visited() {
+        if (panini$size > 0) {
+            panini$containingPool.ready(this);
+        } else {
+            panini$scheduled = false;
         }
     }
 
+    /**
+     * Called by a pool which is running this capsule to hand it over to another pool. The
+     * capsule is still marked as scheduled, so no sender touches either pool meanwhile.
+     */
+    final synchronized void panini$moveTo(Panini$TaskPool pool) {
+        panini$containingPool = pool;
+    }
+
     @Override
     public void panini$start() {
         panini$containingPool = Panini$TaskPool.add(this);
@@ -108,12 +192,77 @@ public abstract class Capsule$Task implements Panini$Capsule
      */
     protected final synchronized Panini$Message panini$nextMessage() {
         if (this.panini$size <= 0) return null;
+        // Set before `panini$size` drops, which is what `panini$tryRead()` looks at first.
+        if (panini$readers != null) {
+            panini$handling = true;
+            panini$backlog = this.panini$size > 1;
+        }
+        if (panini$lanes != null && panini$lanes.size() > 0) {
+            panini$size--;
+            return (Panini$Message) panini$lanes.poll();
+        }
         panini$size--;
         Panini$Message msg = (Panini$Message) panini$queue[panini$head++];
         if (panini$head >= panini$queue.length) panini$head = 0;
         return msg;
     }
 
+    /**
+     * Lets `@ReadOnly` procedures run on their callers' threads, concurrently with each other.
+     * Called by the constructor of a capsule which has such procedures.
+     */
+    protected final void panini$enableReaders() {
+        panini$readers = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Tries to begin a `@ReadOnly` call on the caller's thread. This only succeeds while the
+     * capsule is idle: its queue is empty (after the caller's outbox is flushed) and no worker is
+     * handling its messages. A call can thus never overtake a message sent before it.
+     *
+     * @return Whether the read lock was taken, in which case `panini$endRead()` must follow.
+     */
+    protected final boolean panini$tryRead() {
+        Panini$Outbox.flush();
+        if (!panini$readers.readLock().tryLock()) return false;
+        if (this.panini$size == 0 && !panini$handling) return true;
+        panini$readers.readLock().unlock();
+        return false;
+    }
+
+    protected final void panini$endRead() {
+        panini$readers.readLock().unlock();
+    }
+
+    /**
+     * Called by a worker around the handling of each message, if the capsule has `@ReadOnly`
+     * procedures. If a reader (or a direct call) holds the lock, the worker waits for it as a
+     * blocked worker (see `Panini$TaskPool.beginBlocking()`), since that caller may itself be
+     * waiting on a capsule which only this pool can run.
+     */
+    protected final void panini$beginWrite() {
+        if (panini$readers.writeLock().tryLock()) return;
+        Panini$TaskPool.beginBlocking();
+        try {
+            panini$readers.writeLock().lock();
+        } finally {
+            Panini$TaskPool.endBlocking();
+        }
+    }
+
+    protected final void panini$endWrite() {
+        panini$handled();
+        panini$handling = false;
+        panini$readers.writeLock().unlock();
+    }
+
+    /**
+     * Called by a worker after it has handled a message, while it still holds the write lock.
+     */
+    void panini$handled() {
+        // Do nothing.
+    }
+
     /**
      * Pushes a single object on this capsule's queue.
      *
@@ -133,12 +282,7 @@ public abstract class Capsule$Task implements Panini$Capsule
         if (panini$size == 1) {
             notifyAll();
         }
-    }
-
-    protected synchronized void panini$emptyQueue() {
-        while (this.panini$size > 0) {
-            this.run();
-        }
+        panini$schedule();
     }
 
 
@@ -166,6 +310,7 @@ public abstract class Capsule$Task implements Panini$Capsule
         if (panini$size == 2) {
             notifyAll();
         }
+        panini$schedule();
     }
 
 
@@ -199,6 +344,7 @@ public abstract class Capsule$Task implements Panini$Capsule
         if (panini$size == 3) {
             notifyAll();
         }
+        panini$schedule();
     }
 
 
@@ -222,6 +368,7 @@ public abstract class Capsule$Task implements Panini$Capsule
         if (panini$size == numItems) {
             notifyAll();
         }
+        panini$schedule();
     }
 
     @Override
@@ -236,7 +383,10 @@ public abstract class Capsule$Task implements Panini$Capsule
 
     @Override
     public void panini$closeLink() {
-        panini$push(new SimpleMessage(PANINI$CLOSE_LINK));
+        Panini$Outbox.flush();
+        // Served ahead of the queue. This is safe, since a `PANINI$TERMINATE` which it triggers
+        // is still queued behind any message pushed before it.
+        panini$pushPriority(new SimpleMessage(PANINI$CLOSE_LINK), Panini$Lanes.MAX_PRIORITY);
     }
 
     @Override
@@ -264,6 +414,68 @@ public abstract class Capsule$Task implements Panini$Capsule
         panini$initState();
     }
 
+    /**
+     * Pushes a single object on one of this capsule's priority lanes, so that it is served
+     * before any object pushed with a lower priority or without one.
+     *
+     * @param o Object to be stored.
+     * @param priority From 1 (lowest) to `Panini$Lanes.MAX_PRIORITY` (highest).
+     */
+    protected final synchronized void panini$pushPriority(Object o, int priority) {
+        if (panini$lanes == null) {
+            panini$lanes = new Panini$Lanes();
+        }
+        panini$lanes.push(o, priority);
+        panini$size = panini$size + 1;
+
+        if (panini$size == 1) {
+            notifyAll();
+        }
+        panini$schedule();
+    }
+
+
+    /**
+     * Pushes a single object which should be served within the given time. Such objects are
+     * served earliest deadline first, after those with a priority but before those without.
+     *
+     * @param o Object to be stored.
+     * @param millis The deadline, relative to now, in milliseconds.
+     */
+    protected final synchronized void panini$pushDeadline(Object o, long millis) {
+        if (panini$lanes == null) {
+            panini$lanes = new Panini$Lanes();
+        }
+        panini$lanes.pushDeadline(o, System.nanoTime() + millis * 1000000L);
+        panini$size = panini$size + 1;
+
+        if (panini$size == 1) {
+            notifyAll();
+        }
+        panini$schedule();
+    }
+
+    /**
+     * Pushes a call to a `@Coalesce` procedure on this capsule's queue. If the most recently
+     * queued object is a pending call to the same procedure, the call is merged into it instead.
+     *
+     * @param procID The procedure which is called.
+     * @param args The arguments of the call, or `null` if the procedure has no parameters.
+     */
+    protected final synchronized void panini$pushCoalesced(int procID, Object[] args) {
+        if (panini$queued() > 0) {
+            int last = (panini$tail == 0) ? panini$queue.length - 1 : panini$tail - 1;
+            Object o = panini$queue[last];
+            if (o instanceof CoalescedMessage && ((CoalescedMessage) o).panini$msgID() == procID) {
+                CoalescedMessage msg = (CoalescedMessage) o;
+                msg.count++;
+                msg.args = args;
+                return;
+            }
+        }
+        panini$push(new CoalescedMessage(procID, args));
+    }
+
     /**
      * Initialize the capsule-requirements of this capsule.
      *
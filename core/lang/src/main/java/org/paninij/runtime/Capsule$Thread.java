@@ -28,6 +28,9 @@ package org.paninij.runtime;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.paninij.lang.WaitStrategy;
 
 public abstract class Capsule$Thread implements Panini$Capsule, Runnable
 {
@@ -37,9 +40,40 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
 
     protected final ReentrantLock panini$queueLock;
 
+    /**
+     * The messages of procedures with a `@Priority` or `@Deadline`, which are served ahead of
+     * `panini$queue`. Made on first use. `panini$size` counts the messages of both.
+     */
+    private Panini$Lanes panini$lanes;
+
     protected final Panini$ErrorQueue panini$errors;
 
-    protected boolean panini$terminated;
+    protected volatile boolean panini$terminated;
+
+    /**
+     * How this capsule's thread waits for a message. See `panini$waitStrategy()`.
+     */
+    private WaitStrategy.Kind panini$waitKind = WaitStrategy.Kind.BLOCKING;
+    private int panini$spins, panini$yields;
+
+    /**
+     * Whether this capsule's thread is blocked in `panini$blockCapsule()`, i.e. whether a push
+     * has to wake it. Guarded by this capsule's lock.
+     */
+    private boolean panini$waiting;
+
+    /**
+     * Held for writing while this capsule's thread handles a message, and for reading by a
+     * `@ReadOnly` procedure which runs on its caller's thread. Only made for a capsule which has
+     * such procedures (see `panini$enableReaders()`).
+     */
+    private ReentrantReadWriteLock panini$readers;
+
+    /**
+     * Whether this capsule's thread has taken a message which it has not finished handling.
+     * Starts out set, so that no reader runs before the capsule is initialized.
+     */
+    private volatile boolean panini$handling = true;
 
     public static final int PANINI$CLOSE_LINK = -1;
     public static final int PANINI$TERMINATE = -2;
@@ -58,10 +92,12 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
     }
 
 
+    /**
+     * Grows the queue by 10 slots, keeping its messages in order. Since `panini$ensureSpace()`
+     * grows the queue whenever it has too little room for a push, it need not be full.
+     */
     protected final void panini$extendQueue()
     {
-        assert (panini$tail >= panini$queue.length);
-
         Object[] newObjects = new Object[panini$queue.length + 10];
         if (panini$tail <= panini$head)
         {
@@ -76,7 +112,7 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
         }
 
         panini$head = 0;
-        panini$tail = panini$size;
+        panini$tail = panini$queued();
         panini$queue = newObjects;
     }
 
@@ -89,22 +125,20 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
      */
     protected final void panini$ensureSpace(int numElems)
     {
-        if (panini$head < panini$tail)
-        {
-            if (panini$queue.length + (panini$head - panini$tail) < numElems) {
-                if (panini$size != 0) {
-                    panini$extendQueue();
-                }
-            }
-        }
-        else if (panini$head - panini$tail < numElems)
-        {
-            if (panini$size != 0) {
-                panini$extendQueue();
-            }
+        // The queue may need to grow more than once for a bulk push.
+        while (panini$queue.length - panini$queued() < numElems) {
+            panini$extendQueue();
         }
     }
 
+    /**
+     * @return The number of messages in `panini$queue`, i.e. excluding those in the lanes.
+     */
+    private final int panini$queued()
+    {
+        return (panini$lanes == null) ? panini$size : panini$size - panini$lanes.size();
+    }
+
     /**
      * Extracts and returns the first duck from the capsule's queue. This method blocks if there
      * are no ducks in the queue.
@@ -113,10 +147,24 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
      *
      * @return the first available duck in the capsule's queue.
      */
-    protected final synchronized Panini$Message panini$nextMessage()
+    protected final Panini$Message panini$nextMessage()
+    {
+        if (this.panini$size <= 0 && panini$waitKind != WaitStrategy.Kind.BLOCKING)
+            panini$spinForMessage();
+        return panini$takeMessage();
+    }
+
+    private final synchronized Panini$Message panini$takeMessage()
     {
         if (this.panini$size <= 0)
             panini$blockCapsule();
+        // Set before `panini$size` drops, which is what `panini$tryRead()` looks at first.
+        if (panini$readers != null)
+            panini$handling = true;
+        if (panini$lanes != null && panini$lanes.size() > 0) {
+            panini$size--;
+            return (Panini$Message) panini$lanes.poll();
+        }
         panini$size--;
         Panini$Message msg = (Panini$Message) panini$queue[panini$head++];
         if (panini$head >= panini$queue.length)
@@ -127,6 +175,7 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
 
     private final void panini$blockCapsule()
     {
+        panini$waiting = true;
         nomessages: while (this.panini$size <= 0) {
             try {
                 wait();
@@ -134,6 +183,92 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
                 continue nomessages;
             }
         }
+        panini$waiting = false;
+    }
+
+    /**
+     * Waits for a message without holding this capsule's lock, as chosen by
+     * `panini$waitStrategy()`. Returns once there is a message, or once a `SPIN_THEN_PARK`
+     * capsule has used up its spins and yields, after which it blocks as usual.
+     */
+    private final void panini$spinForMessage()
+    {
+        switch (panini$waitKind) {
+        case BUSY_SPIN:
+            while (this.panini$size <= 0) { }
+            break;
+        case SPIN_YIELD:
+            while (this.panini$size <= 0) Thread.yield();
+            break;
+        case SPIN_THEN_PARK:
+            for (int i = 0; i < panini$spins && this.panini$size <= 0; i++) { }
+            for (int i = 0; i < panini$yields && this.panini$size <= 0; i++) Thread.yield();
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Chooses how this capsule's thread waits for a message (see `WaitStrategy`). Called by the
+     * constructor of a capsule whose core is annotated with `@WaitStrategy`.
+     *
+     * @param kind The way to wait.
+     * @param spins The number of checks for a message before a `SPIN_THEN_PARK` capsule yields.
+     * @param yields The number of yields before a `SPIN_THEN_PARK` capsule blocks.
+     */
+    protected final void panini$waitStrategy(WaitStrategy.Kind kind, int spins, int yields)
+    {
+        panini$waitKind = kind;
+        panini$spins = spins;
+        panini$yields = yields;
+    }
+
+    /**
+     * Lets `@ReadOnly` procedures run on their callers' threads, concurrently with each other.
+     * Called by the constructor of a capsule which has such procedures.
+     */
+    protected final void panini$enableReaders()
+    {
+        panini$readers = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Tries to begin a `@ReadOnly` call on the caller's thread. This only succeeds while the
+     * capsule is idle: its queue is empty (after the caller's outbox is flushed) and its thread
+     * is not handling a message. A call can thus never overtake a message sent before it.
+     *
+     * @return Whether the read lock was taken, in which case `panini$endRead()` must follow.
+     */
+    protected final boolean panini$tryRead()
+    {
+        Panini$Outbox.flush();
+        if (!panini$readers.readLock().tryLock())
+            return false;
+        if (this.panini$size == 0 && !panini$handling)
+            return true;
+        panini$readers.readLock().unlock();
+        return false;
+    }
+
+    protected final void panini$endRead()
+    {
+        panini$readers.readLock().unlock();
+    }
+
+    /**
+     * Called by this capsule's thread around the handling of each message, if the capsule has
+     * `@ReadOnly` procedures.
+     */
+    protected final void panini$beginWrite()
+    {
+        panini$readers.writeLock().lock();
+    }
+
+    protected final void panini$endWrite()
+    {
+        panini$handling = false;
+        panini$readers.writeLock().unlock();
     }
 
     protected final boolean panini$isEmpty() {
@@ -187,7 +322,7 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
             panini$tail = 0;
         }
 
-        if (panini$size == 1) {
+        if (panini$waiting) {
             notifyAll();
         }
     }
@@ -214,7 +349,7 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
             panini$tail = 0;
         }
 
-        if (panini$size == 2) {
+        if (panini$waiting) {
             notifyAll();
         }
     }
@@ -247,7 +382,7 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
             panini$tail = 0;
         }
 
-        if (panini$size == 3) {
+        if (panini$waiting) {
             notifyAll();
         }
     }
@@ -270,11 +405,74 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
                 panini$tail = 0;
             }
         }
-        if (panini$size == numItems) {
+        if (panini$waiting) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Pushes a single object on one of this capsule's priority lanes, so that it is served
+     * before any object pushed with a lower priority or without one.
+     *
+     * @param o Object to be stored.
+     * @param priority From 1 (lowest) to `Panini$Lanes.MAX_PRIORITY` (highest).
+     */
+    protected final synchronized void panini$pushPriority(Object o, int priority)
+    {
+        if (panini$lanes == null) {
+            panini$lanes = new Panini$Lanes();
+        }
+        panini$lanes.push(o, priority);
+        panini$size = panini$size + 1;
+
+        if (panini$waiting) {
             notifyAll();
         }
     }
 
+
+    /**
+     * Pushes a single object which should be served within the given time. Such objects are
+     * served earliest deadline first, after those with a priority but before those without.
+     *
+     * @param o Object to be stored.
+     * @param millis The deadline, relative to now, in milliseconds.
+     */
+    protected final synchronized void panini$pushDeadline(Object o, long millis)
+    {
+        if (panini$lanes == null) {
+            panini$lanes = new Panini$Lanes();
+        }
+        panini$lanes.pushDeadline(o, System.nanoTime() + millis * 1000000L);
+        panini$size = panini$size + 1;
+
+        if (panini$waiting) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Pushes a call to a `@Coalesce` procedure on this capsule's queue. If the most recently
+     * queued object is a pending call to the same procedure, the call is merged into it instead.
+     *
+     * @param procID The procedure which is called.
+     * @param args The arguments of the call, or `null` if the procedure has no parameters.
+     */
+    protected final synchronized void panini$pushCoalesced(int procID, Object[] args)
+    {
+        if (panini$queued() > 0) {
+            int last = (panini$tail == 0) ? panini$queue.length - 1 : panini$tail - 1;
+            Object o = panini$queue[last];
+            if (o instanceof CoalescedMessage && ((CoalescedMessage) o).panini$msgID() == procID) {
+                CoalescedMessage msg = (CoalescedMessage) o;
+                msg.count++;
+                msg.args = args;
+                return;
+            }
+        }
+        panini$push(new CoalescedMessage(procID, args));
+    }
+
     /**
      * Initialize the capsule-requirements of this capsule.
      *
@@ -322,7 +520,15 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
     {
         try {
             Panini$System.threads.countUp();
-            panini$thread = new Thread(this);
+            if (Panini$System.PLACEMENT == Panini$Placement.NONE) {
+                panini$thread = new Thread(this);
+            } else {
+                int slot = Panini$Placement.claimThreadSlot(this);
+                panini$thread = new Thread(() -> {
+                    Panini$System.PLACEMENT.place(slot);
+                    this.run();
+                });
+            }
             panini$thread.start();
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -347,7 +553,10 @@ public abstract class Capsule$Thread implements Panini$Capsule, Runnable
 
     @Override
     public void panini$closeLink() {
-        panini$push(new SimpleMessage(PANINI$CLOSE_LINK));
+        Panini$Outbox.flush();
+        // Served ahead of the queue. This is safe, since a `PANINI$TERMINATE` which it triggers
+        // is still queued behind any message pushed before it.
+        panini$pushPriority(new SimpleMessage(PANINI$CLOSE_LINK), Panini$Lanes.MAX_PRIORITY);
     }
 
     protected void panini$onCloseLink() {
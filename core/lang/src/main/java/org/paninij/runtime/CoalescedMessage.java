@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.runtime;
+
+/**
+ * A pending call to a `@Coalesce` procedure, into which later calls can be merged while it is
+ * still the most recent message in its capsule's queue. Its fields are guarded by the monitor of
+ * that capsule.
+ */
+public class CoalescedMessage implements Panini$Message
+{
+    private final int procID;
+
+    /**
+     * The number of calls merged into this message.
+     */
+    public int count;
+
+    /**
+     * The arguments of the latest call, or `null` for a procedure without parameters.
+     */
+    public Object[] args;
+
+    public CoalescedMessage(int procID, Object[] args) {
+        this.procID = procID;
+        this.count = 1;
+        this.args = args;
+    }
+
+    @Override
+    public int panini$msgID() {
+        return procID;
+    }
+}
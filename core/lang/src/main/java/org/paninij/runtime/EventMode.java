@@ -28,5 +28,7 @@ package org.paninij.runtime;
 
 public enum EventMode {
     BROADCAST,
-    CHAIN
+    CHAIN,
+    // A `CHAIN` in which successive announcements reach each handler in announcement order.
+    PIPELINE
 }
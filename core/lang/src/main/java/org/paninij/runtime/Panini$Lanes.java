@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.runtime;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+
+import org.paninij.lang.Priority;
+
+/**
+ * The messages of a capsule which are served ahead of its FIFO queue: first one FIFO lane per
+ * `@Priority`, highest priority first, and then `@Deadline` messages, earliest deadline first.
+ * Messages with equal deadlines are served in the order they were pushed.
+ *
+ * This is not thread-safe. It is guarded by the monitor of the capsule which owns it.
+ */
+final class Panini$Lanes
+{
+    public static final int MAX_PRIORITY = Priority.MAX;
+
+    private final ArrayDeque<Object>[] lanes;
+    private final PriorityQueue<Deadlined> deadlines;
+    private long pushed;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    Panini$Lanes() {
+        lanes = (ArrayDeque<Object>[]) new ArrayDeque<?>[MAX_PRIORITY];
+        deadlines = new PriorityQueue<Deadlined>();
+        pushed = 0;
+        size = 0;
+    }
+
+    /**
+     * @param priority A priority from 1 (lowest) to `MAX_PRIORITY` (highest).
+     */
+    void push(Object o, int priority) {
+        int lane = Math.min(priority, MAX_PRIORITY) - 1;
+        if (lanes[lane] == null) {
+            lanes[lane] = new ArrayDeque<Object>();
+        }
+        lanes[lane].addLast(o);
+        size++;
+    }
+
+    /**
+     * @param deadline The deadline of the message, as given by `System.nanoTime()`.
+     */
+    void pushDeadline(Object o, long deadline) {
+        deadlines.add(new Deadlined(o, deadline, pushed++));
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The next message to serve, or `null` if there is none.
+     */
+    Object poll() {
+        if (size == 0) {
+            return null;
+        }
+        size--;
+        for (int lane = MAX_PRIORITY - 1; lane >= 0; lane--) {
+            if (lanes[lane] != null && !lanes[lane].isEmpty()) {
+                return lanes[lane].pollFirst();
+            }
+        }
+        return deadlines.poll().message;
+    }
+
+    private static final class Deadlined implements Comparable<Deadlined>
+    {
+        final Object message;
+        final long deadline;
+        final long order;
+
+        Deadlined(Object message, long deadline, long order) {
+            this.message = message;
+            this.deadline = deadline;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Deadlined other) {
+            // Compared by difference, since `System.nanoTime()` may overflow.
+            long diff = deadline - other.deadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
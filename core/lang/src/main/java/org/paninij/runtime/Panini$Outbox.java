@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.runtime;
+
+import java.util.Arrays;
+
+/**
+ * A thread's buffer of outgoing messages, which are pushed to their target capsules in bulk.
+ *
+ * A reactive thread capsule, or a task pool, opens an outbox for its thread. Messages of simple
+ * (i.e. `void`) procedures which are sent from that thread are then buffered, and flushed once
+ * the sender runs out of messages to handle (for a task pool, at the end of each visit to a
+ * capsule), once `OUTBOX_SIZE` messages are buffered, or once the oldest buffered message has
+ * waited for `OUTBOX_NANOS` while a reactive capsule keeps handling other messages. A flush pushes all of the messages for
+ * one target with a single `panini$push(Object...)`, so that the target's lock is taken once per
+ * flush rather than once per message. Targets are served in the order in which they were first
+ * sent a message.
+ *
+ * Any other message (e.g. one whose result may be waited on) flushes the outbox before it is
+ * pushed, as does waiting on a future. So, messages still reach each target in the order they
+ * were sent, and are all delivered before the sender could wait on their effects. However, a
+ * message may now reach its target after one which was sent later to another target.
+ */
+public final class Panini$Outbox
+{
+    private static final ThreadLocal<Panini$Outbox> current = new ThreadLocal<Panini$Outbox>();
+
+    // Only ever set, by a thread which opens an outbox. Threads which do not see it have no
+    // outbox, so they can skip the thread-local lookup.
+    private static boolean used = false;
+
+    private final int capacity;
+    private Object[] targets;
+    private Object[] messages;
+    private int size;
+
+    // When the oldest buffered message was added, if `OUTBOX_NANOS` is positive.
+    private long since;
+
+    private Panini$Outbox(int capacity) {
+        this.capacity = capacity;
+        this.targets = new Object[Math.min(capacity, 16)];
+        this.messages = new Object[targets.length];
+        this.size = 0;
+    }
+
+    /**
+     * Opens an outbox for the current thread, unless outboxes are disabled (i.e.
+     * `Panini$System.OUTBOX_SIZE` is not positive) or the thread already has one.
+     */
+    public static void open() {
+        int capacity = Panini$System.OUTBOX_SIZE;
+        if (capacity > 0 && current.get() == null) {
+            used = true;
+            current.set(new Panini$Outbox(capacity));
+        }
+    }
+
+    /**
+     * Flushes and removes the current thread's outbox, if it has one.
+     */
+    public static void close() {
+        Panini$Outbox outbox = current();
+        if (outbox != null) {
+            outbox.drain();
+            current.remove();
+        }
+    }
+
+    /**
+     * Pushes all of the messages buffered by the current thread, if any.
+     */
+    public static void flush() {
+        Panini$Outbox outbox = current();
+        if (outbox != null && outbox.size > 0) {
+            outbox.drain();
+        }
+    }
+
+    /**
+     * Flushes the current thread's outbox if its sender is `idle` (i.e. has no more messages to
+     * handle), or if the oldest buffered message has waited for `Panini$System.OUTBOX_NANOS`.
+     */
+    public static void flushIfDue(boolean idle) {
+        Panini$Outbox outbox = current();
+        if (outbox != null && outbox.size > 0 && (idle || outbox.isOverdue())) {
+            outbox.drain();
+        }
+    }
+
+    /**
+     * Sends a message to a thread capsule, buffering it if the current thread has an outbox.
+     */
+    public static void post(Capsule$Thread target, Object msg) {
+        Panini$Outbox outbox = current();
+        if (outbox == null) {
+            target.panini$push(msg);
+        } else {
+            outbox.add(target, msg);
+        }
+    }
+
+    /**
+     * Sends a message to a task capsule, buffering it if the current thread has an outbox.
+     */
+    public static void post(Capsule$Task target, Object msg) {
+        Panini$Outbox outbox = current();
+        if (outbox == null) {
+            target.panini$push(msg);
+        } else {
+            outbox.add(target, msg);
+        }
+    }
+
+    private static Panini$Outbox current() {
+        return used ? current.get() : null;
+    }
+
+    private boolean isOverdue() {
+        long limit = Panini$System.OUTBOX_NANOS;
+        return limit > 0 && System.nanoTime() - since >= limit;
+    }
+
+    private void add(Object target, Object msg) {
+        if (size == 0 && Panini$System.OUTBOX_NANOS > 0) {
+            since = System.nanoTime();
+        }
+        if (size == targets.length) {
+            targets = Arrays.copyOf(targets, Math.min(size * 2, capacity));
+            messages = Arrays.copyOf(messages, targets.length);
+        }
+        targets[size] = target;
+        messages[size] = msg;
+        size++;
+        if (size == capacity) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        Object[] run = new Object[size];
+        for (int start = 0; start < size; start++) {
+            Object target = targets[start];
+            if (target == null) continue;
+            int length = 0;
+            for (int i = start; i < size; i++) {
+                if (targets[i] == target) {
+                    run[length++] = messages[i];
+                    targets[i] = null;
+                }
+            }
+            deliver(target, run, length);
+        }
+        Arrays.fill(messages, 0, size, null);
+        size = 0;
+    }
+
+    private static void deliver(Object target, Object[] run, int length) {
+        if (length == 1) {
+            if (target instanceof Capsule$Thread) {
+                ((Capsule$Thread) target).panini$push(run[0]);
+            } else {
+                ((Capsule$Task) target).panini$push(run[0]);
+            }
+        } else {
+            Object[] msgs = Arrays.copyOf(run, length);
+            if (target instanceof Capsule$Thread) {
+                ((Capsule$Thread) target).panini$push(msgs);
+            } else {
+                ((Capsule$Task) target).panini$push(msgs);
+            }
+        }
+    }
+}
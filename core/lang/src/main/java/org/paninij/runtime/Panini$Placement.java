@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+
+package org.paninij.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides where on the machine the threads which run capsules are placed.
+ *
+ * Every such thread is given a slot: a task pool's workers share the pool's index, and each
+ * thread capsule takes the next free slot when it is started. A thread calls `place()` with its
+ * slot before it runs any capsule. `Panini$System.PLACEMENT` is `NONE` by default, which leaves
+ * threads wherever the OS puts them. `cores()` and `numaNodes()` pin them on Linux.
+ *
+ * Capsules which talk to each other a lot can be given one slot with `colocate()`, so that they
+ * run on the same core (or NUMA node), and task capsules share a pool. Co-located task capsules
+ * are never moved to another pool by rebalancing.
+ */
+public abstract class Panini$Placement
+{
+    /**
+     * Leaves every thread wherever the OS puts it.
+     */
+    public static final Panini$Placement NONE = new Panini$Placement() {
+        @Override
+        public void place(int slot) { }
+    };
+
+    private static final class Group {
+        int slot = -1;
+    }
+
+    private static final Map<Panini$Capsule, Group> groups =
+            Collections.synchronizedMap(new WeakHashMap<Panini$Capsule, Group>());
+    private static final AtomicInteger nextSlot = new AtomicInteger(0);
+
+    /**
+     * Places the calling thread.
+     *
+     * @param slot The thread's slot. It may be larger than the number of places, in which case
+     *             the places are reused round-robin.
+     */
+    public abstract void place(int slot);
+
+    /**
+     * Asks for the given capsules to be run on the same core or NUMA node, and, if they are task
+     * capsules, by the same task pool. Has to be called before any of them is started, e.g. in
+     * the `design()` of the capsule which owns them.
+     */
+    public static void colocate(Panini$Capsule... capsules) {
+        Group group = new Group();
+        for (Panini$Capsule c : capsules) groups.put(c, group);
+    }
+
+    /**
+     * @return Whether the given capsule was passed to `colocate()`.
+     */
+    static boolean isColocated(Panini$Capsule c) {
+        return groups.containsKey(c);
+    }
+
+    /**
+     * Gives a capsule a slot.
+     *
+     * @param proposed The slot which the capsule gets unless it has been co-located with one
+     *                 which already has a slot.
+     * @return The capsule's slot.
+     */
+    static int claimSlot(Panini$Capsule c, int proposed) {
+        Group group = groups.get(c);
+        if (group == null) return proposed;
+        synchronized (group) {
+            if (group.slot < 0) group.slot = proposed;
+            return group.slot;
+        }
+    }
+
+    /**
+     * @return The slot of a thread capsule which is being started.
+     */
+    static int claimThreadSlot(Panini$Capsule c) {
+        return claimSlot(c, nextSlot.getAndIncrement());
+    }
+
+    /**
+     * Pins each slot to one of the CPUs which this process may run on, round-robin.
+     */
+    public static Panini$Placement cores() {
+        List<int[]> places = new ArrayList<int[]>();
+        for (int cpu : allowedCpus()) places.add(new int[] { cpu });
+        return new Pinned(places);
+    }
+
+    /**
+     * Pins each slot to the CPUs of one NUMA node, round-robin over the nodes. Falls back to
+     * `cores()` if the kernel does not expose any nodes.
+     */
+    public static Panini$Placement numaNodes() {
+        int[] allowed = allowedCpus();
+        List<int[]> places = new ArrayList<int[]>();
+        File[] nodes = new File("/sys/devices/system/node").listFiles(
+                (dir, name) -> name.matches("node[0-9]+"));
+        if (nodes != null) {
+            Arrays.sort(nodes, (a, b) -> Integer.compare(nodeIndex(a), nodeIndex(b)));
+            for (File node : nodes) {
+                int[] cpus = intersect(parseCpuList(read(node.toPath().resolve("cpulist"))), allowed);
+                if (cpus.length > 0) places.add(cpus);
+            }
+        }
+        return places.isEmpty() ? cores() : new Pinned(places);
+    }
+
+    /**
+     * Pins threads with `taskset`, which is given the calling thread's id from
+     * `/proc/thread-self`. This costs a process per placed thread, so it suits long-lived
+     * threads. If pinning fails once, a stack trace is printed and no more threads are pinned.
+     */
+    private static final class Pinned extends Panini$Placement {
+        private final List<int[]> places;
+        private volatile boolean failed = false;
+
+        Pinned(List<int[]> places) {
+            this.places = places;
+        }
+
+        @Override
+        public void place(int slot) {
+            if (failed || places.isEmpty()) return;
+            int[] cpus = places.get(Math.floorMod(slot, places.size()));
+            StringBuilder list = new StringBuilder();
+            for (int cpu : cpus) {
+                if (list.length() > 0) list.append(',');
+                list.append(cpu);
+            }
+            try {
+                String tid = Paths.get("/proc/thread-self").toRealPath().getFileName().toString();
+                Process p = new ProcessBuilder("taskset", "-p", "-c", list.toString(), tid)
+                        .redirectErrorStream(true)
+                        .redirectOutput(new File("/dev/null"))
+                        .start();
+                if (p.waitFor() != 0) throw new IOException("taskset failed for thread " + tid);
+            } catch (IOException | InterruptedException e) {
+                failed = true;
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static int[] allowedCpus() {
+        for (String line : read(Paths.get("/proc/self/status")).split("\n")) {
+            if (line.startsWith("Cpus_allowed_list:")) {
+                return parseCpuList(line.substring(line.indexOf(':') + 1));
+            }
+        }
+        int[] cpus = new int[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < cpus.length; i++) cpus[i] = i;
+        return cpus;
+    }
+
+    /**
+     * Parses a kernel CPU list, e.g. `0-3,8-11`.
+     */
+    static int[] parseCpuList(String list) {
+        List<Integer> cpus = new ArrayList<Integer>();
+        for (String range : list.trim().split(",")) {
+            if (range.isEmpty()) continue;
+            int dash = range.indexOf('-');
+            int from = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).trim());
+            int to = (dash < 0) ? from : Integer.parseInt(range.substring(dash + 1).trim());
+            for (int cpu = from; cpu <= to; cpu++) cpus.add(cpu);
+        }
+        int[] result = new int[cpus.size()];
+        for (int i = 0; i < result.length; i++) result[i] = cpus.get(i);
+        return result;
+    }
+
+    private static int[] intersect(int[] cpus, int[] allowed) {
+        return Arrays.stream(cpus).filter(c -> Arrays.stream(allowed).anyMatch(a -> a == c)).toArray();
+    }
+
+    private static int nodeIndex(File node) {
+        return Integer.parseInt(node.getName().substring("node".length()));
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path));
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
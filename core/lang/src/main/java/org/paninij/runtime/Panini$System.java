@@ -28,7 +28,104 @@ package org.paninij.runtime;
 public class Panini$System
 {
 
-    public static int POOL_SIZE = 4;
+    /**
+     * The number of task pools, each of which has a thread of its own.
+     */
+    public static int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The most workers which the task pools may have between them before they stop adding
+     * elastic workers. Spare workers for blocked ones are started regardless.
+     */
+    public static int POOL_MAX_WORKERS = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of ready capsules in a task pool above which it counts as backlogged. A pool
+     * which stays backlogged for `POOL_BACKLOG_MILLIS` adds an elastic worker.
+     */
+    public static int POOL_BACKLOG = 8;
+
+    public static long POOL_BACKLOG_MILLIS = 1;
+
+    /**
+     * How long an elastic worker of a task pool waits for a ready capsule before it retires.
+     */
+    public static long POOL_IDLE_MILLIS = 1000;
+
+    /**
+     * The number of outgoing messages which a reactive capsule buffers before pushing them to
+     * their targets in bulk, or 0 to push every message as it is sent. See `Panini$Outbox`.
+     */
+    public static int OUTBOX_SIZE = 0;
+
+    /**
+     * The longest time, in nanoseconds, which a message may wait in a reactive capsule's outbox
+     * while the capsule keeps handling messages, or 0 for no limit. See `Panini$Outbox`.
+     */
+    public static long OUTBOX_NANOS = 100000;
+
+    /**
+     * The most messages which a task pool handles for one capsule per visit, before it moves on
+     * to the next ready capsule. Larger quanta keep a busy capsule's working set in cache, at
+     * the cost of the latency of the other capsules in its pool.
+     */
+    public static int TASK_QUANTUM = 16;
+
+    /**
+     * The most time, in nanoseconds, which a task pool spends on one capsule per visit, or 0 for
+     * no limit. A visit always handles at least one message.
+     */
+    public static long TASK_QUANTUM_NANOS = 0;
+
+    /**
+     * How often, in milliseconds, the task pools compare how busy they have been, and move a
+     * capsule from the busiest pool to the least busy one, or 0 to keep every capsule in the
+     * pool it started in. See `Panini$TaskPool.rebalance()`.
+     */
+    public static long REBALANCE_MILLIS = 100;
+
+    /**
+     * How much busier, as a fraction of its busy time, the busiest task pool must have been
+     * than the least busy one for a capsule to be moved between them.
+     */
+    public static double REBALANCE_THRESHOLD = 0.25;
+
+    /**
+     * Where the threads which run capsules are placed on the machine. See `Panini$Placement`.
+     */
+    public static Panini$Placement PLACEMENT = Panini$Placement.NONE;
+
+    /**
+     * The most passes which the combiner of a `COMBINING` capsule makes over the other callers'
+     * calls before it lets go of the capsule. See `Capsule$Combining`.
+     */
+    public static int COMBINE_PASSES = 4;
+
+    /**
+     * The number of combining rounds in a row in which a caller's slot of a `COMBINING` capsule
+     * may be idle before the combiner unlinks it, so that the slots of threads which no longer
+     * call the capsule are not visited forever. See `Capsule$Combining`.
+     */
+    public static int COMBINE_SLOT_AGE = 64;
+
+    /**
+     * The number of calls over which an `ADAPTIVE` capsule measures its load before it switches
+     * between direct calls and its queue. See `Capsule$Adaptive`.
+     */
+    public static int ADAPTIVE_WINDOW = 256;
+
+    /**
+     * The share of a window of calls which may find a direct `ADAPTIVE` capsule busy before it
+     * switches to its queue.
+     */
+    public static double ADAPTIVE_CONTENTION = 0.1;
+
+    /**
+     * The share of a window of messages which may find others waiting for a queued
+     * `ADAPTIVE` capsule to switch back to direct calls.
+     */
+    public static double ADAPTIVE_BACKLOG = 0.05;
+
     public static Panini$Latch threads = new Panini$Latch();
 
     /**
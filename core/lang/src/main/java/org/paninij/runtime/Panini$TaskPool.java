@@ -26,7 +26,10 @@
 
 package org.paninij.runtime;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class Panini$TaskPool extends Thread {
     private static volatile boolean initiated = false;
@@ -35,9 +38,89 @@ public final class Panini$TaskPool extends Thread {
     private static int nextPool = 0;
     private static AtomicInteger shutdown = new AtomicInteger(0);
     private static AtomicInteger startup = new AtomicInteger(0);
-    private Capsule$Task headNode;
 
-    private Panini$TaskPool() { }
+    /**
+     * The capsules which have messages to handle, in the order they got them. A capsule is in
+     * it at most once (see `Capsule$Task.panini$scheduled`), so the pool never visits an idle
+     * capsule, however many it has.
+     */
+    private final ArrayDeque<Capsule$Task> readyQueue = new ArrayDeque<Capsule$Task>();
+    private int capsules = 0;
+
+    /**
+     * The pool the current thread works for, if it is one of the pool's workers.
+     */
+    private static final ThreadLocal<Panini$TaskPool> worker = new ThreadLocal<Panini$TaskPool>();
+
+    /**
+     * The number of this pool's workers which are not blocked (see `beginBlocking()`). A spare
+     * worker is woken or started whenever it would drop to 0, and a spare parks once it is above
+     * 1.
+     */
+    private int active = 1;
+
+    /**
+     * The number of this pool's spare workers which are parked (see `park()`), and the number
+     * of those which have been asked to work again but have not woken up yet.
+     */
+    private int parked = 0;
+    private int wakeups = 0;
+
+    /**
+     * When the ready queue last grew longer than `Panini$System.POOL_BACKLOG`, or 0 if it is
+     * shorter now.
+     */
+    private long backlogSince = 0;
+
+    /**
+     * The ways a thread can come to work for a pool.
+     */
+    private enum Role {
+        /** The pool's own thread, which works until the pool has no capsules left. */
+        CORE,
+        /** Started while every other worker is blocked. Parks once another one is running. */
+        SPARE,
+        /** Started under a sustained backlog. Retires once it has been idle for a while. */
+        ELASTIC
+    }
+
+    /**
+     * The time which this pool's workers have spent running capsules during the current
+     * rebalancing period.
+     */
+    private final AtomicLong busy = new AtomicLong(0);
+
+    /**
+     * The pool which the last rebalancing chose to take one of this pool's capsules, and the
+     * most busy time which that capsule may have. Guarded by this pool's lock.
+     */
+    private Panini$TaskPool migrateTo;
+    private long migrateBudget;
+
+    /**
+     * Whether this pool's own thread has stopped. Guarded by this pool's lock.
+     */
+    private boolean finished = false;
+
+    private static volatile int period = 0;
+    private static final AtomicLong lastRebalance = new AtomicLong(System.nanoTime());
+
+    // Metrics, over all pools.
+    private static final AtomicInteger workers = new AtomicInteger(0);
+    private static final AtomicLong workersAdded = new AtomicLong(0);
+    private static final AtomicLong workersRetired = new AtomicLong(0);
+    private static final AtomicLong sparesStarted = new AtomicLong(0);
+    private static final AtomicLong sparesReused = new AtomicLong(0);
+    private static final AtomicLong migrations = new AtomicLong(0);
+
+    /**
+     * This pool's index, which is the slot of its workers (see `Panini$Placement`).
+     */
+    private final int slot;
+
+    private Panini$TaskPool(int slot) {
+        this.slot = slot;
+    }
 
     static final synchronized void init(int size) throws Exception {
         if (initiated) throw new Exception("TaskPool already initialized");
@@ -46,7 +129,7 @@ public final class Panini$TaskPool extends Thread {
         shutdown.set(0);
         startup.set(0);
         for (int i = 0; i < pools.length; i ++)
-            pools[i] = new Panini$TaskPool();
+            pools[i] = new Panini$TaskPool(i);
 
         initiated = true;
     }
@@ -86,10 +169,13 @@ public final class Panini$TaskPool extends Thread {
         }
 
         // TODO: See load balancing
-        int currentPool = nextPool;
-        nextPool++;
-        if (nextPool >= poolSize) nextPool = 0;
+        int currentPool = Panini$Placement.claimSlot(t, nextPool) % poolSize;
+        if (currentPool == nextPool) {
+            nextPool++;
+            if (nextPool >= poolSize) nextPool = 0;
+        }
         pools[currentPool]._add(t);
+        t.panini$started();
         if (!pools[currentPool].isAlive()) {
             try {
                 Panini$System.threads.countUp();
@@ -103,13 +189,8 @@ public final class Panini$TaskPool extends Thread {
     }
 
     private final synchronized void _add(Capsule$Task t) {
-        if (headNode == null) {
-            headNode = t;
-            t.panini$nextCapsule = t;
-        } else {
-            t.panini$nextCapsule = headNode.panini$nextCapsule;
-            headNode.panini$nextCapsule = t;
-        }
+        capsules++;
+        t.panini$containingPool = this;
         t.panini$capsuleInit();
     }
 
@@ -118,43 +199,361 @@ public final class Panini$TaskPool extends Thread {
     }
 
     private final synchronized void _remove(Capsule$Task t) {
-        Capsule$Task current = headNode;
-        Capsule$Task previous = headNode;
-        while (current != t) {
-            previous = current;
-            current = current.panini$nextCapsule;
+        capsules--;
+        if (capsules == 0) notifyAll();
+    }
+
+    /**
+     * Adds a capsule which got a message while idle to the ready queue.
+     */
+    final synchronized void ready(Capsule$Task t) {
+        readyQueue.add(t);
+        if (readyQueue.size() == 1) notifyAll();
+    }
+
+    /**
+     * Waits for a capsule to be ready.
+     *
+     * @param role How the calling worker came to work for this pool.
+     * @return The next ready capsule, or `null` once this pool has no capsules left, or once the
+     *         calling worker should retire.
+     */
+    private final synchronized Capsule$Task nextReady(Role role) {
+        long idleSince = 0;
+        while (true) {
+            if (role == Role.SPARE && active > 1) {
+                if (!park()) return null;
+                continue;
+            }
+            if (!readyQueue.isEmpty()) {
+                checkBacklog();
+                return readyQueue.poll();
+            }
+            if (capsules == 0) {
+                if (role != Role.CORE) return retire();
+                finished = true;
+                return null;
+            }
+            try {
+                // An elastic worker only times out while another worker is running, so that a
+                // blocked worker is never left without one.
+                if (role == Role.ELASTIC && active > 1) {
+                    long idle = TimeUnit.MILLISECONDS.toNanos(Panini$System.POOL_IDLE_MILLIS);
+                    long now = System.nanoTime();
+                    if (idleSince == 0) {
+                        idleSince = now;
+                    } else if (now - idleSince >= idle) {
+                        workersRetired.incrementAndGet();
+                        return retire();
+                    }
+                    wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(idle - (now - idleSince))));
+                } else {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                // Try waiting again.
+            }
         }
+    }
+
+    /**
+     * Adds an elastic worker to this pool if its ready queue has stayed longer than
+     * `Panini$System.POOL_BACKLOG` for `POOL_BACKLOG_MILLIS`, and the pools have fewer than
+     * `POOL_MAX_WORKERS` workers.
+     *
+     * Precondition: this pool's lock is held.
+     */
+    private void checkBacklog() {
+        if (readyQueue.size() <= Panini$System.POOL_BACKLOG) {
+            backlogSince = 0;
+            return;
+        }
+        long now = System.nanoTime();
+        if (backlogSince == 0) {
+            backlogSince = now;
+        } else if (now - backlogSince >= TimeUnit.MILLISECONDS.toNanos(Panini$System.POOL_BACKLOG_MILLIS)
+                && workers.get() < Panini$System.POOL_MAX_WORKERS) {
+            backlogSince = 0;
+            workersAdded.incrementAndGet();
+            startWorker(Role.ELASTIC);
+        }
+    }
 
-        if (previous == current) {
-            if (current.panini$nextCapsule == current) {
-                headNode = null;
-                return;
+    /**
+     * Precondition: this pool's lock is held.
+     */
+    private void startWorker(Role role) {
+        active++;
+        workers.incrementAndGet();
+        Thread t = new Thread(() -> work(role), getName() + "-" + role.name().toLowerCase());
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Parks a spare worker which is no longer needed until `blocking()` needs one again, so that
+     * a pool whose workers often block reuses its spares rather than starting a thread each time.
+     *
+     * Precondition: this pool's lock is held.
+     *
+     * @return Whether the worker was asked to work again, rather than the pool having no
+     *         capsules left, in which case the worker has retired.
+     */
+    private boolean park() {
+        active--;
+        parked++;
+        while (wakeups == 0 && capsules != 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Try waiting again.
             }
-            Capsule$Task tmp = previous;
-            while (tmp != previous.panini$nextCapsule)
-                previous = previous.panini$nextCapsule;
+        }
+        parked--;
+        if (wakeups == 0) {
+            workers.decrementAndGet();
+            return false;
+        }
+        // `blocking()` has already counted this worker as active.
+        wakeups--;
+        return true;
+    }
+
+    /**
+     * Precondition: this pool's lock is held.
+     */
+    private Capsule$Task retire() {
+        active--;
+        workers.decrementAndGet();
+        return null;
+    }
+
+    /**
+     * Adds the busy time of a visit to a capsule to this pool's and the capsule's, rebalances
+     * the pools if a period has passed, and then hands the capsule over to another pool if the
+     * last rebalancing asked this pool for a capsule and this one fits.
+     *
+     * Called by the worker which has just visited the capsule, so it is between messages.
+     */
+    private void account(Capsule$Task t, long nanos) {
+        busy.addAndGet(nanos);
+        int p = period;
+        if (t.panini$busyPeriod != p) {
+            t.panini$busyPeriod = p;
+            t.panini$busy = 0;
+        }
+        t.panini$busy += nanos;
 
-            headNode = current.panini$nextCapsule;
-            previous.panini$nextCapsule = headNode;
+        long now = System.nanoTime();
+        long last = lastRebalance.get();
+        if (now - last >= TimeUnit.MILLISECONDS.toNanos(Panini$System.REBALANCE_MILLIS)
+                && lastRebalance.compareAndSet(last, now)) {
+            rebalance();
+        }
+
+        Panini$TaskPool target = takeMigration(t);
+        if (target == null) return;
+        if (target.adopt()) {
+            _remove(t);
+            t.panini$moveTo(target);
+            migrations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Compares the busy time of the pools over the last period. If the busiest one was busier
+     * than the least busy one by more than `Panini$System.REBALANCE_THRESHOLD`, it is asked to
+     * hand over a capsule which used at most half of the difference, so that the move does not
+     * just swap their roles.
+     */
+    private static void rebalance() {
+        Panini$TaskPool[] ps = pools;
+        period++;
+        Panini$TaskPool most = null, least = null;
+        long mostBusy = -1, leastBusy = Long.MAX_VALUE;
+        for (Panini$TaskPool p : ps) {
+            if (p == null) continue;
+            long b = p.busy.getAndSet(0);
+            if (b > mostBusy) {
+                mostBusy = b;
+                most = p;
+            }
+            if (b < leastBusy) {
+                leastBusy = b;
+                least = p;
+            }
+        }
+        if (most == null || most == least) return;
+        if (mostBusy - leastBusy <= mostBusy * Panini$System.REBALANCE_THRESHOLD) return;
+        most.orderMigration(least, (mostBusy - leastBusy) / 2);
+    }
+
+    private final synchronized void orderMigration(Panini$TaskPool target, long budget) {
+        migrateTo = target;
+        migrateBudget = budget;
+    }
+
+    /**
+     * @return The pool to move the given capsule to, or `null` if it should stay. A pool never
+     *         gives away its last capsule, nor one which is co-located with others.
+     */
+    private final synchronized Panini$TaskPool takeMigration(Capsule$Task t) {
+        if (migrateTo == null || capsules < 2) return null;
+        if (Panini$Placement.isColocated(t)) return null;
+        if (t.panini$busy == 0 || t.panini$busy > migrateBudget) return null;
+        Panini$TaskPool target = migrateTo;
+        migrateTo = null;
+        return target;
+    }
+
+    /**
+     * Counts a capsule which is about to be moved to this pool.
+     *
+     * @return Whether this pool can take it, i.e. its thread is running.
+     */
+    private final synchronized boolean adopt() {
+        if (finished || !isAlive()) return false;
+        capsules++;
+        return true;
+    }
+
+    /**
+     * @return The number of workers of all pools which are alive, including ones blocked in a
+     *         capsule.
+     */
+    public static int workers() {
+        return workers.get();
+    }
+
+    /**
+     * @return The number of elastic workers which have been started under a backlog.
+     */
+    public static long workersAdded() {
+        return workersAdded.get();
+    }
+
+    /**
+     * @return The number of elastic workers which have retired after being idle.
+     */
+    public static long workersRetired() {
+        return workersRetired.get();
+    }
+
+    /**
+     * @return The number of spare workers which have been started while every other worker of
+     *         their pool was blocked.
+     */
+    public static long sparesStarted() {
+        return sparesStarted.get();
+    }
+
+    /**
+     * @return The number of times a parked spare worker has been woken instead of starting one.
+     */
+    public static long sparesReused() {
+        return sparesReused.get();
+    }
+
+    /**
+     * @return The number of capsules which have been moved from one pool to another.
+     */
+    public static long migrations() {
+        return migrations.get();
+    }
+
+    /**
+     * Called by a thread before it blocks on a future or on an event announcement. If the
+     * thread is one of this pool's workers, and no other worker is left to run the pool's
+     * capsules, a spare worker is started to run them until the thread is unblocked. Otherwise
+     * a capsule of the pool which the blocked one is waiting on could never run.
+     *
+     * Every call must be paired with a call to `endBlocking()`.
+     */
+    public static void beginBlocking() {
+        Panini$TaskPool pool = worker.get();
+        if (pool != null) pool.blocking();
+    }
+
+    /**
+     * Called by a thread after it has been unblocked. See `beginBlocking()`.
+     */
+    public static void endBlocking() {
+        Panini$TaskPool pool = worker.get();
+        if (pool != null) pool.unblocked();
+    }
+
+    private final synchronized void blocking() {
+        if (--active > 0) return;
+        if (parked > wakeups) {
+            active++;
+            wakeups++;
+            sparesReused.incrementAndGet();
+            notifyAll();
         } else {
-            previous.panini$nextCapsule = current.panini$nextCapsule;
+            sparesStarted.incrementAndGet();
+            startWorker(Role.SPARE);
         }
     }
 
+    private final synchronized void unblocked() {
+        active++;
+        notifyAll();
+    }
+
+    /**
+     * Handles the messages of a capsule until its queue is empty, or until it has used up its
+     * quantum (see `Panini$System.TASK_QUANTUM` and `TASK_QUANTUM_NANOS`). A capsule with
+     * messages left is put back at the end of the ready queue, so the pool stays fair.
+     *
+     * @return Whether the capsule terminated.
+     */
+    private static boolean visit(Capsule$Task t) {
+        int quantum = Panini$System.TASK_QUANTUM;
+        long nanos = Panini$System.TASK_QUANTUM_NANOS;
+        long deadline = (nanos > 0) ? System.nanoTime() + nanos : 0;
+        int handled = 0;
+        while (t.panini$size != 0) {
+            if (t.run()) return true;
+            if (++handled >= quantum) break;
+            if (nanos > 0 && System.nanoTime() - deadline >= 0) break;
+        }
+        return false;
+    }
+
     @Override
     public void run() {
-        // implementation relies on at least one capsule being present
-        Capsule$Task current = headNode;
-        while (true) {
-            if (current.panini$size != 0) {
-                if (current.run() == true) remove(this, current);
-                if (headNode == null) break;
-            }
-            synchronized(this) {
-                current = current.panini$nextCapsule;
+        workers.incrementAndGet();
+        work(Role.CORE);
+        workers.decrementAndGet();
+        shutdown();
+    }
+
+    /**
+     * Runs ready capsules until there are none left, or until the worker should retire.
+     */
+    private void work(Role role) {
+        // Other workers are started by one of the pool's workers, and so inherit its placement.
+        if (role == Role.CORE) Panini$System.PLACEMENT.place(slot);
+        worker.set(this);
+        Panini$Outbox.open();
+        Capsule$Task current;
+        while ((current = nextReady(role)) != null) {
+            // With a single pool there is nowhere to move a capsule to.
+            boolean measured = Panini$System.REBALANCE_MILLIS > 0 && poolSize > 1;
+            long start = measured ? System.nanoTime() : 0;
+            boolean terminated = visit(current);
+            // Messages sent during the visit are delivered before the next capsule runs.
+            Panini$Outbox.flush();
+            if (terminated) {
+                // A terminated capsule is left marked as scheduled, so it is never run again.
+                remove(this, current);
+            } else {
+                if (measured) account(current, System.nanoTime() - start);
+                current.panini$visited();
             }
         }
-        shutdown();
+        Panini$Outbox.close();
+        worker.remove();
     }
 
 }
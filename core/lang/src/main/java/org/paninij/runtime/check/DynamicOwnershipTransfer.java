@@ -26,6 +26,7 @@
 package org.paninij.runtime.check;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -290,11 +291,18 @@ public class DynamicOwnershipTransfer
          *  - `obj` is classified as unsafe.
          *  - `f` is a field of `obj.getClass()`.
          * 
+         * Static fields are not part of the object graph of `obj`, so they are never explored. Nor
+         * are fields whose value is always safe: a primitive field is read as a boxed value, which
+         * may be shared with other objects by the boxing cache. On Java 9 and later, the fields of
+         * classes in modules which are not open to this one cannot be read, so these are not
+         * explored either.
+         *
          * @return The stored value of the 
          */
         private static Object getFieldValueIfUnsafe(Object obj, Field f)
         {
-            if (isAlwaysSafe(f.getDeclaringClass()))
+            if (isAlwaysSafe(f.getDeclaringClass()) || isAlwaysSafe(f.getType())
+                                                    || Modifier.isStatic(f.getModifiers()))
             {
                 return null;
             }
@@ -302,9 +310,12 @@ public class DynamicOwnershipTransfer
             {
                 try {
                     f.setAccessible(true);
-                    return (f.get(obj));
+                    Object value = f.get(obj);
+                    return (value == null || isAlwaysSafe(value.getClass())) ? null : value;
                 }
                 catch (IllegalAccessException ex) { return null; }
+                // i.e. `InaccessibleObjectException`, which is not in Java 8.
+                catch (RuntimeException ex) { return null; }
             }
         }
         
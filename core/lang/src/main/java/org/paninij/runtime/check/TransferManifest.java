@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.runtime.check;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+
+/**
+ * A transfer-safety manifest records which ownership transfers have been proven safe by the Soter
+ * analysis. Soter writes one manifest file per analyzed capsule core, and the annotation processor
+ * reads a directory of such files on a later build, so that the dynamic ownership transfer checks
+ * can be omitted from the generated procedures whose transfers are already proven safe.
+ *
+ * Only results are recorded, since only results are checked dynamically (see the
+ * `panini.ownershipTransfer.dynamic` option). Whether the arguments of a send are safe depends on
+ * every capsule which may make it, which the processor cannot know when it generates the
+ * receiving capsule, so the safety of invocations is not consumed.
+ *
+ * A manifest is stored as a properties file whose keys have the form
+ * `return.<capsule>.<procedure>/<arity>`, recording the safety of the results returned by a
+ * procedure of the capsule `<capsule>` (a fully qualified capsule name).
+ *
+ * Each key maps to either `safe` or `unsafe`. Procedures are identified by their name and number
+ * of parameters rather than by their full signature. So, overloads with the same arity share an
+ * entry, which is only `safe` if all of them are.
+ *
+ * Whenever the same key is added more than once (either within one manifest or when several
+ * manifests are loaded together), the results are merged conservatively: the key is only `safe`
+ * if every added result is safe.
+ */
+public class TransferManifest
+{
+    public static final String ARGUMENT_KEY = "panini.soter.manifests";
+    public static final String FILE_SUFFIX = ".transfers";
+
+    private static final String SAFE = "safe";
+    private static final String UNSAFE = "unsafe";
+
+    private final Properties entries = new Properties();
+
+
+    /**
+     * Loads all of the manifest files in the given directory into a single manifest. If `dir` is
+     * `null` or is not a directory, then an empty manifest is returned.
+     *
+     * @throws IOException If some manifest file could not be read.
+     */
+    public static TransferManifest load(File dir) throws IOException
+    {
+        TransferManifest manifest = new TransferManifest();
+        if (dir == null || !dir.isDirectory()) {
+            return manifest;
+        }
+        File[] files = dir.listFiles((d, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return manifest;
+        }
+        for (File file : files)
+        {
+            Properties loaded = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                loaded.load(in);
+            }
+            for (String key : loaded.stringPropertyNames()) {
+                manifest.put(key, SAFE.equals(loaded.getProperty(key)));
+            }
+        }
+        return manifest;
+    }
+
+
+    public void store(File file) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(file)) {
+            entries.store(out, "Soter transfer-safety manifest");
+        }
+    }
+
+
+    public void putResult(String capsule, String procedure, int arity, boolean isSafe)
+    {
+        put("return." + capsule + "." + procedure + "/" + arity, isSafe);
+    }
+
+
+    public boolean isSafeResult(String capsule, String procedure, int arity)
+    {
+        return SAFE.equals(entries.getProperty("return." + capsule + "." + procedure + "/" + arity));
+    }
+
+
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+
+    private void put(String key, boolean isSafe)
+    {
+        boolean wasUnsafe = UNSAFE.equals(entries.getProperty(key));
+        entries.setProperty(key, (isSafe && !wasUnsafe) ? SAFE : UNSAFE);
+    }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.paninij.runtime.EventMode;
+
+public class TestEvent
+{
+    private ExecutorService handlers;
+
+    @Before
+    public void startHandlers()
+    {
+        handlers = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void stopHandlers() throws InterruptedException
+    {
+        handlers.shutdownNow();
+        handlers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registers a handler which records each value it receives, and completes it later on a
+     * thread of `handlers`, as a handler of a capsule on another thread would.
+     */
+    private EventConnection<Integer> record(Event<Integer> event, RegisterType type,
+            List<Integer> received)
+    {
+        return event.register((ex, arg) -> {
+            synchronized (received) {
+                received.add(arg);
+            }
+            handlers.execute(ex::panini$markComplete);
+        }, type);
+    }
+
+    private static List<Integer> range(int from, int to)
+    {
+        List<Integer> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    /**
+     * While announcements are made and completed on other threads, each handler of a pipeline
+     * receives every announced value, in order.
+     */
+    @Test(timeout = 30000)
+    public void pipelineDeliversEveryValueInOrder() throws Exception
+    {
+        Event<Integer> event = new Event<>(EventMode.PIPELINE);
+        List<List<Integer>> received = new ArrayList<>();
+        RegisterType[] types = { RegisterType.WRITE, RegisterType.READ, RegisterType.READ,
+                RegisterType.WRITE };
+        for (RegisterType type : types) {
+            List<Integer> r = new ArrayList<>();
+            received.add(r);
+            record(event, type, r);
+        }
+
+        List<EventExecution<Integer>> executions = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            executions.add(event.announce(i));
+        }
+        for (EventExecution<Integer> ex : executions) {
+            ex.done();
+        }
+
+        for (List<Integer> r : received) {
+            assertEquals(range(0, 10000), r);
+        }
+    }
+
+    /**
+     * Announcements made concurrently by several threads each reach every handler of a pipeline
+     * exactly once, with their values.
+     */
+    @Test(timeout = 30000)
+    public void concurrentPipelineAnnouncementsAreAllDelivered() throws Exception
+    {
+        Event<Integer> event = new Event<>(EventMode.PIPELINE);
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+        record(event, RegisterType.WRITE, first);
+        record(event, RegisterType.WRITE, second);
+
+        int threads = 4, each = 2500;
+        List<Thread> announcers = new ArrayList<>();
+        List<EventExecution<Integer>> executions =
+                Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            int from = t * each;
+            announcers.add(new Thread(() -> {
+                for (int i = from; i < from + each; i++) {
+                    executions.add(event.announce(i));
+                }
+            }));
+        }
+        for (Thread t : announcers) t.start();
+        for (Thread t : announcers) t.join();
+        for (EventExecution<Integer> ex : executions) {
+            ex.done();
+        }
+
+        // Both handlers see the announcements in the same order.
+        assertEquals(first, second);
+        List<Integer> sorted = new ArrayList<>(first);
+        Collections.sort(sorted);
+        assertEquals(range(0, threads * each), sorted);
+    }
+
+    @Test(timeout = 30000)
+    public void pipelineDeliversBatches() throws Exception
+    {
+        Event<Integer> event = new Event<>(EventMode.PIPELINE);
+        List<Integer> writer = new ArrayList<>();
+        List<Integer> reader = new ArrayList<>();
+        record(event, RegisterType.WRITE, writer);
+        record(event, RegisterType.READ, reader);
+
+        EventExecution<Integer> a = event.announceAll(Arrays.asList(0, 1, 2));
+        EventExecution<Integer> b = event.announce(3);
+        EventExecution<Integer> c = event.announceAll(new Integer[] { 4, 5 });
+        a.done();
+        b.done();
+        c.done();
+
+        assertEquals(range(0, 6), writer);
+        assertEquals(range(0, 6), reader);
+    }
+
+    /**
+     * Turning a connection off only affects the announcements which are made afterwards, even
+     * if an earlier one has not yet reached it.
+     */
+    @Test(timeout = 30000)
+    public void offOnlyAffectsLaterPipelineAnnouncements() throws Exception
+    {
+        Event<Integer> event = new Event<>(EventMode.PIPELINE);
+        List<EventExecution<Integer>> held = new ArrayList<>();
+        event.register((ex, arg) -> held.add(ex), RegisterType.WRITE);
+        List<Integer> received = new ArrayList<>();
+        EventConnection<Integer> conn = record(event, RegisterType.WRITE, received);
+
+        // The first handler holds on to the announcement, so it cannot reach `conn` yet.
+        EventExecution<Integer> before = event.announce(1);
+        assertTrue(received.isEmpty());
+        conn.off();
+        EventExecution<Integer> after = event.announce(2);
+        conn.on();
+
+        held.get(0).panini$markComplete();
+        before.done();
+        assertEquals(Collections.singletonList(1), received);
+        assertFalse(after.isDone());
+        held.get(1).panini$markComplete();
+        after.done();
+        assertEquals(Collections.singletonList(1), received);
+    }
+}
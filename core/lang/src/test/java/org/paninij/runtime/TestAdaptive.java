@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAdaptive
+{
+    private static final int CALL = 0;
+    private static final int HOLD = 1;
+    private static final int BOUNCE = 2;
+
+    private int window;
+
+    /**
+     * An adaptive capsule with one procedure, `call()`, which counts the calls which it runs
+     * directly and those which a worker runs. A `HOLD` message keeps the worker busy until
+     * `release` is counted down.
+     */
+    private static class Adaptive extends Capsule$Adaptive
+    {
+        final AtomicInteger direct = new AtomicInteger();
+        final AtomicInteger queued = new AtomicInteger();
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Adaptive() {
+            panini$enableReaders();
+        }
+
+        void call() {
+            if (panini$tryDirect()) {
+                try {
+                    direct.incrementAndGet();
+                    return;
+                } finally {
+                    panini$endDirect();
+                }
+            }
+            panini$push(new SimpleMessage(CALL));
+        }
+
+        @Override
+        protected boolean run() {
+            Panini$Message msg = panini$nextMessage();
+            if (msg == null) return false;
+            panini$beginWrite();
+            try {
+                switch (msg.panini$msgID()) {
+                case CALL:
+                    queued.incrementAndGet();
+                    break;
+                case HOLD:
+                    held.countDown();
+                    release.await();
+                    break;
+                case PANINI$TERMINATE:
+                    return true;
+                }
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                panini$endWrite();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An adaptive capsule whose one procedure, `bounce()`, calls `bounce()` on its peer until
+     * `left` runs out, as a ping-pong does. It records how deeply its body ever nests.
+     */
+    private static class Bouncer extends Capsule$Adaptive
+    {
+        static final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+        static final AtomicInteger maxDepth = new AtomicInteger();
+
+        Bouncer peer = this;
+        final AtomicInteger left;
+        final CountDownLatch done;
+
+        Bouncer(AtomicInteger left, CountDownLatch done) {
+            this.left = left;
+            this.done = done;
+            panini$enableReaders();
+        }
+
+        void bounce() {
+            if (panini$tryDirect()) {
+                try {
+                    body();
+                    return;
+                } finally {
+                    panini$endDirect();
+                }
+            }
+            panini$push(new SimpleMessage(BOUNCE));
+        }
+
+        private void body() {
+            int[] d = depth.get();
+            maxDepth.accumulateAndGet(++d[0], Math::max);
+            try {
+                if (left.decrementAndGet() > 0) {
+                    peer.bounce();
+                } else {
+                    done.countDown();
+                }
+            } finally {
+                d[0]--;
+            }
+        }
+
+        @Override
+        protected boolean run() {
+            Panini$Message msg = panini$nextMessage();
+            if (msg == null) return false;
+            panini$beginWrite();
+            try {
+                switch (msg.panini$msgID()) {
+                case BOUNCE:
+                    body();
+                    break;
+                case PANINI$TERMINATE:
+                    return true;
+                }
+            } finally {
+                panini$endWrite();
+            }
+            return false;
+        }
+    }
+
+    @Before
+    public void shrinkWindow()
+    {
+        window = Panini$System.ADAPTIVE_WINDOW;
+        Panini$System.ADAPTIVE_WINDOW = 10;
+    }
+
+    @After
+    public void restoreWindow()
+    {
+        Panini$System.ADAPTIVE_WINDOW = window;
+    }
+
+    private static void awaitQueued(Adaptive a, int count) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (a.queued.get() < count && System.nanoTime() < end) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, a.queued.get());
+    }
+
+    @Test
+    public void idleCapsuleRunsCallsDirectly() throws Exception
+    {
+        Capsule$Task.panini$init(1);
+        Adaptive a = new Adaptive();
+        a.panini$start();
+        for (int i = 0; i < 100; i++) {
+            a.call();
+        }
+        a.panini$push(new SimpleMessage(Capsule$Task.PANINI$TERMINATE));
+        a.panini$join();
+
+        assertEquals(100, a.direct.get());
+        assertEquals(0, a.queued.get());
+        assertFalse(a.panini$isQueued());
+    }
+
+    /**
+     * Makes calls while a worker holds the capsule, so that it switches to its queue, and then
+     * sends calls one at a time, so that none of them finds a backlog and it switches back.
+     */
+    @Test(timeout = 30000)
+    public void busyCapsuleQueuesCallsUntilItsBacklogClears() throws Exception
+    {
+        long switches = Capsule$Adaptive.switches();
+        Capsule$Task.panini$init(1);
+        Adaptive a = new Adaptive();
+        a.panini$start();
+
+        a.panini$push(new SimpleMessage(HOLD));
+        a.held.await();
+        int contended = 0;
+        while (!a.panini$isQueued()) {
+            a.call();
+            contended++;
+        }
+        assertTrue(contended > Panini$System.ADAPTIVE_WINDOW * Panini$System.ADAPTIVE_CONTENTION);
+        assertEquals(switches + 1, Capsule$Adaptive.switches());
+        a.release.countDown();
+        awaitQueued(a, contended);
+
+        int sent = contended;
+        while (a.panini$isQueued()) {
+            a.call();
+            awaitQueued(a, ++sent);
+        }
+        assertEquals(switches + 2, Capsule$Adaptive.switches());
+
+        // Waits for the worker to let go of the capsule after its last message.
+        int direct = a.direct.get();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (a.direct.get() == direct && System.nanoTime() < end) {
+            a.call();
+            if (a.direct.get() == direct) awaitQueued(a, ++sent);
+        }
+        assertEquals(direct + 1, a.direct.get());
+
+        a.panini$push(new SimpleMessage(Capsule$Task.PANINI$TERMINATE));
+        a.panini$join();
+    }
+
+    /**
+     * A call which a capsule makes to itself, from a direct call or from a worker, is sent as a
+     * message rather than run as a nested call.
+     */
+    @Test(timeout = 30000)
+    public void callToItselfIsQueued() throws Exception
+    {
+        Capsule$Task.panini$init(1);
+        Bouncer.maxDepth.set(0);
+        CountDownLatch done = new CountDownLatch(1);
+        Bouncer a = new Bouncer(new AtomicInteger(100000), done);
+        a.panini$start();
+        a.bounce();
+        done.await();
+        a.panini$push(new SimpleMessage(Capsule$Task.PANINI$TERMINATE));
+        a.panini$join();
+
+        assertEquals(1, Bouncer.maxDepth.get());
+    }
+
+    /**
+     * Two capsules which keep calling each other back never nest a direct call in another, so
+     * that their exchange cannot overflow the stack of any thread which takes part in it.
+     */
+    @Test(timeout = 30000)
+    public void pingPongDoesNotNest() throws Exception
+    {
+        Capsule$Task.panini$init(1);
+        Bouncer.maxDepth.set(0);
+        AtomicInteger left = new AtomicInteger(100000);
+        CountDownLatch done = new CountDownLatch(1);
+        Bouncer ping = new Bouncer(left, done);
+        Bouncer pong = new Bouncer(left, done);
+        ping.peer = pong;
+        pong.peer = ping;
+        ping.panini$start();
+        pong.panini$start();
+        ping.bounce();
+        done.await();
+        ping.panini$push(new SimpleMessage(Capsule$Task.PANINI$TERMINATE));
+        pong.panini$push(new SimpleMessage(Capsule$Task.PANINI$TERMINATE));
+        ping.panini$join();
+        pong.panini$join();
+
+        // A worker handling one capsule's message may still call the other one directly.
+        assertTrue(Bouncer.maxDepth.get() <= 2);
+    }
+}
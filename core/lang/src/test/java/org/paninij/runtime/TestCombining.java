@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.runtime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestCombining
+{
+    private static class Combining extends Capsule$Combining { }
+
+    /**
+     * Has `x` held by another thread, so that a call on `x` made while holding `y` is published
+     * and run by that thread. The call calls back `y`, which must run on the waiting thread's
+     * behalf rather than wait for it.
+     */
+    @Test(timeout = 10000)
+    public void delegatedCallMayCallBackItsCaller() throws Exception
+    {
+        Combining x = new Combining();
+        Combining y = new Combining();
+        CountDownLatch held = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> x.panini$combine(() -> {
+            held.countDown();
+            Thread.sleep(200);
+            return null;
+        }));
+        holder.start();
+        held.await();
+
+        String result = y.panini$combine(() -> x.panini$combine(() -> y.panini$combine(() -> "y")));
+        holder.join();
+
+        assertEquals("y", result);
+    }
+
+    /**
+     * Has several threads publish a call while the capsule is held, and then checks that their
+     * slots are unlinked once they have been idle for long enough.
+     */
+    @Test(timeout = 10000)
+    public void idleSlotsAreUnlinked() throws Exception
+    {
+        Combining c = new Combining();
+        int[] count = new int[1];
+        CountDownLatch held = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> c.panini$combine(() -> {
+            held.countDown();
+            Thread.sleep(200);
+            return count[0]++;
+        }));
+        holder.start();
+        held.await();
+
+        Thread[] callers = new Thread[4];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread(() -> c.panini$combine(() -> count[0]++));
+            callers[i].start();
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        holder.join();
+        assertEquals(1 + callers.length, count[0]);
+        assertEquals(callers.length, c.panini$slotCount());
+
+        for (int i = 0; i <= Panini$System.COMBINE_SLOT_AGE; i++) {
+            c.panini$combine(() -> count[0]++);
+        }
+        assertEquals(1, c.panini$slotCount());
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.runtime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestLanes
+{
+    /**
+     * A task capsule which is never started, so that its messages stay in its queue.
+     */
+    private static class Task extends Capsule$Task
+    {
+        @Override
+        protected boolean run() {
+            return false;
+        }
+
+        List<Integer> drain() {
+            List<Integer> ids = new ArrayList<Integer>();
+            Panini$Message msg;
+            while ((msg = panini$nextMessage()) != null) {
+                ids.add(msg.panini$msgID());
+            }
+            return ids;
+        }
+    }
+
+    @Test
+    public void prioritiesComeFirstHighestFirst()
+    {
+        Task t = new Task();
+        t.panini$push(new SimpleMessage(0));
+        t.panini$pushPriority(new SimpleMessage(1), 1);
+        t.panini$pushPriority(new SimpleMessage(8), 8);
+        t.panini$pushPriority(new SimpleMessage(2), 1);
+        t.panini$pushPriority(new SimpleMessage(9), 8);
+
+        assertEquals(Arrays.asList(8, 9, 1, 2, 0), t.drain());
+    }
+
+    @Test
+    public void deadlinesComeAfterPrioritiesEarliestFirst()
+    {
+        Task t = new Task();
+        t.panini$push(new SimpleMessage(0));
+        t.panini$pushDeadline(new SimpleMessage(100), 100);
+        t.panini$pushDeadline(new SimpleMessage(10), 10);
+        t.panini$pushPriority(new SimpleMessage(1), 1);
+        t.panini$pushDeadline(new SimpleMessage(11), 10);
+
+        List<Integer> ids = t.drain();
+        assertEquals(Integer.valueOf(1), ids.get(0));
+        assertEquals(Integer.valueOf(100), ids.get(3));
+        assertEquals(Integer.valueOf(0), ids.get(4));
+        // Equal deadlines may still differ by the time between the pushes.
+        assertEquals(Arrays.asList(10, 11), ids.subList(1, 3));
+    }
+
+    /**
+     * Interleaves lane and queue messages with taking messages, so that the queue wraps around
+     * and grows while the lanes hold some of the capsule's messages.
+     */
+    @Test
+    public void queueKeepsItsOrderAroundTheLanes()
+    {
+        Task t = new Task();
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < 25; i++) {
+            t.panini$push(new SimpleMessage(i));
+        }
+        t.panini$pushPriority(new SimpleMessage(1000), 1);
+        t.panini$pushDeadline(new SimpleMessage(2000), 10);
+        for (int i = 0; i < 10; i++) {
+            ids.add(t.panini$nextMessage().panini$msgID());
+        }
+        for (int i = 25; i < 50; i++) {
+            t.panini$push(new SimpleMessage(i));
+        }
+        ids.addAll(t.drain());
+
+        List<Integer> expected = new ArrayList<Integer>(Arrays.asList(1000, 2000));
+        for (int i = 0; i < 50; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, ids);
+        assertEquals(true, t.panini$isEmpty());
+    }
+}
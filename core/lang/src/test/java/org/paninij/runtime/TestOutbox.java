@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.runtime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOutbox
+{
+    private int outboxSize;
+
+    /**
+     * A task capsule which is never started, so that its messages stay in its queue.
+     */
+    private static class Task extends Capsule$Task
+    {
+        @Override
+        protected boolean run() {
+            return false;
+        }
+
+        List<Integer> drain() {
+            List<Integer> ids = new ArrayList<Integer>();
+            Panini$Message msg;
+            while ((msg = panini$nextMessage()) != null) {
+                ids.add(msg.panini$msgID());
+            }
+            return ids;
+        }
+    }
+
+    @Before
+    public void openOutbox()
+    {
+        outboxSize = Panini$System.OUTBOX_SIZE;
+        Panini$System.OUTBOX_SIZE = 32;
+        Panini$Outbox.open();
+    }
+
+    @After
+    public void closeOutbox()
+    {
+        Panini$Outbox.close();
+        Panini$System.OUTBOX_SIZE = outboxSize;
+    }
+
+    @Test
+    public void messagesAreHeldUntilFlushed()
+    {
+        Task x = new Task();
+        Panini$Outbox.post(x, new SimpleMessage(0));
+        assertEquals(true, x.panini$isEmpty());
+
+        Panini$Outbox.flush();
+        assertEquals(1, x.drain().size());
+    }
+
+    /**
+     * Posts to two targets, so that several drains of a full outbox and a final flush each
+     * deliver runs of messages to both of them.
+     */
+    @Test
+    public void eachTargetGetsItsMessagesInOrder()
+    {
+        Task x = new Task();
+        Task y = new Task();
+        List<Integer> toX = new ArrayList<Integer>();
+        List<Integer> toY = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            Task target = (i % 3 == 0) ? y : x;
+            Panini$Outbox.post(target, new SimpleMessage(i));
+            (target == x ? toX : toY).add(i);
+        }
+        Panini$Outbox.flush();
+
+        assertEquals(toX, x.drain());
+        assertEquals(toY, y.drain());
+    }
+
+    @Test
+    public void closingFlushesAndStopsBuffering()
+    {
+        Task x = new Task();
+        Panini$Outbox.post(x, new SimpleMessage(1));
+        Panini$Outbox.close();
+        assertEquals(1, x.drain().size());
+
+        Panini$Outbox.post(x, new SimpleMessage(2));
+        assertEquals(1, x.drain().size());
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class TestPlacement
+{
+    @Test
+    public void parsesSingleCpus()
+    {
+        assertArrayEquals(new int[] {0, 2, 5}, Panini$Placement.parseCpuList("0,2,5"));
+    }
+
+    @Test
+    public void parsesRanges()
+    {
+        assertArrayEquals(new int[] {0, 1, 2, 3, 8, 9}, Panini$Placement.parseCpuList("0-3,8-9"));
+    }
+
+    @Test
+    public void ignoresWhitespaceAndEmptyEntries()
+    {
+        assertArrayEquals(new int[] {4, 6, 7}, Panini$Placement.parseCpuList(" 4,,6-7\n"));
+    }
+
+    @Test
+    public void parsesAnEmptyList()
+    {
+        assertArrayEquals(new int[0], Panini$Placement.parseCpuList(""));
+    }
+}
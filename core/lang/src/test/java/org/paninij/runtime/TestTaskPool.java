@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *******************************************************************************/
+package org.paninij.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTaskPool
+{
+    private int poolBacklog;
+    private long poolBacklogMillis;
+    private long rebalanceMillis;
+
+    /**
+     * A task capsule which records the messages it handles, and whether two workers have ever
+     * run it at once. Each message busy-waits for `work` nanoseconds.
+     */
+    private static class Task extends Capsule$Task
+    {
+        final List<Integer> handled = new ArrayList<Integer>();
+        final AtomicInteger running = new AtomicInteger();
+        volatile boolean overlapped = false;
+        volatile long work = 0;
+
+        @Override
+        protected boolean run() {
+            Panini$Message msg = panini$nextMessage();
+            if (msg == null) return false;
+            if (msg.panini$msgID() == PANINI$TERMINATE) return true;
+            if (running.incrementAndGet() > 1) overlapped = true;
+            try {
+                long end = System.nanoTime() + work;
+                while (System.nanoTime() < end) {
+                    // Busy.
+                }
+                handle(msg.panini$msgID());
+                synchronized (handled) {
+                    handled.add(msg.panini$msgID());
+                }
+            } finally {
+                running.decrementAndGet();
+            }
+            return false;
+        }
+
+        void handle(int id) {
+            // Do nothing.
+        }
+
+        int handledCount() {
+            synchronized (handled) {
+                return handled.size();
+            }
+        }
+    }
+
+    @Before
+    public void saveSettings()
+    {
+        poolBacklog = Panini$System.POOL_BACKLOG;
+        poolBacklogMillis = Panini$System.POOL_BACKLOG_MILLIS;
+        rebalanceMillis = Panini$System.REBALANCE_MILLIS;
+    }
+
+    @After
+    public void restoreSettings()
+    {
+        Panini$System.POOL_BACKLOG = poolBacklog;
+        Panini$System.POOL_BACKLOG_MILLIS = poolBacklogMillis;
+        Panini$System.REBALANCE_MILLIS = rebalanceMillis;
+    }
+
+    private static void start(int pools, Task... tasks) throws Exception
+    {
+        Capsule$Task.panini$init(pools);
+        for (Task t : tasks) {
+            t.panini$start();
+        }
+    }
+
+    /**
+     * Terminates the given capsules, which must be all of the capsules of their pools, and waits
+     * for the pools to stop, so that the next test starts from fresh pools.
+     */
+    private static void finish(Task... tasks) throws Exception
+    {
+        for (Task t : tasks) {
+            t.panini$push(new SimpleMessage(Capsule$Task.PANINI$TERMINATE));
+        }
+        for (Task t : tasks) {
+            t.panini$join();
+        }
+    }
+
+    private static void await(Task t, int count) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (t.handledCount() < count && System.nanoTime() < end) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, t.handledCount());
+    }
+
+    private static void assertInOrder(Task t, int count)
+    {
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            expected.add(i);
+        }
+        synchronized (t.handled) {
+            assertEquals(expected, t.handled);
+        }
+    }
+
+    /**
+     * Keeps a single pool backlogged, so that it adds elastic workers, and checks that each
+     * capsule is still only run by one worker at a time, in the order its messages were sent.
+     */
+    @Test(timeout = 30000)
+    public void capsuleIsNeverRunByTwoWorkersAtOnce() throws Exception
+    {
+        Panini$System.POOL_BACKLOG = 0;
+        Panini$System.POOL_BACKLOG_MILLIS = 0;
+        long added = Panini$TaskPool.workersAdded();
+
+        Task[] tasks = new Task[8];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task();
+            tasks[i].work = 20000;
+        }
+        start(1, tasks);
+        int count = 200;
+        for (int m = 0; m < count; m++) {
+            for (Task t : tasks) {
+                t.panini$push(new SimpleMessage(m));
+            }
+        }
+        for (Task t : tasks) {
+            await(t, count);
+        }
+        finish(tasks);
+
+        assertTrue(Panini$TaskPool.workersAdded() > added);
+        for (Task t : tasks) {
+            assertFalse(t.overlapped);
+            assertInOrder(t, count);
+        }
+    }
+
+    /**
+     * Has the only worker of a pool wait on a capsule of the same pool. A spare worker must run
+     * that capsule meanwhile. Once there is one, it stays for later waits, parking in between.
+     */
+    @Test(timeout = 30000)
+    public void blockedWorkerLetsItsPoolRunTheCallee() throws Exception
+    {
+        Task callee = new Task();
+        Task caller = new Task() {
+            @Override
+            void handle(int id) {
+                CountDownLatch done = new CountDownLatch(1);
+                callee.panini$push(new Panini$Message() {
+                    @Override
+                    public int panini$msgID() {
+                        done.countDown();
+                        return id;
+                    }
+                });
+                Panini$TaskPool.beginBlocking();
+                try {
+                    done.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                } finally {
+                    Panini$TaskPool.endBlocking();
+                }
+            }
+        };
+        long started = Panini$TaskPool.sparesStarted();
+        long reused = Panini$TaskPool.sparesReused();
+
+        start(1, caller, callee);
+        int count = 20;
+        for (int m = 0; m < count; m++) {
+            caller.panini$push(new SimpleMessage(m));
+            // Gives the spare time to park before the next wait.
+            await(caller, m + 1);
+            Thread.sleep(5);
+        }
+        await(callee, count);
+        finish(caller, callee);
+
+        assertEquals(1, Panini$TaskPool.sparesStarted() - started);
+        assertTrue(Panini$TaskPool.sparesReused() > reused);
+        assertInOrder(caller, count);
+        assertInOrder(callee, count);
+    }
+
+    /**
+     * Loads one of two pools with a busy capsule and a light one, so that rebalancing moves the
+     * light one to the idle pool while it still has messages coming in.
+     */
+    @Test(timeout = 30000)
+    public void lightCapsuleMigratesOffABusyPool() throws Exception
+    {
+        Panini$System.REBALANCE_MILLIS = 5;
+        long migrations = Panini$TaskPool.migrations();
+
+        Task busy = new Task();
+        Task idle = new Task();
+        Task light = new Task();
+        busy.work = 200000;
+        light.work = 10000;
+        // Pools are handed out round-robin, so `busy` and `light` share the first one.
+        start(2, busy, idle, light);
+        Panini$TaskPool first = busy.panini$containingPool;
+        assertNotSame(first, idle.panini$containingPool);
+        assertTrue(first == light.panini$containingPool);
+
+        int sent = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (Panini$TaskPool.migrations() == migrations && System.nanoTime() < end) {
+            for (int i = 0; i < 10; i++, sent++) {
+                busy.panini$push(new SimpleMessage(sent));
+                light.panini$push(new SimpleMessage(sent));
+            }
+            Thread.sleep(2);
+        }
+        assertTrue(Panini$TaskPool.migrations() > migrations);
+        Panini$TaskPool moved;
+        synchronized (light) {
+            moved = light.panini$containingPool;
+        }
+        assertNotSame(first, moved);
+
+        // The moved capsule keeps handling its messages in order.
+        for (int i = 0; i < 100; i++, sent++) {
+            busy.panini$push(new SimpleMessage(sent));
+            light.panini$push(new SimpleMessage(sent));
+        }
+        await(busy, sent);
+        await(light, sent);
+        finish(busy, idle, light);
+
+        assertFalse(light.overlapped);
+        assertInOrder(busy, sent);
+        assertInOrder(light, sent);
+    }
+}
@@ -6,8 +6,11 @@ import org.paninij.proc.check.Check.Result;
 import org.paninij.proc.check.capsule.CapsuleCheck;
 import org.paninij.proc.check.capsule.CheckForCycleOfLocalFields;
 import org.paninij.proc.check.capsule.RoundOneCapsuleChecks;
+import org.paninij.proc.factory.CapsuleAdaptiveFactory;
+import org.paninij.proc.factory.CapsuleCombiningFactory;
 import org.paninij.proc.factory.CapsuleMonitorFactory;
 import org.paninij.proc.factory.CapsuleSerialFactory;
+import org.paninij.proc.factory.CapsuleShardedFactory;
 import org.paninij.proc.factory.CapsuleTaskFactory;
 import org.paninij.proc.factory.CapsuleThreadFactory;
 import org.paninij.proc.factory.MessageFactory;
@@ -17,6 +20,8 @@ import org.paninij.proc.model.Procedure;
 import org.paninij.proc.model.Signature;
 import org.paninij.proc.model.SignatureElement;
 import org.paninij.proc.util.ArtifactFiler;
+import org.paninij.runtime.check.DynamicOwnershipTransfer;
+import org.paninij.runtime.check.TransferManifest;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -29,6 +34,8 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -40,7 +47,7 @@ import static org.paninij.proc.util.PaniniModel.SIGNATURE_CORE_SUFFIX;
  */
 @SupportedAnnotationTypes({"org.paninij.lang.CapsuleInterface",
                            "org.paninij.lang.SignatureInterface"})
-@SupportedOptions({})
+@SupportedOptions({TransferManifest.ARGUMENT_KEY, DynamicOwnershipTransfer.ARGUMENT_KEY})
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class RoundOneProcessor extends AbstractProcessor {
 
@@ -56,10 +63,13 @@ public class RoundOneProcessor extends AbstractProcessor {
 
     // Factories to perform code generating:
     private final MessageFactory messageFactory = new MessageFactory();
-    private final CapsuleThreadFactory capsuleThreadFactory = new CapsuleThreadFactory();
+    private CapsuleThreadFactory capsuleThreadFactory;
     private final CapsuleSerialFactory capsuleSerialFactory = new CapsuleSerialFactory();
     private final CapsuleMonitorFactory capsuleMonitorFactory = new CapsuleMonitorFactory();
-    private final CapsuleTaskFactory capsuleTaskFactory = new CapsuleTaskFactory();
+    private final CapsuleCombiningFactory capsuleCombiningFactory = new CapsuleCombiningFactory();
+    private CapsuleTaskFactory capsuleTaskFactory;
+    private CapsuleAdaptiveFactory capsuleAdaptiveFactory;
+    private final CapsuleShardedFactory capsuleShardedFactory = new CapsuleShardedFactory();
 
     @Override
     public void init(ProcessingEnvironment processingEnv) {
@@ -71,6 +81,49 @@ public class RoundOneProcessor extends AbstractProcessor {
         capsuleCheck = new RoundOneCapsuleChecks(processingEnv);
         cycleCheck = new CheckForCycleOfLocalFields(processingEnv);
         artifactMaker = new ArtifactFiler(processingEnv.getFiler());
+
+        TransferManifest transferManifest = loadTransferManifest();
+        DynamicOwnershipTransfer.Kind ownershipCheck = loadOwnershipCheck();
+        capsuleThreadFactory = new CapsuleThreadFactory(transferManifest, ownershipCheck);
+        capsuleTaskFactory = new CapsuleTaskFactory(transferManifest, ownershipCheck);
+        capsuleAdaptiveFactory = new CapsuleAdaptiveFactory(transferManifest, ownershipCheck);
+    }
+
+    /**
+     * Reads the dynamic ownership transfer check from the
+     * {@link DynamicOwnershipTransfer#ARGUMENT_KEY} option. If the option is not set, or names a
+     * check which is unknown or not implemented, then no check is generated.
+     */
+    private DynamicOwnershipTransfer.Kind loadOwnershipCheck() {
+        String option = processingEnv.getOptions().get(DynamicOwnershipTransfer.ARGUMENT_KEY);
+        if (DynamicOwnershipTransfer.Kind.isKnown(option)) {
+            DynamicOwnershipTransfer.Kind kind = DynamicOwnershipTransfer.Kind.fromString(option);
+            if (kind != DynamicOwnershipTransfer.Kind.NATIVE) {
+                return kind;
+            }
+        }
+        processingEnv.getMessager().printMessage(javax.tools.Diagnostic.Kind.WARNING,
+                "Unsupported dynamic ownership transfer check: " + option);
+        return DynamicOwnershipTransfer.Kind.NONE;
+    }
+
+    /**
+     * Loads the Soter transfer-safety manifests from the directory given by the
+     * {@link TransferManifest#ARGUMENT_KEY} option. If the option is not set, or if the manifests
+     * cannot be read, then an empty manifest is returned, i.e. no transfer is considered safe.
+     */
+    private TransferManifest loadTransferManifest() {
+        String dir = processingEnv.getOptions().get(TransferManifest.ARGUMENT_KEY);
+        if (dir == null) {
+            return new TransferManifest();
+        }
+        try {
+            return TransferManifest.load(new File(dir));
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(javax.tools.Diagnostic.Kind.WARNING,
+                    "Could not read the Soter transfer manifests in " + dir + ": " + ex);
+            return new TransferManifest();
+        }
     }
 
     @Override
@@ -92,7 +145,12 @@ public class RoundOneProcessor extends AbstractProcessor {
             artifactMaker.add(capsuleThreadFactory.make(model));
             artifactMaker.add(capsuleSerialFactory.make(model));
             artifactMaker.add(capsuleMonitorFactory.make(model));
+            artifactMaker.add(capsuleCombiningFactory.make(model));
             artifactMaker.add(capsuleTaskFactory.make(model));
+            artifactMaker.add(capsuleAdaptiveFactory.make(model));
+            if (model.getShards() > 0) {
+                artifactMaker.add(capsuleShardedFactory.make(model));
+            }
         }
 
         // Perform all remaining code-gen on OK signature cores:
@@ -0,0 +1,771 @@
+package org.paninij.proc.check.capsule;
+
+import static javax.lang.model.element.ElementKind.METHOD;
+import static javax.lang.model.type.TypeKind.ARRAY;
+import static javax.lang.model.type.TypeKind.DECLARED;
+import static org.paninij.proc.check.Check.Result.OK;
+import static org.paninij.proc.check.Check.Result.error;
+import static org.paninij.proc.util.PaniniModel.CAPSULE_CORE_SUFFIX;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeMirror;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Signature;
+import org.paninij.lang.Transfer;
+import org.paninij.proc.util.PaniniModel;
+
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ConditionalExpressionTree;
+import com.sun.source.tree.DoWhileLoopTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.tree.WhileLoopTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+
+/**
+ * <p>Checks the uses of {@code @Transfer} in a capsule core. This has two parts.
+ *
+ * <p>First, the {@code @Transfer} annotations declared on the core itself are checked: they may
+ * only appear on procedures and on the parameters of procedures, and they may only be applied to
+ * reference types.
+ *
+ * <p>Second, every method body of the core is checked for sends to {@code @Transfer} parameters of
+ * other capsules (i.e. calls on {@code @Local} or {@code @Imported} fields, or on local variables
+ * whose declared type is a capsule or a signature). At each such call site, the transferred
+ * argument must be either a freshly allocated object or a local variable. In the latter case, the
+ * local variable must not be read after the send, must not be passed in another argument of the
+ * same send or to any other method (before the send too), must not be the receiver of a method
+ * call, must not be aliased by another variable or set from one (including a field of the core),
+ * must not be captured by a lambda or an inner class, and must not be declared outside of a loop
+ * enclosing the send. Similarly, a {@code @Transfer} procedure must not return one of the core's
+ * own fields, something reached through one, or a local variable which is set from one.
+ *
+ * <p>A call on a field (e.g. {@code items.get(i)}) may return something reached through that
+ * field, and a call to a method of the core itself (e.g. a getter) may return any of its fields,
+ * so the results of both count as reached through the core's fields.
+ *
+ * <p>This is a simple intra-procedural approximation of the liveness analysis which Soter performs
+ * on bytecode. It is purely syntactic, so it is conservative: for example, any textual use of a
+ * transferred variable after the send is rejected, even if it is on a different branch.
+ *
+ * <p>This check needs to run after the capsule interfaces have been generated, because the types of
+ * capsule fields are used to look up the capsule cores to which messages are sent.
+ */
+public class CheckForUseAfterTransfer implements CapsuleCheck
+{
+    private final ProcessingEnvironment procEnv;
+    private final Trees trees;
+
+    public CheckForUseAfterTransfer(ProcessingEnvironment procEnv)
+    {
+        this.procEnv = procEnv;
+        this.trees = Trees.instance(procEnv);
+    }
+
+    @Override
+    public Result checkCapsule(TypeElement core)
+    {
+        for (Element elem : core.getEnclosedElements()) {
+            if (elem.getKind() != METHOD) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) elem;
+            Result result = checkDecl(method);
+            if (!result.ok()) {
+                return result;
+            }
+            TreePath path = trees.getPath(method);
+            if (path == null || ((MethodTree) path.getLeaf()).getBody() == null) {
+                continue;
+            }
+            result = new MethodChecker(core, method, path).check();
+            if (!result.ok()) {
+                return result;
+            }
+        }
+        return OK;
+    }
+
+    private static Result checkDecl(ExecutableElement method)
+    {
+        boolean isProcedure = PaniniModel.isProcedure(method);
+        if (method.getAnnotation(Transfer.class) != null) {
+            if (!isProcedure) {
+                String err = "Only a procedure's result can be annotated with `@Transfer`.";
+                return error(err, CheckForUseAfterTransfer.class, method);
+            }
+            if (!isReference(method.getReturnType())) {
+                String err = "A `@Transfer` procedure must return a reference type.";
+                return error(err, CheckForUseAfterTransfer.class, method);
+            }
+        }
+        for (VariableElement param : method.getParameters()) {
+            if (param.getAnnotation(Transfer.class) == null) {
+                continue;
+            }
+            if (!isProcedure) {
+                String err = "Only the parameters of a procedure can be annotated with `@Transfer`.";
+                return error(err, CheckForUseAfterTransfer.class, param);
+            }
+            if (!isReference(param.asType())) {
+                String err = "A `@Transfer` parameter must have a reference type.";
+                return error(err, CheckForUseAfterTransfer.class, param);
+            }
+        }
+        return OK;
+    }
+
+    private static boolean isReference(TypeMirror type)
+    {
+        switch (type.getKind()) {
+        case ARRAY:
+        case DECLARED:
+        case ERROR:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static TypeMirror toScalarType(TypeMirror t)
+    {
+        return (t.getKind() != ARRAY) ? t : toScalarType(((ArrayType) t).getComponentType());
+    }
+
+    private static ExpressionTree skipParens(ExpressionTree expr)
+    {
+        while (expr instanceof ParenthesizedTree) {
+            expr = ((ParenthesizedTree) expr).getExpression();
+        }
+        return expr;
+    }
+
+    private static boolean isLoop(Tree tree)
+    {
+        return tree instanceof ForLoopTree
+            || tree instanceof EnhancedForLoopTree
+            || tree instanceof WhileLoopTree
+            || tree instanceof DoWhileLoopTree;
+    }
+
+
+    /**
+     * Performs the checks on the body of a single method of the capsule core.
+     */
+    private class MethodChecker
+    {
+        private final TypeElement core;
+        private final ExecutableElement method;
+        private final TreePath methodPath;
+        private final CompilationUnitTree unit;
+        private final SourcePositions positions;
+        private final List<VariableTree> locals = new ArrayList<>();
+        private final Set<String> localNames = new HashSet<>();
+        private Result result = OK;
+
+        MethodChecker(TypeElement core, ExecutableElement method, TreePath methodPath)
+        {
+            this.core = core;
+            this.method = method;
+            this.methodPath = methodPath;
+            this.unit = methodPath.getCompilationUnit();
+            this.positions = trees.getSourcePositions();
+        }
+
+        Result check()
+        {
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void v) {
+                    locals.add(node);
+                    localNames.add(node.getName().toString());
+                    return super.visitVariable(node, v);
+                }
+            }.scan(methodPath, null);
+
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitMethodInvocation(MethodInvocationTree node, Void v) {
+                    if (result.ok()) {
+                        checkSend(node, getCurrentPath());
+                    }
+                    return super.visitMethodInvocation(node, v);
+                }
+                @Override
+                public Void visitReturn(ReturnTree node, Void v) {
+                    if (result.ok() && method.getAnnotation(Transfer.class) != null) {
+                        checkReturn(node);
+                    }
+                    return super.visitReturn(node, v);
+                }
+            }.scan(methodPath, null);
+
+            return result;
+        }
+
+        private void checkSend(MethodInvocationTree send, TreePath sendPath)
+        {
+            if (!(send.getMethodSelect() instanceof MemberSelectTree)) {
+                return;
+            }
+            MemberSelectTree select = (MemberSelectTree) send.getMethodSelect();
+            TypeElement target = receiverCore(select.getExpression(), send);
+            if (target == null) {
+                return;
+            }
+            String procName = select.getIdentifier().toString();
+            List<? extends ExpressionTree> args = send.getArguments();
+            for (int idx = 0; idx < args.size() && result.ok(); idx++) {
+                if (isTransferParameter(target, procName, args.size(), idx)) {
+                    checkTransferredArgument(args.get(idx), send, sendPath, procName);
+                }
+            }
+        }
+
+        private void checkTransferredArgument(ExpressionTree arg, MethodInvocationTree send,
+                                              TreePath sendPath, String procName)
+        {
+            ExpressionTree sent = skipParens(arg);
+            if (sent instanceof NewClassTree || sent instanceof NewArrayTree
+                                             || sent.getKind() == Tree.Kind.NULL_LITERAL) {
+                return;
+            }
+            VariableTree decl = (sent instanceof IdentifierTree) ? findLocal((IdentifierTree) sent, send)
+                                                                 : null;
+            if (decl == null) {
+                fail("Only a new object or a local variable can be transferred to `" + procName
+                   + "()`, but found: " + sent);
+                return;
+            }
+
+            String name = decl.getName().toString();
+            for (ExpressionTree other : send.getArguments()) {
+                if (other != arg && isPassed(other, name)) {
+                    fail("Local variable `" + name + "` is transferred to `" + procName
+                       + "()`, so it must not be passed in another argument of the same call.");
+                    return;
+                }
+            }
+            String source = aliasedVariable(name);
+            if (source != null) {
+                fail("Local variable `" + name + "` is transferred to `" + procName
+                   + "()`, so it must not be set from `" + source + "`.");
+                return;
+            }
+
+            long declPos = positions.getStartPosition(unit, decl);
+            for (TreePath p = sendPath; p != null && p.getLeaf() != methodPath.getLeaf();
+                 p = p.getParentPath()) {
+                Tree loop = p.getLeaf();
+                if (isLoop(loop) && (declPos < positions.getStartPosition(unit, loop)
+                                     || declPos > positions.getEndPosition(unit, loop))) {
+                    fail("Local variable `" + name + "` is transferred to `" + procName
+                       + "()` from within a loop, but is declared outside of that loop.");
+                    return;
+                }
+            }
+
+            long sendEnd = positions.getEndPosition(unit, send);
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitIdentifier(IdentifierTree node, Void v) {
+                    if (result.ok() && node != sent && node.getName().contentEquals(name)) {
+                        checkUse(node, getCurrentPath(), name, procName, sendEnd);
+                    }
+                    return super.visitIdentifier(node, v);
+                }
+            }.scan(methodPath, null);
+        }
+
+        private void checkUse(IdentifierTree use, TreePath usePath, String name, String procName,
+                              long sendEnd)
+        {
+            Tree parent = usePath.getParentPath().getLeaf();
+            boolean isAssigned = parent instanceof AssignmentTree
+                              && ((AssignmentTree) parent).getVariable() == use;
+            if (isAssigned) {
+                return;
+            }
+
+            // Look through anything which passes the value on as it is, e.g. a cast.
+            TreePath valuePath = usePath;
+            while (valuePath.getParentPath().getLeaf() instanceof ParenthesizedTree
+                    || valuePath.getParentPath().getLeaf() instanceof TypeCastTree
+                    || (valuePath.getParentPath().getLeaf() instanceof ConditionalExpressionTree
+                        && ((ConditionalExpressionTree) valuePath.getParentPath().getLeaf())
+                               .getCondition() != valuePath.getLeaf())) {
+                valuePath = valuePath.getParentPath();
+            }
+            Tree value = valuePath.getLeaf();
+            parent = valuePath.getParentPath().getLeaf();
+            boolean isAliased = (parent instanceof AssignmentTree
+                                 && ((AssignmentTree) parent).getExpression() == value)
+                             || (parent instanceof VariableTree
+                                 && ((VariableTree) parent).getInitializer() == value)
+                             || parent instanceof NewArrayTree;
+            if (isAliased) {
+                fail("Local variable `" + name + "` is transferred to `" + procName
+                   + "()`, so it must not be aliased.");
+                return;
+            }
+            boolean isPassed = (parent instanceof MethodInvocationTree
+                                && ((MethodInvocationTree) parent).getArguments().contains(value))
+                            || (parent instanceof NewClassTree
+                                && ((NewClassTree) parent).getArguments().contains(value));
+            if (isPassed) {
+                fail("Local variable `" + name + "` is transferred to `" + procName
+                   + "()`, so it must not be passed to another method, which may keep it.");
+                return;
+            }
+            Tree grandparent = valuePath.getParentPath().getParentPath().getLeaf();
+            boolean isReceiver = parent instanceof MemberSelectTree
+                              && grandparent instanceof MethodInvocationTree
+                              && ((MethodInvocationTree) grandparent).getMethodSelect() == parent;
+            if (isReceiver) {
+                fail("Local variable `" + name + "` is transferred to `" + procName
+                   + "()`, so none of its methods may be called, which may keep it.");
+                return;
+            }
+            for (TreePath p = usePath; p.getLeaf() != methodPath.getLeaf(); p = p.getParentPath()) {
+                if (p.getLeaf() instanceof LambdaExpressionTree || p.getLeaf() instanceof ClassTree) {
+                    fail("Local variable `" + name + "` is transferred to `" + procName
+                       + "()`, so it must not be captured by a lambda or an inner class.");
+                    return;
+                }
+            }
+            if (positions.getStartPosition(unit, use) > sendEnd) {
+                fail("Local variable `" + name + "` is used after it was transferred to `"
+                   + procName + "()`.");
+            }
+        }
+
+        private void checkReturn(ReturnTree node)
+        {
+            if (node.getExpression() == null) {
+                return;
+            }
+            for (ExpressionTree value : valuesOf(node.getExpression())) {
+                String field = fieldRoot(value);
+                ExpressionTree root = rootVariable(value);
+                if (field == null && root instanceof IdentifierTree
+                                  && localNames.contains(root.toString())) {
+                    field = fieldSource(root.toString(), new HashSet<>());
+                }
+                if (field != null) {
+                    fail("A `@Transfer` procedure must not return the capsule's own field: "
+                       + field);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * If the given local variable is ever set to (something reached through) another
+         * variable, i.e. a field of the core or another local variable, then returns the name of
+         * that variable. Otherwise, returns {@code null}.
+         */
+        private String aliasedVariable(String name)
+        {
+            for (ExpressionTree value : assignedValues(name)) {
+                String field = fieldRoot(value);
+                if (field != null) {
+                    return field;
+                }
+                ExpressionTree root = rootVariable(value);
+                if (root instanceof IdentifierTree && localNames.contains(root.toString())
+                        && !root.toString().equals(name)) {
+                    return root.toString();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * If the given local variable may be set to (something reached through) a field of the
+         * core, either directly or through other local variables, then returns the name of that
+         * field (see {@link #fieldRoot}). Otherwise, returns {@code null}.
+         */
+        private String fieldSource(String name, Set<String> visited)
+        {
+            if (!visited.add(name)) {
+                return null;
+            }
+            for (ExpressionTree value : assignedValues(name)) {
+                String field = fieldRoot(value);
+                if (field == null) {
+                    ExpressionTree root = rootVariable(value);
+                    if (root instanceof IdentifierTree && localNames.contains(root.toString())) {
+                        field = fieldSource(root.toString(), visited);
+                    }
+                }
+                if (field != null) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the values which the given local variable is initialized or assigned with.
+         */
+        private List<ExpressionTree> assignedValues(String name)
+        {
+            List<ExpressionTree> values = new ArrayList<>();
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void v) {
+                    if (node.getName().contentEquals(name) && node.getInitializer() != null) {
+                        values.addAll(valuesOf(node.getInitializer()));
+                    }
+                    return super.visitVariable(node, v);
+                }
+                @Override
+                public Void visitAssignment(AssignmentTree node, Void v) {
+                    ExpressionTree var = skipParens(node.getVariable());
+                    if (var instanceof IdentifierTree && var.toString().equals(name)) {
+                        values.addAll(valuesOf(node.getExpression()));
+                    }
+                    return super.visitAssignment(node, v);
+                }
+            }.scan(methodPath, null);
+            return values;
+        }
+
+        /**
+         * If the given expression is a field of the core, or may be reached through one (e.g.
+         * `items[i]`, `this.head.next` or `items.get(i)`), then returns the name of that field.
+         * The result of a method of the core itself (e.g. a getter) may be any of its fields, so
+         * then the method is named instead, e.g. `items()`. So is an object which is made or
+         * returned by a call which is passed such an argument. Otherwise, returns {@code null}.
+         */
+        private String fieldRoot(ExpressionTree expr)
+        {
+            expr = skipParens(expr);
+            while (true) {
+                if (expr instanceof TypeCastTree || expr instanceof ConditionalExpressionTree) {
+                    for (ExpressionTree value : valuesOf(expr)) {
+                        String field = fieldRoot(value);
+                        if (field != null) {
+                            return field;
+                        }
+                    }
+                    return null;
+                } else if (expr instanceof ArrayAccessTree) {
+                    expr = skipParens(((ArrayAccessTree) expr).getExpression());
+                } else if (expr instanceof MemberSelectTree) {
+                    MemberSelectTree select = (MemberSelectTree) expr;
+                    if (isThis(skipParens(select.getExpression()))) {
+                        String name = select.getIdentifier().toString();
+                        return isFieldOfCore(name) ? name : null;
+                    }
+                    expr = skipParens(select.getExpression());
+                } else if (expr instanceof IdentifierTree) {
+                    String name = expr.toString();
+                    return (!localNames.contains(name) && isFieldOfCore(name)) ? name : null;
+                } else if (expr instanceof MethodInvocationTree) {
+                    MethodInvocationTree call = (MethodInvocationTree) expr;
+                    ExpressionTree select = skipParens(call.getMethodSelect());
+                    if (isCoreMethod(select)) {
+                        return select + "()";
+                    }
+                    String field = argumentsRoot(call.getArguments());
+                    if (field != null) {
+                        return field;
+                    }
+                    ExpressionTree owner = skipParens(((MemberSelectTree) select).getExpression());
+                    if (capsuleField(owner) != null) {
+                        // The result of a procedure belongs to the other capsule.
+                        return null;
+                    }
+                    expr = owner;
+                } else if (expr instanceof NewClassTree) {
+                    return argumentsRoot(((NewClassTree) expr).getArguments());
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        private String argumentsRoot(List<? extends ExpressionTree> args)
+        {
+            for (ExpressionTree arg : args) {
+                String field = fieldRoot(arg);
+                if (field != null) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the tree which names the variable that the given expression is, or is reached
+         * through: an identifier, or a field selected from `this`. A call is looked through to
+         * its receiver, e.g. `items` for `items.get(i)`. Returns {@code null} if there is none,
+         * e.g. for a call to a method of the core or a new object.
+         */
+        private ExpressionTree rootVariable(ExpressionTree expr)
+        {
+            expr = skipParens(expr);
+            while (true) {
+                if (expr instanceof ArrayAccessTree) {
+                    expr = skipParens(((ArrayAccessTree) expr).getExpression());
+                } else if (expr instanceof MethodInvocationTree) {
+                    ExpressionTree select = skipParens(((MethodInvocationTree) expr).getMethodSelect());
+                    if (isCoreMethod(select)) {
+                        return null;
+                    }
+                    expr = skipParens(((MemberSelectTree) select).getExpression());
+                } else if (expr instanceof MemberSelectTree) {
+                    ExpressionTree owner = skipParens(((MemberSelectTree) expr).getExpression());
+                    if (isThis(owner)) {
+                        return expr;
+                    }
+                    expr = owner;
+                } else if (expr instanceof IdentifierTree) {
+                    return isThis(expr) ? null : expr;
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Returns the expressions whose value the given one may have, looking through casts and
+         * both branches of a conditional.
+         */
+        private List<ExpressionTree> valuesOf(ExpressionTree expr)
+        {
+            List<ExpressionTree> values = new ArrayList<>();
+            expr = skipParens(expr);
+            if (expr instanceof TypeCastTree) {
+                values.addAll(valuesOf(((TypeCastTree) expr).getExpression()));
+            } else if (expr instanceof ConditionalExpressionTree) {
+                values.addAll(valuesOf(((ConditionalExpressionTree) expr).getTrueExpression()));
+                values.addAll(valuesOf(((ConditionalExpressionTree) expr).getFalseExpression()));
+            } else {
+                values.add(expr);
+            }
+            return values;
+        }
+
+        /**
+         * Returns true if the given argument may be the given local variable itself.
+         */
+        private boolean isPassed(ExpressionTree arg, String name)
+        {
+            for (ExpressionTree value : valuesOf(arg)) {
+                if (value instanceof IdentifierTree && value.toString().equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the core of the capsule (or signature) which the given receiver of a send
+         * refers to: a capsule field of the core (or an element of an array of them), or a local
+         * variable whose declared type is a capsule. Returns {@code null} if it is neither.
+         */
+        private TypeElement receiverCore(ExpressionTree receiver, MethodInvocationTree send)
+        {
+            VariableElement field = capsuleField(receiver);
+            if (field != null) {
+                return lookupCapsuleCore(toScalarType(field.asType()));
+            }
+            receiver = skipParens(receiver);
+            if (receiver instanceof ArrayAccessTree) {
+                receiver = skipParens(((ArrayAccessTree) receiver).getExpression());
+            }
+            if (!(receiver instanceof IdentifierTree)) {
+                return null;
+            }
+            VariableTree local = findLocal((IdentifierTree) receiver, send);
+            if (local == null || local.getType() == null) {
+                return null;
+            }
+            return lookupCoreByName(local.getType().toString());
+        }
+
+        /**
+         * Looks up the core of the capsule or signature with the given name, as it is written in
+         * the core's source, i.e. qualified, imported, or in the core's package. Since the trees
+         * are not attributed, this is done by name.
+         */
+        private TypeElement lookupCoreByName(String typeName)
+        {
+            String name = typeName;
+            int generic = name.indexOf('<');
+            name = (generic < 0) ? name : name.substring(0, generic);
+            while (name.endsWith("[]")) {
+                name = name.substring(0, name.length() - 2);
+            }
+
+            List<String> candidates = new ArrayList<>();
+            if (name.contains(".")) {
+                candidates.add(name);
+            } else {
+                for (ImportTree imp : unit.getImports()) {
+                    String imported = imp.getQualifiedIdentifier().toString();
+                    if (imp.isStatic()) {
+                        continue;
+                    }
+                    if (imported.endsWith("." + name)) {
+                        candidates.add(imported);
+                    } else if (imported.endsWith(".*")) {
+                        candidates.add(imported.substring(0, imported.length() - 1) + name);
+                    }
+                }
+                String pkg = procEnv.getElementUtils().getPackageOf(core).getQualifiedName()
+                                    .toString();
+                candidates.add(pkg.isEmpty() ? name : pkg + "." + name);
+            }
+
+            for (String candidate : candidates) {
+                TypeElement found = procEnv.getElementUtils()
+                                           .getTypeElement(candidate + CAPSULE_CORE_SUFFIX);
+                if (found != null && (found.getAnnotation(Capsule.class) != null
+                                      || found.getAnnotation(Signature.class) != null)) {
+                    return found;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the declaration of the local variable (or parameter) which is referenced by the
+         * given identifier at the given send. If there are several declarations with the same name,
+         * the closest declaration preceding the send is chosen. Returns {@code null} if there is no
+         * such local variable, e.g. if the identifier refers to a field.
+         */
+        private VariableTree findLocal(IdentifierTree id, MethodInvocationTree send)
+        {
+            long sendPos = positions.getStartPosition(unit, send);
+            VariableTree found = null;
+            for (VariableTree local : locals) {
+                if (local.getName().contentEquals(id.getName())
+                        && positions.getStartPosition(unit, local) < sendPos) {
+                    found = local;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * If the given expression refers to a capsule field (or an element of an array of
+         * capsules) of the core, then that field is returned. Otherwise, returns {@code null}.
+         */
+        private VariableElement capsuleField(ExpressionTree receiver)
+        {
+            receiver = skipParens(receiver);
+            if (receiver instanceof ArrayAccessTree) {
+                receiver = skipParens(((ArrayAccessTree) receiver).getExpression());
+            }
+            String name;
+            if (receiver instanceof IdentifierTree && !localNames.contains(receiver.toString())) {
+                name = receiver.toString();
+            } else if (receiver instanceof MemberSelectTree
+                    && isThis(((MemberSelectTree) receiver).getExpression())) {
+                name = ((MemberSelectTree) receiver).getIdentifier().toString();
+            } else {
+                return null;
+            }
+            for (VariableElement field : PaniniModel.getCapsuleFieldDecls(procEnv, core)) {
+                if (field.getSimpleName().contentEquals(name)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        private boolean isFieldOfCore(String name)
+        {
+            for (Element elem : core.getEnclosedElements()) {
+                if (elem.getKind().isField() && elem.getSimpleName().contentEquals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isThis(ExpressionTree expr)
+        {
+            return expr instanceof IdentifierTree && expr.toString().equals("this");
+        }
+
+        /**
+         * Returns true if the given method select of a call names a method of the core itself,
+         * i.e. it is unqualified or selected from `this` or `super`.
+         */
+        private boolean isCoreMethod(ExpressionTree select)
+        {
+            if (!(select instanceof MemberSelectTree)) {
+                return true;
+            }
+            ExpressionTree owner = skipParens(((MemberSelectTree) select).getExpression());
+            return isThis(owner) || (owner instanceof IdentifierTree
+                                     && owner.toString().equals("super"));
+        }
+
+        private void fail(String errMsg)
+        {
+            result = error(errMsg, CheckForUseAfterTransfer.class, method);
+        }
+    }
+
+    private TypeElement lookupCapsuleCore(TypeMirror capsule)
+    {
+        if (capsule.getKind() != DECLARED) {
+            return null;
+        }
+        // A signature's core has the same suffix as a capsule's, so this finds either.
+        return procEnv.getElementUtils().getTypeElement(capsule.toString() + CAPSULE_CORE_SUFFIX);
+    }
+
+    /**
+     * Returns true if the parameter at {@code idx} of some procedure of the given capsule core with
+     * the given name and number of parameters is annotated with {@code @Transfer}.
+     */
+    private static boolean isTransferParameter(TypeElement core, String procName, int arity,
+                                               int idx)
+    {
+        for (ExecutableElement proc : PaniniModel.getProcedures(core)) {
+            if (proc.getSimpleName().contentEquals(procName) && proc.getParameters().size() == arity
+                    && proc.getParameters().get(idx).getAnnotation(Transfer.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -35,7 +35,9 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 
 import org.paninij.lang.Block;
 import org.paninij.lang.Duck;
@@ -80,9 +82,31 @@ public class CheckHandlers implements CapsuleCheck {
             return error(err, CheckHandlers.class, e);
         }
 
+        if (e.getAnnotation(Handler.class).batch() && !isListOfDeclared(e.getParameters().get(0).asType())) {
+            String err = "A batch Handler's parameter must be a `java.util.List` of some non-primitive type.";
+            return error(err, CheckHandlers.class, e);
+        }
+
         return OK;
     }
 
+    private static boolean isListOfDeclared(TypeMirror type) {
+        if (type.getKind() == TypeKind.ERROR) {
+            return true;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement elem = (TypeElement) declared.asElement();
+        if (!elem.getQualifiedName().contentEquals("java.util.List")
+                || declared.getTypeArguments().size() != 1) {
+            return false;
+        }
+        TypeKind argKind = declared.getTypeArguments().get(0).getKind();
+        return argKind == TypeKind.DECLARED || argKind == TypeKind.ERROR;
+    }
+
     @Override
     public Result checkCapsule(TypeElement core) {
         for (Element e : core.getEnclosedElements()) {
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ *  Dr. Hridesh Rajan,
+ *  Dalton Mills,
+ *  David Johnston,
+ *  Trey Erenberger
+ *******************************************************************************/
+package org.paninij.proc.check.capsule;
+
+import static org.paninij.proc.check.Check.Result.OK;
+import static org.paninij.proc.check.Check.Result.error;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+
+import org.paninij.lang.Deadline;
+import org.paninij.lang.Handler;
+import org.paninij.lang.Priority;
+
+/**
+ * This checks that `@Priority` and `@Deadline` procedures are defined correctly.
+ */
+public class CheckPriorities implements CapsuleCheck {
+
+    private Result checkMethod(ExecutableElement e) {
+        Priority priority = e.getAnnotation(Priority.class);
+        Deadline deadline = e.getAnnotation(Deadline.class);
+        if (priority == null && deadline == null) {
+            return OK;
+        }
+
+        if (priority != null && deadline != null) {
+            String err = "A procedure cannot have both `@Priority` and `@Deadline`.";
+            return error(err, CheckPriorities.class, e);
+        }
+
+        if (e.getAnnotation(Handler.class) != null) {
+            String err = "A handler cannot have `@Priority` or `@Deadline`.";
+            return error(err, CheckPriorities.class, e);
+        }
+
+        if (priority != null && (priority.value() < 1 || priority.value() > Priority.MAX)) {
+            String err = "A `@Priority` must be from 1 to " + Priority.MAX + ".";
+            return error(err, CheckPriorities.class, e);
+        }
+
+        if (deadline != null && deadline.value() <= 0) {
+            String err = "A `@Deadline` must be positive.";
+            return error(err, CheckPriorities.class, e);
+        }
+
+        return OK;
+    }
+
+    @Override
+    public Result checkCapsule(TypeElement core) {
+        for (Element e : core.getEnclosedElements()) {
+            if (e.getKind() == ElementKind.METHOD) {
+                Result result = checkMethod((ExecutableElement) e);
+                if (!result.ok()) {
+                    return result;
+                }
+            }
+        }
+        return OK;
+    }
+}
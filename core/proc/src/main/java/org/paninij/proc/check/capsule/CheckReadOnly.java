@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ *  Dr. Hridesh Rajan,
+ *  Dalton Mills,
+ *  David Johnston,
+ *  Trey Erenberger
+ *******************************************************************************/
+
+package org.paninij.proc.check.capsule;
+
+import static javax.lang.model.element.ElementKind.METHOD;
+import static org.paninij.proc.check.Check.Result.OK;
+import static org.paninij.proc.check.Check.Result.error;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+
+import org.paninij.lang.Coalesce;
+import org.paninij.lang.Handler;
+import org.paninij.lang.ReadOnly;
+import org.paninij.proc.util.PaniniModel;
+
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.ConditionalExpressionTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+
+/**
+ * <p>Checks that `@ReadOnly` procedures do not write the state of their capsule, since calls to
+ * them may run concurrently with each other.
+ *
+ * <p>The body of a `@ReadOnly` procedure must not assign to, increment, or decrement a field of
+ * the core, an element of an array held by one, or a field of an object held by one. It must
+ * not call a method on an object held by a field, unless that object is immutable (e.g. a
+ * `String` or a boxed primitive), is an array, or is a capsule. Nor may it pass a mutable object
+ * held by a field as an argument to any method or constructor, nor pass `this` (or a method
+ * reference on it), through which the method could reach every field. A local variable which is
+ * set to such an object is treated as the field itself, and so is the result of a method of the
+ * core which returns a mutable type (e.g. a getter), since it may be any field. Any other method
+ * of the core which it calls must either be `@ReadOnly` itself or follow the same rules.
+ *
+ * <p>Like {@link CheckForUseAfterTransfer}, this is purely syntactic: a name which is declared
+ * as a local variable anywhere in a method is taken to refer to that variable, calls are
+ * matched to the core's methods by name and number of arguments, and types are known only from
+ * declarations.
+ */
+public class CheckReadOnly implements CapsuleCheck
+{
+    /**
+     * The simple names of the types whose instances cannot be changed once they are made.
+     */
+    private static final Set<String> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double",
+            "Boolean", "Byte", "Character", "Short", "Integer", "Long", "Float", "Double",
+            "String", "BigInteger", "BigDecimal"));
+
+    private final ProcessingEnvironment procEnv;
+    private final Trees trees;
+
+    public CheckReadOnly(ProcessingEnvironment procEnv)
+    {
+        this.procEnv = procEnv;
+        this.trees = Trees.instance(procEnv);
+    }
+
+    @Override
+    public Result checkCapsule(TypeElement core)
+    {
+        for (Element elem : core.getEnclosedElements()) {
+            if (elem.getKind() != METHOD || elem.getAnnotation(ReadOnly.class) == null) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) elem;
+            if (!PaniniModel.isProcedure(method) || method.getAnnotation(Handler.class) != null) {
+                String err = "Only a procedure can be annotated with `@ReadOnly`.";
+                return error(err, CheckReadOnly.class, method);
+            }
+            if (method.getAnnotation(Coalesce.class) != null) {
+                String err = "A `@Coalesce` procedure cannot be `@ReadOnly`.";
+                return error(err, CheckReadOnly.class, method);
+            }
+            Set<ExecutableElement> visited = new HashSet<>();
+            visited.add(method);
+            String write = findWrite(core, method, visited);
+            if (write != null) {
+                String err = "`@ReadOnly` procedure `" + method.getSimpleName() + "()` " + write;
+                return error(err, CheckReadOnly.class, method);
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Returns a description of the first write to the core's state by the given method, or by a
+     * method of the core which it calls, or `null` if there is none. Methods in `visited` are
+     * not looked at again.
+     */
+    private String findWrite(TypeElement core, ExecutableElement method,
+                             Set<ExecutableElement> visited)
+    {
+        TreePath path = trees.getPath(method);
+        if (path == null || ((MethodTree) path.getLeaf()).getBody() == null) {
+            return null;
+        }
+
+        Body body = new Body(core);
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitVariable(VariableTree node, Void v) {
+                Tree type = node.getType();
+                body.localTypes.put(node.getName().toString(),
+                                    (type == null) ? null : type.toString());
+                return super.visitVariable(node, v);
+            }
+        }.scan(path, null);
+        body.findAliases(path);
+
+        String[] found = new String[1];
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitAssignment(AssignmentTree node, Void v) {
+                checkTarget(node.getVariable());
+                return super.visitAssignment(node, v);
+            }
+            @Override
+            public Void visitCompoundAssignment(CompoundAssignmentTree node, Void v) {
+                checkTarget(node.getVariable());
+                return super.visitCompoundAssignment(node, v);
+            }
+            @Override
+            public Void visitUnary(UnaryTree node, Void v) {
+                switch (node.getKind()) {
+                case PREFIX_INCREMENT:
+                case PREFIX_DECREMENT:
+                case POSTFIX_INCREMENT:
+                case POSTFIX_DECREMENT:
+                    checkTarget(node.getExpression());
+                    break;
+                default:
+                    break;
+                }
+                return super.visitUnary(node, v);
+            }
+            @Override
+            public Void visitMethodInvocation(MethodInvocationTree node, Void v) {
+                checkReceiver(node.getMethodSelect());
+                checkArguments(node.getArguments());
+                checkCall(node);
+                return super.visitMethodInvocation(node, v);
+            }
+            @Override
+            public Void visitNewClass(NewClassTree node, Void v) {
+                checkArguments(node.getArguments());
+                return super.visitNewClass(node, v);
+            }
+
+            private void checkTarget(ExpressionTree target) {
+                String field = body.rootField(target);
+                if (found[0] == null && field != null) {
+                    found[0] = "writes " + describe(field) + ".";
+                }
+            }
+
+            private void checkReceiver(ExpressionTree select) {
+                if (found[0] != null || !(select instanceof MemberSelectTree)) {
+                    return;
+                }
+                ExpressionTree receiver = ((MemberSelectTree) select).getExpression();
+                String field = body.rootField(receiver);
+                if (field == null || isCapsuleField(core, field)) {
+                    return;
+                }
+                String type = body.typeOf(receiver);
+                if (!isImmutableType(type) && !isArrayType(type)) {
+                    found[0] = "calls `" + ((MemberSelectTree) select).getIdentifier()
+                             + "()` on " + describe(field) + ", which may change it.";
+                }
+            }
+
+            private void checkArguments(List<? extends ExpressionTree> args) {
+                for (ExpressionTree arg : args) {
+                    if (found[0] == null && isSelf(arg)) {
+                        found[0] = "passes `" + arg + "` to a method, which may change any of "
+                                 + "the capsule's fields.";
+                    }
+                    String field = body.rootField(arg);
+                    if (found[0] != null || field == null) {
+                        continue;
+                    }
+                    String type = body.typeOf(arg);
+                    if (isImmutableType(type)
+                            || (isCapsuleField(core, field) && !isArrayType(type))) {
+                        continue;
+                    }
+                    found[0] = "passes " + describe(field) + " to a method, which may change it.";
+                }
+            }
+
+            private void checkCall(MethodInvocationTree call) {
+                String name = calledMethodOfCore(call.getMethodSelect());
+                if (found[0] != null || name == null) {
+                    return;
+                }
+                for (Element elem : core.getEnclosedElements()) {
+                    if (elem.getKind() != METHOD || !elem.getSimpleName().contentEquals(name)) {
+                        continue;
+                    }
+                    ExecutableElement callee = (ExecutableElement) elem;
+                    if (callee.getParameters().size() != call.getArguments().size()
+                            || callee.getAnnotation(ReadOnly.class) != null
+                            || !visited.add(callee)) {
+                        continue;
+                    }
+                    String write = findWrite(core, callee, visited);
+                    if (write != null) {
+                        found[0] = "calls `" + name + "()`, which " + write;
+                        return;
+                    }
+                }
+            }
+        }.scan(path, null);
+
+        return found[0];
+    }
+
+    /**
+     * Describes the field (or the method of the core, see `Body.rootField()`) with the given name.
+     */
+    private static String describe(String field)
+    {
+        return field.endsWith("()") ? "the capsule's state returned by `" + field + "`"
+                                    : "the capsule's field `" + field + "`";
+    }
+
+    private boolean isCapsuleField(TypeElement core, String name)
+    {
+        for (Element elem : core.getEnclosedElements()) {
+            if (elem.getKind().isField() && elem.getSimpleName().contentEquals(name)) {
+                return PaniniModel.isCapsuleFieldDecl(procEnv, elem);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The local variables of one method body, and which of them hold something reached through
+     * a field of the core.
+     */
+    private static class Body
+    {
+        final TypeElement core;
+
+        /**
+         * The declared type of each local variable (or parameter), or `null` if it is not known.
+         */
+        final Map<String, String> localTypes = new HashMap<>();
+
+        /**
+         * Maps each local variable which may hold a mutable object reached through a field of the
+         * core (e.g. `int[] h = hits;`) to the name of that field.
+         */
+        final Map<String, String> aliases = new HashMap<>();
+
+        Body(TypeElement core)
+        {
+            this.core = core;
+        }
+
+        /**
+         * Finds the aliases in the given method, repeating until no new ones are found, since
+         * one alias may be set from another.
+         */
+        void findAliases(TreePath path)
+        {
+            int before;
+            do {
+                before = aliases.size();
+                new TreePathScanner<Void, Void>() {
+                    @Override
+                    public Void visitVariable(VariableTree node, Void v) {
+                        addAlias(node.getName().toString(), node.getInitializer());
+                        return super.visitVariable(node, v);
+                    }
+                    @Override
+                    public Void visitAssignment(AssignmentTree node, Void v) {
+                        ExpressionTree var = skipParens(node.getVariable());
+                        if (var instanceof IdentifierTree) {
+                            addAlias(var.toString(), node.getExpression());
+                        }
+                        return super.visitAssignment(node, v);
+                    }
+                    @Override
+                    public Void visitEnhancedForLoop(EnhancedForLoopTree node, Void v) {
+                        addAlias(node.getVariable().getName().toString(), node.getExpression());
+                        return super.visitEnhancedForLoop(node, v);
+                    }
+                }.scan(path, null);
+            } while (aliases.size() != before);
+        }
+
+        private void addAlias(String local, ExpressionTree value)
+        {
+            if (value == null || !localTypes.containsKey(local) || aliases.containsKey(local)
+                    || isImmutableType(localTypes.get(local))) {
+                return;
+            }
+            String field = derivedField(value);
+            if (field != null) {
+                aliases.put(local, field);
+            }
+        }
+
+        /**
+         * Like `rootField()`, but also looks through casts and both branches of a conditional.
+         */
+        private String derivedField(ExpressionTree value)
+        {
+            ExpressionTree expr = skipParens(value);
+            if (expr instanceof TypeCastTree) {
+                return derivedField(((TypeCastTree) expr).getExpression());
+            }
+            if (expr instanceof ConditionalExpressionTree) {
+                ConditionalExpressionTree cond = (ConditionalExpressionTree) expr;
+                String field = derivedField(cond.getTrueExpression());
+                return (field != null) ? field : derivedField(cond.getFalseExpression());
+            }
+            return rootField(expr);
+        }
+
+        /**
+         * If the given expression is a field of the core, or is reached through one (e.g.
+         * `items[i]` or `this.head.next`), or through an alias of one, then returns the name of
+         * that field. The result of a method of the core which returns a mutable type may be any
+         * of its fields, so then the method is named instead, e.g. `items()`. Otherwise, returns
+         * `null`.
+         */
+        String rootField(ExpressionTree target)
+        {
+            ExpressionTree expr = skipParens(target);
+            while (true) {
+                if (expr instanceof ArrayAccessTree) {
+                    expr = skipParens(((ArrayAccessTree) expr).getExpression());
+                } else if (expr instanceof MethodInvocationTree) {
+                    MethodInvocationTree call = (MethodInvocationTree) expr;
+                    String name = calledMethodOfCore(call.getMethodSelect());
+                    String type = returnType(core, call);
+                    return (name != null && type != null && !isImmutableType(type)
+                                         && !type.equals("void")) ? name + "()" : null;
+                } else if (expr instanceof MemberSelectTree) {
+                    ExpressionTree owner = skipParens(((MemberSelectTree) expr).getExpression());
+                    if (isThis(owner)) {
+                        String name = ((MemberSelectTree) expr).getIdentifier().toString();
+                        return isFieldOfCore(core, name) ? name : null;
+                    }
+                    expr = owner;
+                } else if (expr instanceof IdentifierTree) {
+                    String name = expr.toString();
+                    if (aliases.containsKey(name)) {
+                        return aliases.get(name);
+                    }
+                    return (!localTypes.containsKey(name) && isFieldOfCore(core, name))
+                           ? name : null;
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Returns the declared type of the given expression, if it is a variable or an element
+         * of an array held by one, or `null` if it is not known.
+         */
+        String typeOf(ExpressionTree target)
+        {
+            ExpressionTree expr = skipParens(target);
+            if (expr instanceof TypeCastTree) {
+                return ((TypeCastTree) expr).getType().toString();
+            }
+            if (expr instanceof ArrayAccessTree) {
+                String array = typeOf(((ArrayAccessTree) expr).getExpression());
+                return isArrayType(array) ? array.substring(0, array.length() - 2) : null;
+            }
+            if (expr instanceof MemberSelectTree
+                    && isThis(skipParens(((MemberSelectTree) expr).getExpression()))) {
+                return fieldType(core, ((MemberSelectTree) expr).getIdentifier().toString());
+            }
+            if (expr instanceof IdentifierTree) {
+                String name = expr.toString();
+                return localTypes.containsKey(name) ? localTypes.get(name)
+                                                    : fieldType(core, name);
+            }
+            if (expr instanceof MethodInvocationTree) {
+                return returnType(core, (MethodInvocationTree) expr);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the declared return type of the method of the core which the given call is made to,
+     * or `null` if it is not a call on the core or if the core has no such method.
+     */
+    private static String returnType(TypeElement core, MethodInvocationTree call)
+    {
+        String name = calledMethodOfCore(call.getMethodSelect());
+        if (name == null) {
+            return null;
+        }
+        for (Element elem : core.getEnclosedElements()) {
+            if (elem.getKind() == METHOD && elem.getSimpleName().contentEquals(name)
+                    && ((ExecutableElement) elem).getParameters().size()
+                       == call.getArguments().size()) {
+                return ((ExecutableElement) elem).getReturnType().toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the given argument is `this` or a method reference on it, through which
+     * a callee could reach the whole core.
+     */
+    private static boolean isSelf(ExpressionTree arg)
+    {
+        ExpressionTree expr = skipParens(arg);
+        if (expr instanceof TypeCastTree) {
+            return isSelf(((TypeCastTree) expr).getExpression());
+        }
+        if (expr instanceof ConditionalExpressionTree) {
+            ConditionalExpressionTree cond = (ConditionalExpressionTree) expr;
+            return isSelf(cond.getTrueExpression()) || isSelf(cond.getFalseExpression());
+        }
+        if (expr instanceof MemberReferenceTree) {
+            ExpressionTree owner = skipParens(((MemberReferenceTree) expr).getQualifierExpression());
+            return isThis(owner) || (owner instanceof IdentifierTree
+                                     && owner.toString().equals("super"));
+        }
+        return isThis(expr);
+    }
+
+    /**
+     * Returns the name of the method if the given method select is a call on the core itself,
+     * i.e. `foo` or `this.foo`, or `null` otherwise.
+     */
+    private static String calledMethodOfCore(ExpressionTree select)
+    {
+        if (select instanceof IdentifierTree) {
+            String name = select.toString();
+            return (name.equals("this") || name.equals("super")) ? null : name;
+        }
+        if (select instanceof MemberSelectTree
+                && isThis(skipParens(((MemberSelectTree) select).getExpression()))) {
+            return ((MemberSelectTree) select).getIdentifier().toString();
+        }
+        return null;
+    }
+
+    private static boolean isFieldOfCore(TypeElement core, String name)
+    {
+        return fieldType(core, name) != null;
+    }
+
+    private static String fieldType(TypeElement core, String name)
+    {
+        for (Element elem : core.getEnclosedElements()) {
+            if (elem.getKind().isField() && elem.getSimpleName().contentEquals(name)) {
+                return elem.asType().toString();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isArrayType(String type)
+    {
+        return type != null && type.endsWith("[]");
+    }
+
+    private static boolean isImmutableType(String type)
+    {
+        if (type == null || isArrayType(type)) {
+            return false;
+        }
+        int generic = type.indexOf('<');
+        String raw = (generic < 0) ? type : type.substring(0, generic);
+        return IMMUTABLE_TYPES.contains(raw.substring(raw.lastIndexOf('.') + 1).trim());
+    }
+
+    private static boolean isThis(Tree expr)
+    {
+        return expr instanceof IdentifierTree && expr.toString().equals("this");
+    }
+
+    private static ExpressionTree skipParens(ExpressionTree expr)
+    {
+        while (expr instanceof ParenthesizedTree) {
+            expr = ((ParenthesizedTree) expr).getExpression();
+        }
+        return expr;
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ *  Dr. Hridesh Rajan,
+ *  Dalton Mills,
+ *  David Johnston,
+ *  Trey Erenberger
+ *******************************************************************************/
+package org.paninij.proc.check.capsule;
+
+import static org.paninij.proc.check.Check.Result.OK;
+import static org.paninij.proc.check.Check.Result.error;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+import org.paninij.lang.AnyShard;
+import org.paninij.lang.Broadcast;
+import org.paninij.lang.Chain;
+import org.paninij.lang.Handler;
+import org.paninij.lang.Root;
+import org.paninij.lang.ShardKey;
+import org.paninij.lang.Sharded;
+import org.paninij.proc.util.PaniniModel;
+
+/**
+ * This checks that a `@Sharded` capsule, its `@ShardKey` parameters, and its `@AnyShard`
+ * procedures are defined correctly.
+ */
+public class CheckSharded implements CapsuleCheck {
+
+    private Result checkMethod(ExecutableElement e, boolean sharded) {
+        int keys = 0;
+        for (VariableElement param : e.getParameters()) {
+            if (param.getAnnotation(ShardKey.class) != null) {
+                keys++;
+            }
+        }
+        boolean anyShard = e.getAnnotation(AnyShard.class) != null;
+
+        if (!sharded) {
+            if (keys > 0) {
+                String err = "A `@ShardKey` can only be used in a `@Sharded` capsule.";
+                return error(err, CheckSharded.class, e);
+            }
+            if (anyShard) {
+                String err = "`@AnyShard` can only be used in a `@Sharded` capsule.";
+                return error(err, CheckSharded.class, e);
+            }
+            return OK;
+        }
+
+        if (keys > 1) {
+            String err = "A procedure can have at most one `@ShardKey` parameter.";
+            return error(err, CheckSharded.class, e);
+        }
+
+        if (!PaniniModel.isProcedure(e)) {
+            return OK;
+        }
+
+        if (keys == 0 && !anyShard) {
+            String err = "A procedure of a `@Sharded` capsule must have a `@ShardKey` parameter "
+                       + "or be `@AnyShard`.";
+            return error(err, CheckSharded.class, e);
+        }
+
+        if (keys > 0 && anyShard) {
+            String err = "An `@AnyShard` procedure cannot have a `@ShardKey` parameter.";
+            return error(err, CheckSharded.class, e);
+        }
+
+        return OK;
+    }
+
+    private Result checkShardedMember(Element e) {
+        if (e.getAnnotation(Handler.class) != null) {
+            String err = "A `@Sharded` capsule cannot have handlers.";
+            return error(err, CheckSharded.class, e);
+        }
+
+        if (e.getAnnotation(Broadcast.class) != null || e.getAnnotation(Chain.class) != null) {
+            String err = "A `@Sharded` capsule cannot have events.";
+            return error(err, CheckSharded.class, e);
+        }
+
+        return OK;
+    }
+
+    @Override
+    public Result checkCapsule(TypeElement core) {
+        Sharded sharded = core.getAnnotation(Sharded.class);
+
+        if (sharded != null) {
+            if (sharded.value() < 1) {
+                String err = "A `@Sharded` capsule must have at least one shard.";
+                return error(err, CheckSharded.class, core);
+            }
+
+            if (core.getAnnotation(Root.class) != null) {
+                String err = "A root capsule cannot be `@Sharded`.";
+                return error(err, CheckSharded.class, core);
+            }
+        }
+
+        for (Element e : core.getEnclosedElements()) {
+            if (sharded != null) {
+                Result result = checkShardedMember(e);
+                if (!result.ok()) {
+                    return result;
+                }
+            }
+            if (e.getKind() == ElementKind.METHOD) {
+                Result result = checkMethod((ExecutableElement) e, sharded != null);
+                if (!result.ok()) {
+                    return result;
+                }
+            }
+        }
+        return OK;
+    }
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ *  Dr. Hridesh Rajan,
+ *  Dalton Mills,
+ *  David Johnston,
+ *  Trey Erenberger
+ *******************************************************************************/
+package org.paninij.proc.check.capsule;
+
+import static org.paninij.proc.check.Check.Result.OK;
+import static org.paninij.proc.check.Check.Result.error;
+
+import javax.lang.model.element.TypeElement;
+
+import org.paninij.lang.WaitStrategy;
+
+/**
+ * This checks that the spins and yields of a capsule's `@WaitStrategy` are not negative.
+ */
+public class CheckWaitStrategy implements CapsuleCheck {
+
+    @Override
+    public Result checkCapsule(TypeElement core) {
+        WaitStrategy wait = core.getAnnotation(WaitStrategy.class);
+        if (wait != null && (wait.spins() < 0 || wait.yields() < 0)) {
+            String err = "The spins and yields of a `@WaitStrategy` cannot be negative.";
+            return error(err, CheckWaitStrategy.class, core);
+        }
+        return OK;
+    }
+}
@@ -57,6 +57,7 @@ public class RoundOneCapsuleChecks implements CapsuleCheck
             new CheckFields(procEnv),
             new CheckForImportedFieldsOnRoot(),
             new CheckForLocalSignatureFields(procEnv),
+            new CheckForUseAfterTransfer(procEnv),
         };
     }
 
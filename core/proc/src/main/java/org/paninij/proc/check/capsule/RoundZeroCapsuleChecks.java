@@ -51,6 +51,11 @@ public class RoundZeroCapsuleChecks implements CapsuleCheck {
             new CheckForBadAnnotations(),
             new CheckThatOnlySignatureCoresAreImplemented(procEnv),
             new CheckHandlers(),
+            new CheckPriorities(),
+            new CheckCoalesce(),
+            new CheckSharded(),
+            new CheckWaitStrategy(),
+            new CheckReadOnly(procEnv),
             new CheckEventFields(),
         };
     }
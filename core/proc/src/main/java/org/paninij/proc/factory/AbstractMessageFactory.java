@@ -76,6 +76,8 @@ public abstract class AbstractMessageFactory implements ArtifactFactory<Procedur
         packs.add("javax.annotation.Generated");
         packs.add("org.paninij.runtime.Panini$Future");
         packs.add("org.paninij.runtime.Panini$Message");
+        packs.add("org.paninij.runtime.Panini$Outbox");
+        packs.add("org.paninij.runtime.Panini$TaskPool");
         packs.add(ret.packed());
 
         switch (this.shape.category) {
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *  Jackson Maddox
+ *******************************************************************************/
+
+package org.paninij.proc.factory;
+
+import java.util.List;
+
+import org.paninij.proc.model.Behavior;
+import org.paninij.proc.model.Procedure;
+import org.paninij.proc.util.MessageShape;
+import org.paninij.runtime.check.DynamicOwnershipTransfer;
+import org.paninij.runtime.check.TransferManifest;
+
+public class CapsuleAdaptiveFactory extends CapsuleTaskFactory
+{
+    public static final String CAPSULE_PROFILE_ADAPTIVE_SUFFIX = "$Adaptive";
+
+    public CapsuleAdaptiveFactory()
+    {
+        this(new TransferManifest(), DynamicOwnershipTransfer.Kind.getDefault());
+    }
+
+    public CapsuleAdaptiveFactory(TransferManifest transferManifest,
+                                  DynamicOwnershipTransfer.Kind ownershipCheck)
+    {
+        super(transferManifest, ownershipCheck, CAPSULE_PROFILE_ADAPTIVE_SUFFIX,
+              "Capsule$Adaptive");
+    }
+
+    /**
+     * An adaptive capsule always has `panini$readers`, whose write lock is held by direct calls and
+     * by the worker which handles its messages.
+     */
+    @Override
+    protected boolean enablesReaders()
+    {
+        return true;
+    }
+
+    /**
+     * Generates a procedure which is first tried as a direct call (see `Capsule$Adaptive`), unless
+     * it already has a `@ReadOnly` fast path.
+     */
+    @Override
+    protected List<String> generateProcedure(Procedure procedure)
+    {
+        MessageShape shape = new MessageShape(procedure);
+        List<String> source = super.generateProcedure(procedure);
+        if (!procedure.isReadOnly() || shape.behavior == Behavior.UNBLOCKED_SIMPLE) {
+            source.addAll(source.indexOf("{") + 1,
+                    this.generateFastPath(shape, "panini$tryDirect", "panini$endDirect"));
+        }
+        return source;
+    }
+}
@@ -56,6 +56,7 @@ public class CapsuleInterfaceFactory extends AbstractCapsuleFactory
                 "#1",
                 "@SuppressWarnings(\"unused\")",  // To suppress unused import warnings.
                 "@CapsuleInterface",
+                "#5",
                 "public interface #2 extends #3",
                 "{",
                 "    #4",
@@ -68,7 +69,8 @@ public class CapsuleInterfaceFactory extends AbstractCapsuleFactory
                 ArtifactFactory.getGeneratedAnno(CapsuleInterfaceFactory.class),
                 this.capsule.getSimpleName(),
                 this.generateInterfaces(),
-                this.generateImportDecl());
+                this.generateImportDecl(),
+                this.generateShardedAnno());
 
         src = Source.formatAligned(src, this.generateImports());
         src = Source.formatAligned(src, this.generateFacades());
@@ -77,6 +79,16 @@ public class CapsuleInterfaceFactory extends AbstractCapsuleFactory
         return src;
     }
 
+    /**
+     * The interface of a `@Sharded` capsule carries the annotation too, so that capsules with a
+     * field of its type know to instantiate its router.
+     */
+    protected String generateShardedAnno()
+    {
+        int shards = this.capsule.getShards();
+        return (shards > 0) ? Source.format("@Sharded(#0)", shards) : "";
+    }
+
     protected String generateInterfaces()
     {
         List<String> interfaces = this.capsule.getSignatures();
@@ -112,6 +124,7 @@ public class CapsuleInterfaceFactory extends AbstractCapsuleFactory
         imports.add("javax.annotation.Generated");
         imports.add("java.util.concurrent.Future");
         imports.add("org.paninij.lang.CapsuleInterface");
+        imports.add("org.paninij.lang.Sharded");
         imports.add("org.paninij.runtime.Panini$Capsule");
         imports.add("org.paninij.runtime.Panini$Capsule$Root");
         imports.add("org.paninij.lang.EventExecution");
@@ -168,7 +181,7 @@ public class CapsuleInterfaceFactory extends AbstractCapsuleFactory
         String declaration = Source.format("public void #0(EventExecution<#2> ex, #1);", 
                 p.getName(),
                 argDeclString,
-                param.getMirror().toString());
+                p.getAnnouncedType());
         
         return declaration;
     }
@@ -178,6 +191,7 @@ public class CapsuleInterfaceFactory extends AbstractCapsuleFactory
 
         List<Variable> allEvents = capsule.getBroadcastEventFields();
         allEvents.addAll(capsule.getChainEventFields());
+        allEvents.addAll(capsule.getPipelineEventFields());
         
         for (Variable v : allEvents) {
             facades.add(Source.format("public #0 #1();",
@@ -33,7 +33,6 @@ import java.util.List;
 import java.util.Set;
 
 import org.paninij.proc.model.Procedure;
-import org.paninij.proc.model.Type;
 import org.paninij.proc.model.Variable;
 import org.paninij.proc.util.MessageShape;
 import org.paninij.proc.util.PaniniModel;
@@ -124,10 +123,13 @@ public class CapsuleMonitorFactory extends CapsuleProfileFactory
     protected String generateProcedureDecl(MessageShape shape) {
         List<String> argDecls = this.generateProcArgumentDecls(shape.procedure);
         String argDeclString = String.join(", ", argDecls);
-        String declaration = Source.format("public synchronized #0 #1(#2)",
+        // A capsule with `@ReadOnly` procedures locks `panini$readers` instead.
+        String modifiers = this.enablesReaders() ? "public" : "public synchronized";
+        String declaration = Source.format("#3 #0 #1(#2)",
                 shape.realReturn,
                 shape.procedure.getName(),
-                argDeclString);
+                argDeclString,
+                modifiers);
         List<String> thrown = shape.procedure.getThrown();
         declaration += (thrown.isEmpty()) ? "" : " throws " + String.join(", ", thrown);
         return declaration;
@@ -149,71 +151,78 @@ public class CapsuleMonitorFactory extends CapsuleProfileFactory
                 this.generateProcedureDecl(shape),
                 shape.kindAnnotation);
 
-        return Source.formatAlignedFirst(source, this.generateEncapsulatedMethodCall(shape));
+        List<String> call = this.generateDirectCall(shape);
+        if (this.enablesReaders()) {
+            call = this.generateLocked(call, procedure.isReadOnly() ? "Read" : "Write");
+        }
+        return Source.formatAlignedFirst(source, call);
+    }
+
+    /**
+     * Wraps the given lines in the read or write lock of `panini$readers` (see `Capsule$Monitor`).
+     */
+    private List<String> generateLocked(List<String> lines, String lock) {
+        List<String> source = Source.lines(
+                "panini$begin#0();",
+                "try {",
+                "    ##",
+                "} finally {",
+                "    panini$end#0();",
+                "}");
+        return Source.formatAlignedFirst(Source.formatAll(source, lock), lines);
+    }
+
+    @Override
+    protected boolean enablesReaders() {
+        return this.hasReadOnlyProcedures();
     }
 
     @Override
     protected List<String> generateEventHandler(Procedure handler) {
         List<String> source = null;
 
-        source = Source.lines(
-                "@Override",
-                "public synchronized void #0(EventExecution<#2> ex, #1) {",
-                "    panini$encapsulated.#0(#3);",
-                "    ex.panini$markComplete();",
-                "}",
-                "");
+        if (this.enablesReaders()) {
+            source = Source.lines(
+                    "@Override",
+                    "public void #0(EventExecution<#2> ex, #1) {",
+                    "    if (panini$terminated) {",
+                    "        ex.panini$markTerminated();",
+                    "        return;",
+                    "    }",
+                    "    panini$beginWrite();",
+                    "    try {",
+                    "        panini$encapsulated.#0(#3);",
+                    "    } finally {",
+                    "        panini$endWrite();",
+                    "    }",
+                    "    ex.panini$markComplete();",
+                    "}",
+                    "");
+        } else {
+            source = Source.lines(
+                    "@Override",
+                    "public synchronized void #0(EventExecution<#2> ex, #1) {",
+                    "    if (panini$terminated) {",
+                    "        ex.panini$markTerminated();",
+                    "        return;",
+                    "    }",
+                    "    panini$encapsulated.#0(#3);",
+                    "    ex.panini$markComplete();",
+                    "}",
+                    "");
+        }
 
         Variable param = handler.getParameters().get(0);
         String argDeclString = param.toString();
         source = Source.formatAll(source,
                 handler.getName(),
                 argDeclString,
-                param.getMirror().toString(),
+                handler.getAnnouncedType(),
                 param.getIdentifier());
 
         return source;
     }
 
-    private List<String> generateEncapsulatedMethodCall(MessageShape shape)
-    {
-        List<String> encap = new ArrayList<String>();
-        List<String> argNames = this.generateProcArgumentNames(shape.procedure);
-        String args = String.join(", ", argNames);
-        String call = "panini$encapsulated." + shape.procedure.getName() + "(" + args + ")";
-        switch(shape.behavior) {
-        case UNBLOCKED_DUCK:
-        case BLOCKED_FUTURE:
-            String ret = shape.returnType.isVoid() ? "" : "return ";
-            encap.add(ret + call + ";");
-            return encap;
-        case UNBLOCKED_PREMADE:
-        case BLOCKED_PREMADE:
-            encap.add("return " + call + ";");
-            return encap;
-        case UNBLOCKED_FUTURE:
-            argNames.add(0, "-1");
-            args = String.join(", ", argNames);
-            encap.add(shape.encoded + " msg = new " + shape.encoded + "(" + args + ");");
-            Type r = shape.procedure.getReturnType();
-            if (r.isVoid()) {
-                encap.add(call + ";");
-                encap.add("msg.panini$resolve(null);");
-            } else {
-                encap.add(r.wrapped() + " result = " + call + ";");
-                encap.add("msg.panini$resolve(result);");
-            }
-            encap.add("return msg;");
-            return encap;
-        case UNBLOCKED_SIMPLE:
-            encap.add(call + ";");
-            return encap;
-        case ERROR:
-        default:
-            throw new IllegalArgumentException("Bad MessageShape behavior");
-        }
-    }
-
     private List<String> generateProcedures()
     {
         ArrayList<String> src = new ArrayList<String>();
@@ -232,20 +241,18 @@ public class CapsuleMonitorFactory extends CapsuleProfileFactory
             if (local.isArray()) {
                 List<String> lines = Source.lines(
                         "for (int i = 0; i < panini$encapsulated.#0.length; i++) {",
-                        "    panini$encapsulated.#0[i] = new #1#2();",
+                        "    panini$encapsulated.#0[i] = #1;",
                         "}",
                         "");
                 source.addAll(Source.formatAll(
                         lines,
                         local.getIdentifier(),
-                        local.getEncapsulatedType(),
-                        CAPSULE_PROFILE_MONITOR_SUFFIX));
+                        this.generateLocalInstance(local.getEncapsulatedType(), CAPSULE_PROFILE_MONITOR_SUFFIX)));
             } else {
                 source.add(Source.format(
-                        "panini$encapsulated.#0 = new #1#2();",
+                        "panini$encapsulated.#0 = #1;",
                         local.getIdentifier(),
-                        local.raw(),
-                        CAPSULE_PROFILE_MONITOR_SUFFIX));
+                        this.generateLocalInstance(local, CAPSULE_PROFILE_MONITOR_SUFFIX)));
             }
         }
 
@@ -31,7 +31,12 @@ import java.util.List;
 
 import javax.lang.model.type.TypeKind;
 
+import org.paninij.runtime.check.DynamicOwnershipTransfer;
+import org.paninij.runtime.check.TransferManifest;
+
+import org.paninij.proc.model.Behavior;
 import org.paninij.proc.model.Procedure;
+import org.paninij.proc.model.Type;
 import org.paninij.proc.model.Variable;
 import org.paninij.proc.util.MessageShape;
 import org.paninij.proc.util.PaniniModel;
@@ -40,6 +45,29 @@ import org.paninij.proc.util.Source;
 
 public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
 {
+    /**
+     * The transfers which a prior Soter analysis has proven to be safe. Dynamic ownership transfer
+     * checks are not generated for these.
+     */
+    protected final TransferManifest transferManifest;
+
+    /**
+     * The dynamic ownership transfer check which is asserted on the results of procedures.
+     */
+    protected final DynamicOwnershipTransfer.Kind ownershipCheck;
+
+    protected CapsuleProfileFactory()
+    {
+        this(new TransferManifest(), DynamicOwnershipTransfer.Kind.getDefault());
+    }
+
+    protected CapsuleProfileFactory(TransferManifest transferManifest,
+                                    DynamicOwnershipTransfer.Kind ownershipCheck)
+    {
+        this.transferManifest = transferManifest;
+        this.ownershipCheck = ownershipCheck;
+    }
+
     protected abstract String generateClassName();
 
     protected String generateProcedureID(Procedure p) {
@@ -47,7 +75,9 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
         List<String> params = new ArrayList<>();
 
         for (Variable param : p.getParameters()) {
-            params.add(param.encodeFull());
+            // Type arguments (e.g. of a batch handler's list) cannot be part of an identifier,
+            // and overloads cannot differ only by them.
+            params.add(param.encodeFull().replaceAll("<.*>", ""));
         }
 
         String paramStrings = params.size() > 0 ? "$" + String.join("$", params) : "";
@@ -84,6 +114,10 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
     }
 
     protected List<String> generateProcedure(Procedure procedure) {
+        if (procedure.isCoalesced()) {
+            return this.generateCoalescedProcedure(procedure);
+        }
+
         MessageShape shape = new MessageShape(procedure);
         String encoding = PaniniModel.isPaniniCustom(shape.returnType.getMirror()) ? shape.returnType.raw() : shape.encoded;
         
@@ -95,18 +129,272 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
                 "    #1 panini$message = null;",
                 "    panini$message = new #1(#2);",
                 "    #3;",
-                "    panini$push(panini$message);",
+                "    #7",
+                "    #6",
                 "    #4",
                 "}",
                 "");
         
-        return Source.formatAll(source,
+        source = Source.formatAll(source,
                 this.generateProcedureDecl(shape),
                 encoding,
                 this.generateProcedureArguments(shape),
                 this.generateAssertSafeInvocationTransfer(),
                 this.generateProcedureReturn(shape),
-                shape.kindAnnotation);
+                shape.kindAnnotation,
+                this.generatePush(procedure),
+                this.generateFlush(procedure));
+
+        if (this.enablesReaders() && procedure.isReadOnly()
+                                  && shape.behavior != Behavior.UNBLOCKED_SIMPLE) {
+            source.addAll(source.indexOf("{") + 1,
+                    this.generateFastPath(shape, "panini$tryRead", "panini$endRead"));
+        }
+        return source;
+    }
+
+    /**
+     * Generates the start of a procedure which calls the core directly on the caller's thread if
+     * the given runtime method allows it (e.g. `panini$tryRead()` for a `@ReadOnly` procedure),
+     * and then calls the given method to end the call. Otherwise, the procedure goes on to send
+     * its message as usual.
+     */
+    protected List<String> generateFastPath(MessageShape shape, String begin, String end) {
+        List<String> call = this.generateCheckedResult(shape, this.generateDirectCall(shape));
+        if (!call.get(call.size() - 1).startsWith("return")) {
+            call.add("return;");
+        }
+        List<String> source = Source.lines(
+                "    if (#0()) {",
+                "        try {",
+                "            ##",
+                "        } finally {",
+                "            #1();",
+                "        }",
+                "    }");
+        return Source.formatAlignedFirst(Source.formatAll(source, begin, end), call);
+    }
+
+    /**
+     * Adds the result ownership check (if any) to the given direct call of a procedure, since its
+     * result is then returned to the caller without passing through the capsule's run loop.
+     */
+    private List<String> generateCheckedResult(MessageShape shape, List<String> call) {
+        String check = this.generateAssertSafeResultTransfer(shape.procedure);
+        if (check.isEmpty() || shape.returnType.isVoid()) {
+            return call;
+        }
+        String result = shape.returnType.wrapped() + " result = ";
+        int last = call.size() - 1;
+        if (call.get(last).startsWith("return panini$encapsulated.")) {
+            call.set(last, result + call.get(last).substring("return ".length()));
+            call.add("return result;");
+        }
+        for (int i = 0; i < call.size(); i++) {
+            if (call.get(i).startsWith(result)) {
+                call.add(i + 1, check + ";");
+                break;
+            }
+        }
+        return call;
+    }
+
+    /**
+     * Wraps the handling of a message by a capsule's own thread in `panini$beginWrite()` and
+     * `panini$endWrite()`, if the capsule lets `@ReadOnly` procedures run on their callers'
+     * threads.
+     */
+    protected List<String> generateWriteLocked(List<String> handling) {
+        if (!this.enablesReaders()) {
+            return handling;
+        }
+        List<String> source = Source.lines(
+                "panini$beginWrite();",
+                "try {",
+                "    ##",
+                "} finally {",
+                "    panini$endWrite();",
+                "}");
+        return Source.formatAlignedFirst(source, handling);
+    }
+
+    /**
+     * @return Whether this profile runs the capsule's `@ReadOnly` procedures concurrently with
+     *         each other, in which case its constructor calls `panini$enableReaders()`.
+     */
+    protected boolean enablesReaders() {
+        return false;
+    }
+
+    protected boolean hasReadOnlyProcedures() {
+        for (Procedure p : this.capsule.getProcedures()) {
+            if (p.isReadOnly()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates a call of the procedure on `panini$encapsulated` on the caller's thread, which
+     * returns the procedure's result in the shape its callers expect.
+     */
+    protected List<String> generateDirectCall(MessageShape shape) {
+        List<String> encap = new ArrayList<String>();
+        List<String> argNames = this.generateProcArgumentNames(shape.procedure);
+        String args = String.join(", ", argNames);
+        String call = "panini$encapsulated." + shape.procedure.getName() + "(" + args + ")";
+        switch(shape.behavior) {
+        case UNBLOCKED_DUCK:
+        case BLOCKED_FUTURE:
+            String ret = shape.returnType.isVoid() ? "" : "return ";
+            encap.add(ret + call + ";");
+            return encap;
+        case UNBLOCKED_PREMADE:
+        case BLOCKED_PREMADE:
+            encap.add("return " + call + ";");
+            return encap;
+        case UNBLOCKED_FUTURE:
+            argNames.add(0, "-1");
+            args = String.join(", ", argNames);
+            encap.add(shape.encoded + " msg = new " + shape.encoded + "(" + args + ");");
+            Type r = shape.procedure.getReturnType();
+            if (r.isVoid()) {
+                encap.add(call + ";");
+                encap.add("msg.panini$resolve(null);");
+            } else {
+                encap.add(r.wrapped() + " result = " + call + ";");
+                encap.add("msg.panini$resolve(result);");
+            }
+            encap.add("return msg;");
+            return encap;
+        case UNBLOCKED_SIMPLE:
+            encap.add(call + ";");
+            return encap;
+        case ERROR:
+        default:
+            throw new IllegalArgumentException("Bad MessageShape behavior");
+        }
+    }
+
+    /**
+     * Generates a `@Coalesce` procedure, which pushes its call with `panini$pushCoalesced()`
+     * rather than making a message of its own.
+     */
+    protected List<String> generateCoalescedProcedure(Procedure procedure) {
+        MessageShape shape = new MessageShape(procedure);
+        List<String> argNames = this.generateProcArgumentNames(procedure);
+        String args = argNames.isEmpty()
+                ? "null"
+                : "new Object[] { " + String.join(", ", argNames) + " }";
+
+        List<String> source = Source.lines(
+                "#3",
+                "@Override",
+                "#0",
+                "{",
+                "    #1;",
+                "    Panini$Outbox.flush();",
+                "    panini$pushCoalesced(#2, #4);",
+                "}",
+                "");
+
+        return Source.formatAll(source,
+                this.generateProcedureDecl(shape),
+                this.generateAssertSafeInvocationTransfer(),
+                this.generateProcedureID(procedure),
+                shape.kindAnnotation,
+                args);
+    }
+
+    /**
+     * Generates the case of a run switch which handles a `CoalescedMessage`. A procedure
+     * without parameters is invoked once per merged call; any other is invoked once, with the
+     * arguments of the latest call.
+     */
+    protected List<String> generateRunCoalescedCase(Procedure procedure) {
+        List<Variable> params = procedure.getParameters();
+        if (params.isEmpty()) {
+            List<String> src = Source.lines(
+                    "case #0: {",
+                    "    int panini$count = ((CoalescedMessage) msg).count;",
+                    "    for (int i = 0; i < panini$count; i++) {",
+                    "        panini$encapsulated.#1();",
+                    "    }",
+                    "    break;",
+                    "}");
+            return Source.formatAll(src,
+                    this.generateProcedureID(procedure),
+                    procedure.getName());
+        }
+
+        List<String> args = new ArrayList<String>();
+        for (int i = 0; i < params.size(); i++) {
+            args.add(Source.format("(#0) panini$args[#1]", params.get(i).wrapped(), i));
+        }
+        List<String> src = Source.lines(
+                "case #0: {",
+                "    Object[] panini$args = ((CoalescedMessage) msg).args;",
+                "    panini$encapsulated.#1(#2);",
+                "    break;",
+                "}");
+        return Source.formatAll(src,
+                this.generateProcedureID(procedure),
+                procedure.getName(),
+                String.join(", ", args));
+    }
+
+    /**
+     * Pushes `panini$message` into the capsule's queue, or ahead of it if the procedure has a
+     * `@Priority` or `@Deadline`. A message which nothing waits on is posted through the
+     * sender's `Panini$Outbox` instead.
+     */
+    protected String generatePush(Procedure procedure) {
+        if (procedure.getPriority() > 0) {
+            return Source.format("panini$pushPriority(panini$message, #0);", procedure.getPriority());
+        }
+        if (procedure.getDeadline() > 0) {
+            return Source.format("panini$pushDeadline(panini$message, #0L);", procedure.getDeadline());
+        }
+        if (this.isPosted(procedure)) {
+            return "Panini$Outbox.post(this, panini$message);";
+        }
+        return "panini$push(panini$message);";
+    }
+
+    /**
+     * Any message which is not posted through the sender's outbox must first flush it, so that
+     * it cannot overtake messages which were sent before it.
+     */
+    protected String generateFlush(Procedure procedure) {
+        return this.isPosted(procedure) ? "" : "Panini$Outbox.flush();";
+    }
+
+    private boolean isPosted(Procedure procedure) {
+        MessageShape shape = new MessageShape(procedure);
+        return shape.behavior == Behavior.UNBLOCKED_SIMPLE
+            && procedure.getPriority() == 0
+            && procedure.getDeadline() == 0;
+    }
+
+    /**
+     * Generates an instance of a local capsule of the given type, in the profile with the given
+     * suffix. A `@Sharded` capsule is instantiated as a router over that many instances.
+     */
+    protected String generateLocalInstance(Type type, String suffix) {
+        String instance = Source.format("new #0#1()", type.raw(), suffix);
+        int shards = type.getShards();
+        if (shards == 0) {
+            return instance;
+        }
+        List<String> instances = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            instances.add(instance);
+        }
+        return Source.format("new #0#1(#2)",
+                type.raw(),
+                CapsuleShardedFactory.CAPSULE_SHARDED_SUFFIX,
+                String.join(", ", instances));
     }
 
     protected List<String> generateProcArgumentDecls(Procedure p) {
@@ -142,6 +430,7 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
         
         List<Variable> allEvents = capsule.getBroadcastEventFields();
         allEvents.addAll(capsule.getChainEventFields());
+        allEvents.addAll(capsule.getPipelineEventFields());
         
         for (Variable v : allEvents) {
             List<String> source = Source.lines(
@@ -172,21 +461,42 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
     protected List<String> generateEventHandler(Procedure handler) {
         List<String> source = null;
 
-        source = Source.lines(
+        if (handler.isBatchHandler()) {
+            source = Source.lines(
                     "@Override",
                     "public void #0(EventExecution<#2> ex, #1) {",
+                    "    if (panini$terminated) {",
+                    "        ex.panini$markTerminated();",
+                    "        return;",
+                    "    }",
+                    "    BatchEventMessage<#2> panini$message = null;",
+                    "    panini$message = new BatchEventMessage<>(#4, ex, #3);",
+                    "    Panini$Outbox.flush();",
+                    "    panini$push(panini$message);",
+                    "}",
+                    "");
+        } else {
+            source = Source.lines(
+                    "@Override",
+                    "public void #0(EventExecution<#2> ex, #1) {",
+                    "    if (panini$terminated) {",
+                    "        ex.panini$markTerminated();",
+                    "        return;",
+                    "    }",
                     "    EventMessage<#2> panini$message = null;",
                     "    panini$message = new EventMessage<>(#4, ex, #3);",
+                    "    Panini$Outbox.flush();",
                     "    panini$push(panini$message);",
                     "}",
                     "");
+        }
 
         Variable param = handler.getParameters().get(0);
         String argDeclString = param.toString();
         source = Source.formatAll(source,
                 handler.getName(),
                 argDeclString,
-                param.getMirror().toString(),
+                handler.getAnnouncedType(),
                 param.getIdentifier(),
                 generateProcedureID(handler));
 
@@ -210,12 +520,31 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
                     "    panini$encapsulated.#0 = new Event<>(org.paninij.runtime.EventMode.CHAIN);",
                     v.getIdentifier()));
         }
+        for (Variable v : capsule.getPipelineEventFields()) {
+            list.add(Source.format(
+                    "    panini$encapsulated.#0 = new Event<>(org.paninij.runtime.EventMode.PIPELINE);",
+                    v.getIdentifier()));
+        }
+
+        if (this.enablesReaders()) {
+            list.add("    panini$enableReaders();");
+        }
+        for (String statement : this.generateConstructorStatements()) {
+            list.add("    " + statement);
+        }
 
         list.add("}");
         list.add("");
 
         return list;
     }
+
+    /**
+     * @return Any statements which a profile adds to the end of the generated constructor.
+     */
+    protected List<String> generateConstructorStatements() {
+        return new ArrayList<String>();
+    }
     
     protected String generateAssertSafeInvocationTransfer()
     {
@@ -230,6 +559,37 @@ public abstract class CapsuleProfileFactory extends AbstractCapsuleFactory
         return "";
     }
 
+    /**
+     * Returns an assertion that the result of the given procedure may be transferred to its caller,
+     * i.e. that it is not reachable from the state of this capsule. The assertion expects the
+     * result in a local named `result`. Nothing is asserted if no check was selected, if the
+     * procedure is `@Transfer` (see `CheckForUseAfterTransfer`), or if Soter found every result
+     * of the procedure to be safe.
+     */
+    protected String generateAssertSafeResultTransfer(Procedure procedure)
+    {
+        if (ownershipCheck == DynamicOwnershipTransfer.Kind.NONE || procedure.isTransfer()
+                || isProvenSafeResult(procedure)) {
+            return "";
+        }
+        return Source.format(
+                "assert DynamicOwnershipTransfer.isSafeTransfer(#0, #1, DynamicOwnershipTransfer.Kind.#2) : #3",
+                "result",
+                "panini$getAllState()",
+                ownershipCheck,
+                "\"Procedure return attempted unsafe ownership transfer.\"");
+    }
+
+    /**
+     * Returns true if Soter found every result returned by the given procedure to be safe.
+     */
+    protected boolean isProvenSafeResult(Procedure procedure)
+    {
+        return transferManifest.isSafeResult(this.capsule.getQualifiedName(),
+                                              procedure.getName(),
+                                              procedure.getParameters().size());
+    }
+
     protected List<String> generateCheckRequiredFields()
     {
         // Get the fields which must be non-null, i.e. all @Import fields and all arrays of locals.
@@ -33,7 +33,6 @@ import java.util.List;
 import java.util.Set;
 
 import org.paninij.proc.model.Procedure;
-import org.paninij.proc.model.Type;
 import org.paninij.proc.model.Variable;
 import org.paninij.proc.util.MessageShape;
 import org.paninij.proc.util.PaniniModel;
@@ -138,7 +137,7 @@ public class CapsuleSerialFactory extends CapsuleProfileFactory
                 this.generateProcedureDecl(shape),
                 shape.kindAnnotation);
 
-        return Source.formatAlignedFirst(source, this.generateEncapsulatedMethodCall(shape));
+        return Source.formatAlignedFirst(source, this.generateDirectCall(shape));
     }
 
     @Override
@@ -148,6 +147,10 @@ public class CapsuleSerialFactory extends CapsuleProfileFactory
         source = Source.lines(
                 "@Override",
                 "public void #0(EventExecution<#2> ex, #1) {",
+                "    if (panini$terminated) {",
+                "        ex.panini$markTerminated();",
+                "        return;",
+                "    }",
                 "    panini$encapsulated.#0(#3);",
                 "    ex.panini$markComplete();",
                 "}",
@@ -158,51 +161,12 @@ public class CapsuleSerialFactory extends CapsuleProfileFactory
         source = Source.formatAll(source,
                 handler.getName(),
                 argDeclString,
-                param.getMirror().toString(),
+                handler.getAnnouncedType(),
                 param.getIdentifier());
 
         return source;
     }
 
-    private List<String> generateEncapsulatedMethodCall(MessageShape shape)
-    {
-        List<String> encap = new ArrayList<>();
-        List<String> argNames = this.generateProcArgumentNames(shape.procedure);
-        String args = String.join(", ", argNames);
-        String call = "panini$encapsulated." + shape.procedure.getName() + "(" + args + ")";
-        switch(shape.behavior) {
-        case UNBLOCKED_DUCK:
-        case BLOCKED_FUTURE:
-            String ret = shape.returnType.isVoid() ? "" : "return ";
-            encap.add(ret + call + ";");
-            return encap;
-        case UNBLOCKED_PREMADE:
-        case BLOCKED_PREMADE:
-            encap.add("return " + call + ";");
-            return encap;
-        case UNBLOCKED_FUTURE:
-            argNames.add(0, "-1");
-            args = String.join(", ", argNames);
-            encap.add(shape.encoded + " msg = new " + shape.encoded + "(" + args + ");");
-            Type r = shape.procedure.getReturnType();
-            if (r.isVoid()) {
-                encap.add(call + ";");
-                encap.add("msg.panini$resolve(null);");
-            } else {
-                encap.add(r.wrapped() + " result = " + call + ";");
-                encap.add("msg.panini$resolve(result);");
-            }
-            encap.add("return msg;");
-            return encap;
-        case UNBLOCKED_SIMPLE:
-            encap.add(call + ";");
-            return encap;
-        case ERROR:
-        default:
-            throw new IllegalArgumentException("Bad MessageShape behavior");
-        }
-    }
-
     private List<String> generateProcedures()
     {
         ArrayList<String> src = new ArrayList<>();
@@ -221,20 +185,18 @@ public class CapsuleSerialFactory extends CapsuleProfileFactory
             if (local.isArray()) {
                 List<String> lines = Source.lines(
                         "for (int i = 0; i < panini$encapsulated.#0.length; i++) {",
-                        "    panini$encapsulated.#0[i] = new #1#2();",
+                        "    panini$encapsulated.#0[i] = #1;",
                         "}",
                         "");
                 source.addAll(Source.formatAll(
                         lines,
                         local.getIdentifier(),
-                        local.getEncapsulatedType(),
-                        CAPSULE_PROFILE_SERIAL_SUFFIX));
+                        this.generateLocalInstance(local.getEncapsulatedType(), CAPSULE_PROFILE_SERIAL_SUFFIX)));
             } else {
                 source.add(Source.format(
-                        "panini$encapsulated.#0 = new #1#2();",
+                        "panini$encapsulated.#0 = #1;",
                         local.getIdentifier(),
-                        local.raw(),
-                        CAPSULE_PROFILE_SERIAL_SUFFIX));
+                        this.generateLocalInstance(local, CAPSULE_PROFILE_SERIAL_SUFFIX)));
             }
         }
 
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * This file is part of the Panini project at Iowa State University.
+ *
+ * @PaniniJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * @PaniniJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with @PaniniJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more details and the latest version of this code please see
+ * http://paninij.org
+ *
+ * Contributors:
+ * 	Dr. Hridesh Rajan,
+ * 	Dalton Mills,
+ * 	David Johnston,
+ * 	Trey Erenberger
+ *  Jackson Maddox
+ *******************************************************************************/
+
+package org.paninij.proc.factory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.paninij.proc.model.Procedure;
+import org.paninij.proc.model.Variable;
+import org.paninij.proc.util.MessageShape;
+import org.paninij.proc.util.Source;
+
+/**
+ * Generates the router of a `@Sharded` capsule. It implements the capsule's interface by sending
+ * each procedure call on to one of the capsule's shards, which are given to its constructor.
+ */
+public class CapsuleShardedFactory extends CapsuleProfileFactory
+{
+    public static final String CAPSULE_SHARDED_SUFFIX = "$Sharded";
+
+    @Override
+    protected String getQualifiedName()
+    {
+        return this.capsule.getQualifiedName() + CAPSULE_SHARDED_SUFFIX;
+    }
+
+    @Override
+    protected String generateContent()
+    {
+        String src = Source.cat(
+                "package #0;",
+                "",
+                "##",
+                "",
+                "#1",
+                "@SuppressWarnings(\"unused\")",  // To suppress unused import warnings.
+                "public class #2 extends Capsule$Sharded implements #3",
+                "{",
+                "    public #2(#3... shards)",
+                "    {",
+                "        super(shards);",
+                "    }",
+                "",
+                "    ##",
+                "}");
+
+        src = Source.format(src,
+                this.capsule.getPackage(),
+                ArtifactFactory.getGeneratedAnno(CapsuleShardedFactory.class),
+                this.generateClassName(),
+                this.capsule.getSimpleName());
+
+        src = Source.formatAligned(src, this.generateImports());
+        src = Source.formatAligned(src, this.generateCapsuleBody());
+
+        return src;
+    }
+
+    @Override
+    protected String generateClassName()
+    {
+        return this.capsule.getSimpleName() + CAPSULE_SHARDED_SUFFIX;
+    }
+
+    private List<String> generateImports()
+    {
+        Set<String> imports = new HashSet<>();
+
+        for (Procedure p : this.capsule.getProcedures()) {
+            MessageShape shape = new MessageShape(p);
+            imports.add(shape.fullLocation());
+        }
+
+        imports.addAll(this.capsule.getImports());
+
+        imports.add("javax.annotation.Generated");
+        imports.add("java.util.concurrent.Future");
+        imports.add("org.paninij.runtime.Capsule$Sharded");
+        imports.add("org.paninij.runtime.Panini$Capsule");
+        imports.add(this.capsule.getQualifiedName());
+
+        List<String> prefixedImports = new ArrayList<>();
+
+        for (String i : imports) {
+            prefixedImports.add("import " + i + ";");
+        }
+
+        return prefixedImports;
+    }
+
+    private List<String> generateCapsuleBody()
+    {
+        List<String> src = new ArrayList<>();
+        for (Procedure p : this.capsule.getProcedures()) {
+            src.addAll(this.generateProcedure(p));
+        }
+        src.addAll(this.generateExport());
+        return src;
+    }
+
+    /**
+     * A procedure with a `@ShardKey` parameter is sent to the shard of its key, and an `@AnyShard`
+     * procedure to the least loaded shard.
+     */
+    @Override
+    protected List<String> generateProcedure(Procedure procedure)
+    {
+        MessageShape shape = new MessageShape(procedure);
+        String key = procedure.getShardKey();
+        String shard = (key == null)
+                ? "panini$leastLoaded()"
+                : Source.format("panini$shardOf(#0)", key);
+
+        List<String> source = Source.lines(
+                "#0",
+                "@Override",
+                "#1",
+                "{",
+                "    #2((#3) panini$shards[#4]).#5(#6);",
+                "}",
+                "");
+
+        return Source.formatAll(source,
+                shape.kindAnnotation,
+                this.generateProcedureDecl(shape),
+                shape.realReturn.equals("void") ? "" : "return ",
+                this.capsule.getSimpleName(),
+                shard,
+                procedure.getName(),
+                String.join(", ", this.generateProcArgumentNames(procedure)));
+    }
+
+    /**
+     * Every shard is given the same imports.
+     */
+    @Override
+    protected List<String> generateExport()
+    {
+        List<Variable> imported = this.capsule.getImportFields();
+        if (imported.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> decls = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Variable var : imported) {
+            decls.add(var.toString());
+            names.add(var.getIdentifier());
+        }
+
+        List<String> src = Source.lines(
+                "@Override",
+                "public void imports(#0) {",
+                "    for (Panini$Capsule shard : panini$shards) {",
+                "        ((#1) shard).imports(#2);",
+                "    }",
+                "}",
+                "");
+
+        return Source.formatAll(src,
+                String.join(", ", decls),
+                this.capsule.getSimpleName(),
+                String.join(", ", names));
+    }
+}
@@ -32,22 +32,50 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.paninij.proc.model.Behavior;
 import org.paninij.proc.model.Procedure;
 import org.paninij.proc.model.Type;
 import org.paninij.proc.model.Variable;
 import org.paninij.proc.util.MessageShape;
 import org.paninij.proc.util.PaniniModel;
 import org.paninij.proc.util.Source;
+import org.paninij.runtime.check.DynamicOwnershipTransfer;
+import org.paninij.runtime.check.TransferManifest;
 
 public class CapsuleTaskFactory extends CapsuleProfileFactory
 {
     public static final String CAPSULE_PROFILE_TASK_SUFFIX = "$Task";
 
+    /**
+     * The suffix of the generated class, and the runtime class which it extends. These differ for
+     * profiles which are variations of `TASK`, e.g. `ADAPTIVE`.
+     */
+    private final String suffix;
+    private final String runtimeClass;
+
+    public CapsuleTaskFactory()
+    {
+        this(new TransferManifest(), DynamicOwnershipTransfer.Kind.getDefault());
+    }
+
+    public CapsuleTaskFactory(TransferManifest transferManifest,
+                              DynamicOwnershipTransfer.Kind ownershipCheck)
+    {
+        this(transferManifest, ownershipCheck, CAPSULE_PROFILE_TASK_SUFFIX, "Capsule$Task");
+    }
+
+    protected CapsuleTaskFactory(TransferManifest transferManifest,
+                                 DynamicOwnershipTransfer.Kind ownershipCheck, String suffix,
+                                 String runtimeClass)
+    {
+        super(transferManifest, ownershipCheck);
+        this.suffix = suffix;
+        this.runtimeClass = runtimeClass;
+    }
+
     @Override
     protected String getQualifiedName()
     {
-        return this.capsule.getQualifiedName() + CAPSULE_PROFILE_TASK_SUFFIX;
+        return this.capsule.getQualifiedName() + this.suffix;
     }
 
     @Override
@@ -60,16 +88,17 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
                 "",
                 "#1",
                 "@SuppressWarnings(\"unused\")",  // To suppress unused import warnings.
-                "public class #2 extends Capsule$Task implements #3",
+                "public class #2 extends #4 implements #3",
                 "{",
                 "    ##",
                 "}");
 
         src = Source.format(src,
                 this.capsule.getPackage(),
-                ArtifactFactory.getGeneratedAnno(CapsuleTaskFactory.class),
+                ArtifactFactory.getGeneratedAnno(this.getClass()),
                 this.generateClassName(),
-                this.capsule.getSimpleName());
+                this.capsule.getSimpleName(),
+                this.runtimeClass);
 
         src = Source.formatAligned(src, generateImports());
         src = Source.formatAligned(src, generateCapsuleBody());
@@ -80,7 +109,7 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
     @Override
     protected String generateClassName()
     {
-        return this.capsule.getSimpleName() + CAPSULE_PROFILE_TASK_SUFFIX;
+        return this.capsule.getSimpleName() + this.suffix;
     }
 
     private List<String> generateImports()
@@ -97,12 +126,16 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
         imports.add("javax.annotation.Generated");
         imports.add("java.util.concurrent.Future");
         imports.add("org.paninij.lang.EventExecution");
+        imports.add("org.paninij.runtime.BatchEventMessage");
         imports.add("org.paninij.runtime.EventMessage");
-        imports.add("org.paninij.runtime.Capsule$Task");
+        imports.add("org.paninij.runtime.CoalescedMessage");
+        imports.add("org.paninij.runtime." + this.runtimeClass);
         imports.add("org.paninij.runtime.Panini$Capsule");
         imports.add("org.paninij.runtime.Panini$Message");
+        imports.add("org.paninij.runtime.Panini$Outbox");
         imports.add("org.paninij.runtime.Panini$Future");
         imports.add("org.paninij.runtime.Panini$System");
+        imports.add("org.paninij.runtime.check.DynamicOwnershipTransfer");
         imports.add(this.capsule.getQualifiedName());
 
         List<String> prefixedImports = new ArrayList<String>();
@@ -139,35 +172,6 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
         return decls;
     }
 
-    @Override
-    protected List<String> generateProcedure(Procedure procedure) {
-        MessageShape shape = new MessageShape(procedure);
-        String doBlock = shape.behavior == Behavior.BLOCKED_FUTURE || shape.behavior == Behavior.BLOCKED_PREMADE ? "panini$emptyQueue();" : "";
-        String encoding = PaniniModel.isPaniniCustom(shape.returnType.getMirror()) ? shape.returnType.raw() : shape.encoded;
-        
-        List<String> source = Source.lines(
-                "#6",
-                "@Override",
-                "#0",
-                "{",
-                "    #1 panini$message = null;",
-                "    panini$message = new #1(#2);",
-                "    #3;",
-                "    panini$push(panini$message);",
-                "    #4",
-                "    #5",
-                "}",
-                "");
-        return Source.formatAll(source,
-                this.generateProcedureDecl(shape),
-                encoding,
-                this.generateProcedureArguments(shape),
-                this.generateAssertSafeInvocationTransfer(),
-                doBlock,
-                this.generateProcedureReturn(shape),
-                shape.kindAnnotation);
-    }
-
     private List<String> generateProcedures()
     {
         ArrayList<String> src = new ArrayList<String>();
@@ -186,20 +190,18 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
             if (local.isArray()) {
                 List<String> lines = Source.lines(
                         "for (int i = 0; i < panini$encapsulated.#0.length; i++) {",
-                        "    panini$encapsulated.#0[i] = new #1#2();",
+                        "    panini$encapsulated.#0[i] = #1;",
                         "}",
                         "");
                 source.addAll(Source.formatAll(
                         lines,
                         local.getIdentifier(),
-                        local.getEncapsulatedType(),
-                        CAPSULE_PROFILE_TASK_SUFFIX));
+                        this.generateLocalInstance(local.getEncapsulatedType(), this.suffix)));
             } else {
                 source.add(Source.format(
-                        "panini$encapsulated.#0 = new #1#2();",
+                        "panini$encapsulated.#0 = #1;",
                         local.getIdentifier(),
-                        local.raw(),
-                        CAPSULE_PROFILE_TASK_SUFFIX));
+                        this.generateLocalInstance(local, this.suffix)));
             }
         }
 
@@ -286,7 +288,7 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
                     "    return false;",
                     "}",
                     "");
-            return Source.formatAlignedFirst(src, generateRunSwitch());
+            return Source.formatAlignedFirst(src, generateWriteLocked(generateRunSwitch()));
         }
 
     }
@@ -318,6 +320,10 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
 
     private List<String> generateRunSwitchCase(Procedure procedure)
     {
+        if (procedure.isCoalesced()) {
+            return this.generateRunCoalescedCase(procedure);
+        }
+
         MessageShape shape = new MessageShape(procedure);
 
         // `duck` will need to be resolved if and only if `procedure` has a return value.
@@ -357,21 +363,32 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
                     this.generateProcedureID(procedure),
                     procedure.getReturnType().wrapped(),
                     this.generateEncapsulatedMethodCall(shape),
-                    this.generateAssertSafeResultTransfer());
+                    this.generateAssertSafeResultTransfer(procedure));
         }
     }
 
     private List<String> generateRunHandlerSwitchCase(Procedure p) {
-        List<String> list = Source.lines(
-                "case #0: {",
-                "EventMessage<#1> em = (EventMessage<#1>) msg;",
-                "    panini$encapsulated.#2(em.arg0);",
-                "    em.ex.panini$markComplete();",
-                "    break;",
-                "}");
+        List<String> list = null;
+        if (p.isBatchHandler()) {
+            list = Source.lines(
+                    "case #0: {",
+                    "    BatchEventMessage<#1> em = (BatchEventMessage<#1>) msg;",
+                    "    panini$encapsulated.#2(em.args);",
+                    "    em.ex.panini$markComplete();",
+                    "    break;",
+                    "}");
+        } else {
+            list = Source.lines(
+                    "case #0: {",
+                    "EventMessage<#1> em = (EventMessage<#1>) msg;",
+                    "    panini$encapsulated.#2(em.arg0);",
+                    "    em.ex.panini$markComplete();",
+                    "    break;",
+                    "}");
+        }
         return Source.formatAll(list,
                 generateProcedureID(p),
-                p.getParameters().get(0).getMirror().toString(),
+                p.getAnnouncedType(),
                 p.getName());
     }
 
@@ -405,17 +422,10 @@ public class CapsuleTaskFactory extends CapsuleProfileFactory
                 String.join(", ", args));
     }
 
-    private String generateAssertSafeResultTransfer()
+    @Override
+    protected boolean enablesReaders()
     {
-        /*
-        return Source.format(
-                "assert Panini$Ownership.#0.isSafeTransfer(#1, #2) : #3",
-                PaniniProcessor.ownershipCheckMethod,
-                "result",
-                "panini$getAllState()",
-                "\"Procedure return attempted unsafe ownership transfer.\"");
-        */
-        return "";
+        return this.hasReadOnlyProcedures();
     }
 
     private List<String> generateCapsuleBody()
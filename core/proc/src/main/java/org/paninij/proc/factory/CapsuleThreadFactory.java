@@ -32,17 +32,31 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.paninij.lang.WaitStrategy;
 import org.paninij.proc.model.Procedure;
 import org.paninij.proc.model.Type;
 import org.paninij.proc.model.Variable;
 import org.paninij.proc.util.MessageShape;
 import org.paninij.proc.util.PaniniModel;
 import org.paninij.proc.util.Source;
+import org.paninij.runtime.check.DynamicOwnershipTransfer;
+import org.paninij.runtime.check.TransferManifest;
 
 public class CapsuleThreadFactory extends CapsuleProfileFactory
 {
     public static final String CAPSULE_PROFILE_THREAD_SUFFIX = "$Thread";
 
+    public CapsuleThreadFactory()
+    {
+        super();
+    }
+
+    public CapsuleThreadFactory(TransferManifest transferManifest,
+                                DynamicOwnershipTransfer.Kind ownershipCheck)
+    {
+        super(transferManifest, ownershipCheck);
+    }
+
     @Override
     protected String getQualifiedName()
     {
@@ -98,10 +112,14 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
         imports.add("java.util.concurrent.Future");
         imports.add("org.paninij.lang.CapsuleThread");
         imports.add("org.paninij.lang.EventExecution");
+        imports.add("org.paninij.lang.WaitStrategy");
+        imports.add("org.paninij.runtime.BatchEventMessage");
         imports.add("org.paninij.runtime.EventMessage");
+        imports.add("org.paninij.runtime.CoalescedMessage");
         imports.add("org.paninij.runtime.Capsule$Thread");
         imports.add("org.paninij.runtime.Panini$Capsule");
         imports.add("org.paninij.runtime.Panini$Message");
+        imports.add("org.paninij.runtime.Panini$Outbox");
         imports.add("org.paninij.runtime.Panini$Future");
         imports.add("org.paninij.runtime.Panini$System");
         imports.add("org.paninij.runtime.check.DynamicOwnershipTransfer");
@@ -159,20 +177,18 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
             if (local.isArray()) {
                 List<String> lines = Source.lines(
                         "for (int i = 0; i < panini$encapsulated.#0.length; i++) {",
-                        "    panini$encapsulated.#0[i] = new #1#2();",
+                        "    panini$encapsulated.#0[i] = #1;",
                         "}",
                         "");
                 source.addAll(Source.formatAll(
                         lines,
                         local.getIdentifier(),
-                        local.getEncapsulatedType(),
-                        CAPSULE_PROFILE_THREAD_SUFFIX));
+                        this.generateLocalInstance(local.getEncapsulatedType(), CAPSULE_PROFILE_THREAD_SUFFIX)));
             } else {
                 source.add(Source.format(
-                        "panini$encapsulated.#0 = new #1#2();",
+                        "panini$encapsulated.#0 = #1;",
                         local.getIdentifier(),
-                        local.raw(),
-                        CAPSULE_PROFILE_THREAD_SUFFIX));
+                        this.generateLocalInstance(local, CAPSULE_PROFILE_THREAD_SUFFIX)));
             }
         }
 
@@ -258,8 +274,10 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
                 "        panini$initLocals();",
                 "        panini$initState();",
                 "",
+                "        Panini$Outbox.open();",
                 "        boolean terminated = false;",
                 "        while (!terminated) {",
+                "            Panini$Outbox.flushIfDue(panini$isEmpty());",
                 "            Panini$Message msg = panini$nextMessage();",
                 "            ##",
                 "        }",
@@ -267,6 +285,7 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
                 "        panini$errors.add(thrown);",
                 "        thrown.printStackTrace();",
                 "    }",
+                "    Panini$Outbox.close();",
                 "    try {",
                 "       Panini$System.threads.countDown();",
                 "    } catch (InterruptedException e) {",
@@ -275,7 +294,7 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
                 "}",
                 "");
 
-        return Source.formatAlignedFirst(src, generateRunSwitch());
+        return Source.formatAlignedFirst(src, generateWriteLocked(generateRunSwitch()));
     }
 
     private List<String> generateRunSwitch()
@@ -306,6 +325,10 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
 
     private List<String> generateRunSwitchCase(Procedure procedure)
     {
+        if (procedure.isCoalesced()) {
+            return this.generateRunCoalescedCase(procedure);
+        }
+
         MessageShape shape = new MessageShape(procedure);
 
         // `duck` will need to be resolved if and only if `procedure` has a return value.
@@ -345,21 +368,32 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
                     this.generateProcedureID(procedure),
                     procedure.getReturnType().wrapped(),
                     this.generateEncapsulatedMethodCall(shape),
-                    this.generateAssertSafeResultTransfer());
+                    this.generateAssertSafeResultTransfer(procedure));
         }
     }
 
     private List<String> generateRunHandlerSwitchCase(Procedure p) {
-        List<String> list = Source.lines(
-                "case #0: {",
-                "    EventMessage<#1> em = (EventMessage<#1>) msg;",
-                "    panini$encapsulated.#2(em.arg0);",
-                "    em.ex.panini$markComplete();",
-                "    break;",
-                "}");
+        List<String> list = null;
+        if (p.isBatchHandler()) {
+            list = Source.lines(
+                    "case #0: {",
+                    "    BatchEventMessage<#1> em = (BatchEventMessage<#1>) msg;",
+                    "    panini$encapsulated.#2(em.args);",
+                    "    em.ex.panini$markComplete();",
+                    "    break;",
+                    "}");
+        } else {
+            list = Source.lines(
+                    "case #0: {",
+                    "    EventMessage<#1> em = (EventMessage<#1>) msg;",
+                    "    panini$encapsulated.#2(em.arg0);",
+                    "    em.ex.panini$markComplete();",
+                    "    break;",
+                    "}");
+        }
         return Source.formatAll(list,
                 generateProcedureID(p),
-                p.getParameters().get(0).getMirror().toString(),
+                p.getAnnouncedType(),
                 p.getName());
     }
     
@@ -393,18 +427,25 @@ public class CapsuleThreadFactory extends CapsuleProfileFactory
                 String.join(", ", args));
     }
 
-    private String generateAssertSafeResultTransfer()
+    @Override
+    protected boolean enablesReaders()
     {
-        // TODO: Clean this up!
-        /**
-        return Source.format(
-                "assert DynamicOwnershipTransfer.#0.isSafeTransfer(#1, #2) : #3",
-                PaniniProcessor.dynamicOwnershipTransferKind,
-                "result",
-                "panini$getAllState()",
-                "\"Procedure return attempted unsafe ownership transfer.\"");
-        */
-        return "";
+        return this.hasReadOnlyProcedures();
+    }
+
+    @Override
+    protected List<String> generateConstructorStatements()
+    {
+        List<String> src = super.generateConstructorStatements();
+        WaitStrategy wait = this.capsule.getWaitStrategy();
+        if (wait != null) {
+            src.add(Source.format(
+                    "panini$waitStrategy(WaitStrategy.Kind.#0, #1, #2);",
+                    wait.value().name(),
+                    wait.spins(),
+                    wait.yields()));
+        }
+        return src;
     }
 
     private List<String> generateCapsuleBody()
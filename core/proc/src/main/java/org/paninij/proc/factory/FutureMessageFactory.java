@@ -90,14 +90,22 @@ public class FutureMessageFactory extends AbstractMessageFactory
                 "",
                 "    @Override",
                 "    public #3 panini$get() {",
-                "        while (panini$isResolved == false) {",
+                "        if (panini$isResolved == false) {",
+                "            Panini$Outbox.flush();",
+                "            Panini$TaskPool.beginBlocking();",
                 "            try {",
-                "                synchronized (this) {",
-                "                    while (panini$isResolved == false) this.wait();",
+                "                while (panini$isResolved == false) {",
+                "                    try {",
+                "                        synchronized (this) {",
+                "                            while (panini$isResolved == false) this.wait();",
+                "                        }",
+                "                    } catch (InterruptedException e) { /* try waiting again */ }",
                 "                }",
-                "            } catch (InterruptedException e) { /* try waiting again */ }",
-                "         }",
-                "         return panini$result;",
+                "            } finally {",
+                "                Panini$TaskPool.endBlocking();",
+                "            }",
+                "        }",
+                "        return panini$result;",
                 "    }",
                 "",
                 "    @Override",
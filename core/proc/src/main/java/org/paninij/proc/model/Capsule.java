@@ -29,6 +29,8 @@ package org.paninij.proc.model;
 
 import java.util.List;
 
+import org.paninij.lang.WaitStrategy;
+
 public interface Capsule extends Signature
 {
     public List<Procedure> getEventHandlers();
@@ -36,9 +38,12 @@ public interface Capsule extends Signature
     public List<Variable> getImportFields();
     public List<Variable> getBroadcastEventFields();
     public List<Variable> getChainEventFields();
+    public List<Variable> getPipelineEventFields();
     public List<Variable> getStateFields();
     public List<String> getSignatures();
     public boolean isRoot();
+    public int getShards();
+    public WaitStrategy getWaitStrategy();
     public boolean hasInit();
     public boolean hasRun();
     public boolean hasDesign();
@@ -40,6 +40,7 @@ import org.paninij.lang.Local;
 import org.paninij.lang.Event;
 
 import org.paninij.lang.Broadcast;
+import org.paninij.lang.Chain;
 import org.paninij.lang.Imported;
 
 /**
@@ -83,9 +84,13 @@ public class CapsuleCoreVisitor extends SimpleElementVisitor8<CapsuleElement, Ca
         } else if (e.getAnnotation(Imported.class) != null) {
             capsule.addImportDecl(variable);
         } else if (eventName.equals(fullTypeName)) {
+            Chain chain = e.getAnnotation(Chain.class);
             if (e.getAnnotation(Broadcast.class) != null) {
                 capsule.addBroadcastEvent(variable);
             }
+            else if (chain != null && chain.pipelined()) {
+                capsule.addPipelineEvent(variable);
+            }
             else { // Assume chain event by default
                 capsule.addChainEvent(variable);
             }
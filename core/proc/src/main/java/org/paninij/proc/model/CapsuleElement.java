@@ -39,6 +39,8 @@ import javax.lang.model.type.TypeMirror;
 
 import org.paninij.lang.Handler;
 import org.paninij.lang.Root;
+import org.paninij.lang.Sharded;
+import org.paninij.lang.WaitStrategy;
 import org.paninij.proc.util.PaniniModel;
 import org.paninij.proc.util.TypeCollector;
 
@@ -54,6 +56,7 @@ public class CapsuleElement implements Capsule
     private ArrayList<Variable> importFields;
     private ArrayList<Variable> broadcastEventFields;
     private ArrayList<Variable> chainEventFields;
+    private ArrayList<Variable> pipelineEventFields;
 
     private ArrayList<Variable> state;
 
@@ -85,6 +88,7 @@ public class CapsuleElement implements Capsule
         this.importFields = new ArrayList<Variable>();
         this.broadcastEventFields = new ArrayList<Variable>();
         this.chainEventFields = new ArrayList<Variable>();
+        this.pipelineEventFields = new ArrayList<Variable>();
         this.state = new ArrayList<Variable>();
         this.imports = new HashSet<String>();
         this.hasInitDecl = false;
@@ -112,6 +116,11 @@ public class CapsuleElement implements Capsule
         return new ArrayList<Variable>(this.chainEventFields);
     }
 
+    @Override
+    public List<Variable> getPipelineEventFields() {
+        return new ArrayList<Variable>(this.pipelineEventFields);
+    }
+
     @Override
     public List<Variable> getStateFields() {
         return new ArrayList<Variable>(this.state);
@@ -133,6 +142,10 @@ public class CapsuleElement implements Capsule
         this.chainEventFields.add(v);
     }
 
+    public void addPipelineEvent(Variable v) {
+        this.pipelineEventFields.add(v);
+    }
+
     public void addState(Variable v) {
         this.state.add(v);
     }
@@ -186,6 +199,17 @@ public class CapsuleElement implements Capsule
         return this.element.getAnnotation(Root.class) != null;
     }
 
+    @Override
+    public int getShards() {
+        Sharded sharded = this.element.getAnnotation(Sharded.class);
+        return (sharded == null) ? 0 : sharded.value();
+    }
+
+    @Override
+    public WaitStrategy getWaitStrategy() {
+        return this.element.getAnnotation(WaitStrategy.class);
+    }
+
     @Override
     public boolean hasInit() {
         return this.hasInitDecl;
@@ -34,6 +34,14 @@ public interface Procedure
     public abstract AnnotationKind getAnnotationKind();
     public abstract Type getReturnType();
     public abstract List<Variable> getParameters();
+    public abstract boolean isTransfer();
     public abstract List<String> getModifiers();
     public abstract List<String> getThrown();
+    public abstract boolean isBatchHandler();
+    public abstract String getAnnouncedType();
+    public abstract int getPriority();
+    public abstract long getDeadline();
+    public abstract boolean isCoalesced();
+    public abstract boolean isReadOnly();
+    public abstract String getShardKey();
 }
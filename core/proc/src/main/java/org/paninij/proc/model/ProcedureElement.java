@@ -33,11 +33,19 @@ import java.util.List;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 
 import org.paninij.lang.Block;
+import org.paninij.lang.Coalesce;
+import org.paninij.lang.Deadline;
 import org.paninij.lang.Duck;
 import org.paninij.lang.Future;
+import org.paninij.lang.Handler;
+import org.paninij.lang.Priority;
+import org.paninij.lang.ReadOnly;
+import org.paninij.lang.ShardKey;
+import org.paninij.lang.Transfer;
 
 public class ProcedureElement implements Procedure
 {
@@ -101,6 +109,59 @@ public class ProcedureElement implements Procedure
         return this.parameters;
     }
 
+    @Override
+    public boolean isTransfer() {
+        return this.element.getAnnotation(Transfer.class) != null;
+    }
+
+    @Override
+    public boolean isBatchHandler() {
+        Handler handler = this.element.getAnnotation(Handler.class);
+        return handler != null && handler.batch();
+    }
+
+    @Override
+    public String getAnnouncedType() {
+        TypeMirror param = this.element.getParameters().get(0).asType();
+        if (this.isBatchHandler()) {
+            // The parameter of a batch handler is a `List` of the announced type.
+            return ((DeclaredType) param).getTypeArguments().get(0).toString();
+        }
+        return param.toString();
+    }
+
+    @Override
+    public int getPriority() {
+        Priority priority = this.element.getAnnotation(Priority.class);
+        return (priority == null) ? 0 : priority.value();
+    }
+
+    @Override
+    public long getDeadline() {
+        Deadline deadline = this.element.getAnnotation(Deadline.class);
+        return (deadline == null) ? 0 : deadline.value();
+    }
+
+    @Override
+    public boolean isCoalesced() {
+        return this.element.getAnnotation(Coalesce.class) != null;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return this.element.getAnnotation(ReadOnly.class) != null;
+    }
+
+    @Override
+    public String getShardKey() {
+        for (VariableElement param : this.element.getParameters()) {
+            if (param.getAnnotation(ShardKey.class) != null) {
+                return param.toString();
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         String str = this.getReturnType() + " " + this.getName() + "(";
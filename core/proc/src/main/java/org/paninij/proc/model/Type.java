@@ -33,6 +33,7 @@ import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
+import org.paninij.lang.Sharded;
 import org.paninij.proc.util.JavaModel;
 import org.paninij.proc.util.PaniniModel;
 
@@ -290,6 +291,18 @@ public class Type
         return false;
     }
 
+    /**
+     * @return The number of shards of this capsule type (i.e. of its capsule interface), or 0 if
+     *         it is not `@Sharded`.
+     */
+    public int getShards() {
+        if (this.kind == TypeKind.DECLARED) {
+            Sharded sharded = ((DeclaredType) this.mirror).asElement().getAnnotation(Sharded.class);
+            return (sharded == null) ? 0 : sharded.value();
+        }
+        return 0;
+    }
+
     public boolean isCapsule() {
         // TODO checking if the type is actually a capsule.
         // If a capsule has already been compiled, this method will fail!
@@ -286,7 +286,7 @@ public class PaniniModel
     public static boolean isImportFieldDecl(ProcessingEnvironment context, Element elem)
     {
         return elem.getKind() == ElementKind.FIELD
-            && JavaModel.isAnnotatedBy(context, elem, "org.paninij.lang.Import");
+            && JavaModel.isAnnotatedBy(context, elem, "org.paninij.lang.Imported");
     }
 
 
@@ -0,0 +1,18 @@
+package org.paninij.proc.check.capsule.events;
+
+import java.util.List;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Handler;
+
+@Capsule
+class BatchHandlerCore
+{
+    @Handler void handler(String arg) {
+        // Nothing to do here.
+    }
+
+    @Handler(batch = true) void batchHandler(List<String> args) {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,12 @@
+package org.paninij.proc.check.capsule.events;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Handler;
+
+@Capsule
+class BatchHandlerNotListCore
+{
+    @Handler(batch = true) void handler(String arg) {
+        // Nothing to do here.
+    }
+}
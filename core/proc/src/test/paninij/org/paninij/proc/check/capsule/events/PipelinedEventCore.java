@@ -0,0 +1,11 @@
+package org.paninij.proc.check.capsule.events;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Chain;
+import org.paninij.lang.Event;
+
+@Capsule
+class PipelinedEventCore
+{
+    @Chain(pipelined = true) Event<String> event;
+}
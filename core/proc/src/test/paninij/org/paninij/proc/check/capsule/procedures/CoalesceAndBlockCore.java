@@ -0,0 +1,13 @@
+package org.paninij.proc.check.capsule.procedures;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Coalesce;
+
+@Capsule
+class CoalesceAndBlockCore {
+    @Coalesce @Block
+    void methodA() {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,22 @@
+package org.paninij.proc.check.capsule.procedures;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Coalesce;
+
+@Capsule
+class CoalescedProceduresCore {
+    long count;
+    int x;
+    String label;
+
+    @Coalesce
+    void bump() {
+        count++;
+    }
+
+    @Coalesce
+    void set(int x, String label) {
+        this.x = x;
+        this.label = label;
+    }
+}
@@ -0,0 +1,28 @@
+package org.paninij.proc.check.capsule.procedures;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Deadline;
+import org.paninij.lang.Priority;
+
+@Capsule
+class PrioritizedProceduresCore {
+    @Priority(Priority.MAX)
+    void urgent() {
+        // Nothing to do here.
+    }
+
+    @Block @Priority(2)
+    int query() {
+        return 0;
+    }
+
+    @Deadline(50)
+    void soon() {
+        // Nothing to do here.
+    }
+
+    void bulk() {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,13 @@
+package org.paninij.proc.check.capsule.procedures;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Deadline;
+import org.paninij.lang.Priority;
+
+@Capsule
+class PriorityAndDeadlineCore {
+    @Priority(1) @Deadline(10)
+    void methodA() {
+        // Nothing to do here.
+    }
+}
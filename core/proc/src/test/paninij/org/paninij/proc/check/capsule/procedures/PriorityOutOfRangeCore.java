@@ -0,0 +1,12 @@
+package org.paninij.proc.check.capsule.procedures;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Priority;
+
+@Capsule
+class PriorityOutOfRangeCore {
+    @Priority(Priority.MAX + 1)
+    void methodA() {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,17 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class AliasWritingCore {
+    int[] hits = new int[1];
+
+    @ReadOnly @Block
+    public int lookup(int key) {
+        int[] h = hits;
+        h[0]++;
+        return key;
+    }
+}
@@ -0,0 +1,19 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class CachingLookupCore {
+    Map<Integer, Integer> cache = new HashMap<>();
+
+    @ReadOnly @Block
+    public int lookup(int key) {
+        cache.put(key, 1);
+        return key;
+    }
+}
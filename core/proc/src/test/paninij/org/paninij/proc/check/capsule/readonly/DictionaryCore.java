@@ -0,0 +1,57 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Future;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class DictionaryCore {
+    String[] keys = new String[64];
+    String[] values = new String[64];
+    int defined = 0;
+
+    @ReadOnly @Block
+    public String lookup(String key) {
+        String normal = normalize(key);
+        for (int i = 0; i < defined; i++) {
+            if (keys[i].equals(normal)) {
+                return values[i];
+            }
+        }
+        return "";
+    }
+
+    @ReadOnly @Future
+    public int size() {
+        return keys.length;
+    }
+
+    @ReadOnly @Block
+    public String longest() {
+        String best = "";
+        for (String key : keys) {
+            if (key != null && key.length() > best.length()) {
+                best = key;
+            }
+        }
+        return best;
+    }
+
+    @ReadOnly @Block
+    public int defined() {
+        int count = 0;
+        count += defined;
+        return count;
+    }
+
+    public void define(String key, String value) {
+        keys[defined] = normalize(key);
+        values[defined] = value;
+        defined++;
+    }
+
+    private String normalize(String key) {
+        return key.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,7 @@
+package org.paninij.proc.check.capsule.readonly;
+
+class Helper {
+    static void bump(ViaThisCore c) {
+        c.hits[1]++;
+    }
+}
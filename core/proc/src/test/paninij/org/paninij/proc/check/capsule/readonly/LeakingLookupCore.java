@@ -0,0 +1,18 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import java.util.Arrays;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class LeakingLookupCore {
+    int[] recent = new int[8];
+
+    @ReadOnly @Block
+    public int lookup(int key) {
+        Arrays.fill(recent, key);
+        return key;
+    }
+}
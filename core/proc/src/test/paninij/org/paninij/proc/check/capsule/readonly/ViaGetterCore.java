@@ -0,0 +1,21 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class ViaGetterCore {
+    int[] hits = new int[1];
+
+    @ReadOnly @Block
+    public int viaGetter() {
+        int[] h = hitsArray();
+        h[0]++;
+        return h[0];
+    }
+
+    private int[] hitsArray() {
+        return hits;
+    }
+}
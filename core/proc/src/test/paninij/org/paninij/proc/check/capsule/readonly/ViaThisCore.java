@@ -0,0 +1,16 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class ViaThisCore {
+    int[] hits = new int[2];
+
+    @ReadOnly @Block
+    public int viaThis() {
+        Helper.bump(this);
+        return hits[1];
+    }
+}
@@ -0,0 +1,20 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class WritingHelperCore {
+    int[] recent = new int[8];
+
+    @ReadOnly @Block
+    public int lookup(int key) {
+        remember(key);
+        return key;
+    }
+
+    private void remember(int key) {
+        recent[key % recent.length] = key;
+    }
+}
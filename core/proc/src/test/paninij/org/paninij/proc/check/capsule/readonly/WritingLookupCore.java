@@ -0,0 +1,16 @@
+package org.paninij.proc.check.capsule.readonly;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ReadOnly;
+
+@Capsule
+class WritingLookupCore {
+    int hits = 0;
+
+    @ReadOnly @Block
+    public int lookup(int key) {
+        this.hits++;
+        return key;
+    }
+}
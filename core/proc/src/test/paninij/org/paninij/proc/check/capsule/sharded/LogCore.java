@@ -0,0 +1,10 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+
+@Capsule
+class LogCore {
+    void write(String line) {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,11 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ShardKey;
+
+@Capsule
+class ShardKeyWithoutShardsCore {
+    void put(@ShardKey String key) {
+        // Nothing to do here.
+    }
+}
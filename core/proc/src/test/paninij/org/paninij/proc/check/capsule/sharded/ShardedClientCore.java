@@ -0,0 +1,26 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+import org.paninij.lang.Root;
+
+@Root
+@Capsule
+class ShardedClientCore {
+    @Local Log log;
+    @Local ShardedCounter counter;
+    @Local ShardedCounter[] counters = new ShardedCounter[2];
+
+    void design(ShardedClient self) {
+        counter.imports(log);
+        for (ShardedCounter c : counters) {
+            c.imports(log);
+        }
+    }
+
+    void run() {
+        counter.add("panini", 1);
+        counters[1].add("panini", counter.count("panini"));
+        counter.log("done");
+    }
+}
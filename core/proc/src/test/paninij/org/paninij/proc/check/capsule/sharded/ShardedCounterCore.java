@@ -0,0 +1,35 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.paninij.lang.AnyShard;
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Imported;
+import org.paninij.lang.ShardKey;
+import org.paninij.lang.Sharded;
+
+@Capsule
+@Sharded(4)
+class ShardedCounterCore {
+    @Imported Log log;
+
+    Map<String, Long> counts = new HashMap<String, Long>();
+
+    void add(@ShardKey String word, long n) {
+        Long count = counts.get(word);
+        counts.put(word, (count == null) ? n : count + n);
+    }
+
+    @Block
+    long count(@ShardKey String word) {
+        Long count = counts.get(word);
+        return (count == null) ? 0 : count;
+    }
+
+    @AnyShard
+    void log(String line) {
+        log.write(line);
+    }
+}
@@ -0,0 +1,14 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Root;
+import org.paninij.lang.Sharded;
+
+@Root
+@Capsule
+@Sharded(2)
+class ShardedRootCore {
+    void run() {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,14 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Handler;
+import org.paninij.lang.Sharded;
+
+@Capsule
+@Sharded(2)
+class ShardedWithHandlerCore {
+    @Handler
+    void onString(String s) {
+        // Nothing to do here.
+    }
+}
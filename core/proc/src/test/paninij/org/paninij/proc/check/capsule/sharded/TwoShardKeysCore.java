@@ -0,0 +1,13 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ShardKey;
+import org.paninij.lang.Sharded;
+
+@Capsule
+@Sharded(2)
+class TwoShardKeysCore {
+    void put(@ShardKey String a, @ShardKey String b) {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,19 @@
+package org.paninij.proc.check.capsule.sharded;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.ShardKey;
+import org.paninij.lang.Sharded;
+
+@Capsule
+@Sharded(2)
+class UnkeyedProcedureCore {
+    int total = 0;
+
+    void add(@ShardKey String key, int n) {
+        total += n;
+    }
+
+    void reset() {
+        total = 0;
+    }
+}
@@ -0,0 +1,21 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class KeepBeforeTransferCore
+{
+    @Local Sink sink;
+
+    List<int[]> kept = new ArrayList<>();
+
+    void send() {
+        int[] data = new int[8];
+        kept.add(data);
+        sink.take(data);
+    }
+}
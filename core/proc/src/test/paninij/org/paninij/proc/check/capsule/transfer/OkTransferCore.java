@@ -0,0 +1,46 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+import org.paninij.lang.Transfer;
+
+@Capsule
+class OkTransferCore
+{
+    @Local Sink sink;
+    @Local Sink[] sinks = new Sink[2];
+
+    int[] state = new int[8];
+
+    void sendFresh() {
+        sink.take(new int[8]);
+    }
+
+    void sendLocal() {
+        int[] data = new int[8];
+        data[0] = 42;
+        sink.takeBoth(data, "label: " + data.length);
+        data = new int[8];
+    }
+
+    void sendCopy() {
+        int[] data = new int[state.length];
+        for (int idx = 0; idx < data.length; idx++) {
+            data[idx] = state[idx];
+        }
+        sink.take(data);
+    }
+
+    void sendInLoop() {
+        for (int idx = 0; idx < sinks.length; idx++) {
+            int[] data = new int[8];
+            sinks[idx].take(data);
+        }
+    }
+
+    @Block @Transfer int[] make() {
+        int[] data = new int[8];
+        return data;
+    }
+}
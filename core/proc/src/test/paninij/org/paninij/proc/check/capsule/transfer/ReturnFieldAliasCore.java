@@ -0,0 +1,16 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Transfer;
+
+@Capsule
+class ReturnFieldAliasCore
+{
+    int[] data = new int[8];
+
+    @Block @Transfer int[] get() {
+        int[] result = data;
+        return result;
+    }
+}
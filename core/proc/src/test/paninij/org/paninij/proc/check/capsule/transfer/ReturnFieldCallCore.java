@@ -0,0 +1,18 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Transfer;
+
+@Capsule
+class ReturnFieldCallCore
+{
+    List<int[]> kept = new ArrayList<>();
+
+    @Block @Transfer int[] leak() {
+        return kept.get(0);
+    }
+}
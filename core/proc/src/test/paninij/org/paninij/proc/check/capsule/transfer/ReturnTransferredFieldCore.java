@@ -0,0 +1,15 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Block;
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Transfer;
+
+@Capsule
+class ReturnTransferredFieldCore
+{
+    int[] data = new int[8];
+
+    @Block @Transfer int[] get() {
+        return data;
+    }
+}
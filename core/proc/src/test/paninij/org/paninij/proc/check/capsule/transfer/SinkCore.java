@@ -0,0 +1,20 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Transfer;
+
+@Capsule
+class SinkCore
+{
+    void take(@Transfer int[] data) {
+        // Nothing to do here.
+    }
+
+    void takeBoth(@Transfer int[] data, String label) {
+        // Nothing to do here.
+    }
+
+    void takeTwo(@Transfer int[] first, @Transfer int[] second) {
+        // Nothing to do here.
+    }
+}
@@ -0,0 +1,10 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Signature;
+import org.paninij.lang.Transfer;
+
+@Signature
+interface SinkSignatureCore
+{
+    void take(@Transfer int[] data);
+}
@@ -0,0 +1,16 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferAliasCore
+{
+    @Local Sink sink;
+
+    void send() {
+        int[] data = new int[8];
+        int[] alias = data;
+        sink.take(data);
+    }
+}
@@ -0,0 +1,17 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferFieldAliasCore
+{
+    @Local Sink sink;
+
+    int[] data = new int[8];
+
+    void send() {
+        int[] local = data;
+        sink.take(local);
+    }
+}
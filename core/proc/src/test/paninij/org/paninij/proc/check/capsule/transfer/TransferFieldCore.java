@@ -0,0 +1,16 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferFieldCore
+{
+    @Local Sink sink;
+
+    int[] data = new int[8];
+
+    void send() {
+        sink.take(data);
+    }
+}
@@ -0,0 +1,20 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferFromFieldCallCore
+{
+    @Local Sink sink;
+
+    List<int[]> kept = new ArrayList<>();
+
+    void send() {
+        int[] data = kept.get(0);
+        sink.take(data);
+    }
+}
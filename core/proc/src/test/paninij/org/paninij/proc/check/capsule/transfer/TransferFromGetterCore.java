@@ -0,0 +1,21 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferFromGetterCore
+{
+    @Local Sink sink;
+
+    int[] state = new int[8];
+
+    void send() {
+        int[] data = self();
+        sink.take(data);
+    }
+
+    private int[] self() {
+        return state;
+    }
+}
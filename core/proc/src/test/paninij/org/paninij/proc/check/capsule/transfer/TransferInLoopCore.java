@@ -0,0 +1,17 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferInLoopCore
+{
+    @Local Sink sink;
+
+    void send() {
+        int[] data = new int[8];
+        for (int idx = 0; idx < 2; idx++) {
+            sink.take(data);
+        }
+    }
+}
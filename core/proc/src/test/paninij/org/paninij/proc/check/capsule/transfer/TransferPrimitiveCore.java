@@ -0,0 +1,12 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Transfer;
+
+@Capsule
+class TransferPrimitiveCore
+{
+    void take(@Transfer int value) {
+        // Nothing to do here.
+    }
+}
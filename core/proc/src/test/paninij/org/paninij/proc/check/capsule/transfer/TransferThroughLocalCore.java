@@ -0,0 +1,17 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferThroughLocalCore
+{
+    @Local Sink[] sinks = new Sink[2];
+
+    void send() {
+        Sink sink = sinks[0];
+        int[] data = new int[8];
+        sink.take(data);
+        data[0] = 42;
+    }
+}
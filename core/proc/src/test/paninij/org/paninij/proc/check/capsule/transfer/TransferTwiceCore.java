@@ -0,0 +1,15 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class TransferTwiceCore
+{
+    @Local Sink sink;
+
+    void send() {
+        int[] data = new int[8];
+        sink.takeTwo(data, data);
+    }
+}
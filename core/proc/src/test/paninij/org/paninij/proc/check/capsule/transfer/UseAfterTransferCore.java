@@ -0,0 +1,16 @@
+package org.paninij.proc.check.capsule.transfer;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.Local;
+
+@Capsule
+class UseAfterTransferCore
+{
+    @Local Sink sink;
+
+    void send() {
+        int[] data = new int[8];
+        sink.take(data);
+        data[0] = 42;
+    }
+}
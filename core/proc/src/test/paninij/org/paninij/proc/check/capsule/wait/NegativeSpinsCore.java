@@ -0,0 +1,10 @@
+package org.paninij.proc.check.capsule.wait;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.WaitStrategy;
+
+@Capsule
+@WaitStrategy(value = WaitStrategy.Kind.SPIN_THEN_PARK, spins = -1)
+class NegativeSpinsCore {
+    void handle(int packet) { }
+}
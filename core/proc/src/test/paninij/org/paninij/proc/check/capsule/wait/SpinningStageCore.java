@@ -0,0 +1,14 @@
+package org.paninij.proc.check.capsule.wait;
+
+import org.paninij.lang.Capsule;
+import org.paninij.lang.WaitStrategy;
+
+@Capsule
+@WaitStrategy(value = WaitStrategy.Kind.SPIN_THEN_PARK, spins = 10000, yields = 10)
+class SpinningStageCore {
+    long handled;
+
+    void handle(int packet) {
+        handled++;
+    }
+}
@@ -28,6 +28,7 @@ package org.paninij.examples.histogram;
 
 import org.paninij.lang.Block;
 import org.paninij.lang.Capsule;
+import org.paninij.lang.Coalesce;
 import org.paninij.lang.Imported;
 
 /**
@@ -44,6 +45,7 @@ import org.paninij.lang.Imported;
         count = 0;
     }
 
+    @Coalesce
     void bump() {
         count++;
     }